@@ -3,8 +3,9 @@ package pl.adambalski.springbootboilerplate;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import pl.adambalski.springbootboilerplate.logger.Logger;
-import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+import pl.adambalski.springbootboilerplate.security.util.JwtKeyRing;
 
 import java.util.Base64;
 import java.util.Objects;
@@ -14,6 +15,7 @@ import java.util.Objects;
  *
  * @author Adam Balski
  */
+@EnableScheduling
 @SpringBootApplication
 public class SpringbootBoilerplateApplication {
     public static void main(String[] args) {
@@ -22,12 +24,18 @@ public class SpringbootBoilerplateApplication {
 
         String isDebug = applicationContext.getEnvironment().getProperty("APP_DEVELOPMENT_PROFILE");
         if(isDebug != null && isDebug.equalsIgnoreCase("true")) {
-            logJwtKey(logger);
+            logJwtKey(applicationContext.getBean(JwtKeyRing.class), logger);
         }
     }
 
-    private static void logJwtKey(Logger logger) {
-        String key = Base64.getEncoder().encodeToString(SecurityConfiguration.KEY.getEncoded());
-        logger.log("Key used to make JWTs: " + key, SpringbootBoilerplateApplication.class);
+    private static void logJwtKey(JwtKeyRing jwtKeyRing, Logger logger) {
+        // public keys can be found at /.well-known/jwks.json
+        if(!jwtKeyRing.getAlgorithm().isHmac()) {
+            logger.log("JWTs are signed with " + jwtKeyRing.getAlgorithm() + " key " + jwtKeyRing.getActiveKeyId(), SpringbootBoilerplateApplication.class);
+            return;
+        }
+
+        String key = Base64.getEncoder().encodeToString(jwtKeyRing.getActiveKey().getEncoded());
+        logger.log("Key used to make JWTs (" + jwtKeyRing.getActiveKeyId() + "): " + key, SpringbootBoilerplateApplication.class);
     }
 }
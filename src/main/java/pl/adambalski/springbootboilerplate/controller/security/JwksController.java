@@ -0,0 +1,59 @@
+package pl.adambalski.springbootboilerplate.controller.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pl.adambalski.springbootboilerplate.dto.JwkDto;
+import pl.adambalski.springbootboilerplate.dto.JwkSetDto;
+import pl.adambalski.springbootboilerplate.security.util.JwtKeyRing;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Publishes public keys of the {@link JwtKeyRing}, so other services can verify tokens
+ * minted by this application by themselves.<br>
+ * The key set is empty when tokens are signed with HS512, since its keys are secret.
+ * The key ring does not change while the application runs, so the response is built once
+ * and may be cached by clients for {@link #MAX_AGE}. After a new key is added to the ring,
+ * wait at least that long before making it active.<br><br>
+ *
+ * @see JwtKeyRing
+ * @see JwkSetDto
+ * @author Adam Balski
+ */
+@RestController
+@CrossOrigin
+public class JwksController {
+    public static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+    private final JwkSetDto jwkSet;
+    private final String eTag;
+
+    @Autowired
+    public JwksController(JwtKeyRing jwtKeyRing) {
+        List<JwkDto> keys = jwtKeyRing.getPublicKeys().entrySet().stream()
+                .map(entry -> JwkDto.of(entry.getKey(), jwtKeyRing.getAlgorithm(), entry.getValue()))
+                .sorted(Comparator.comparing(JwkDto::kid))
+                .toList();
+
+        this.jwkSet = new JwkSetDto(keys);
+        // the same on every node with the same key ring
+        this.eTag = "\"" + Integer.toHexString(jwkSet.hashCode()) + "\"";
+    }
+
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize(value = "permitAll()")
+    public ResponseEntity<JwkSetDto> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(MAX_AGE).cachePublic())
+                .eTag(eTag)
+                .body(jwkSet);
+    }
+}
@@ -15,13 +15,10 @@ import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
 import pl.adambalski.springbootboilerplate.service.AuthenticationService;
 
 import javax.annotation.security.PermitAll;
-import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.sql.Date;
-import java.time.Instant;
 
 import static pl.adambalski.springbootboilerplate.security.SecurityConfiguration.REFRESH_TOKEN_COOKIE_NAME;
-import static pl.adambalski.springbootboilerplate.security.SecurityConfiguration.USERNAME_COOKIE_NAME;
 
 /**
  * Contains a function responsible for authenticating a user, which returns a jwt token.<br><br>
@@ -47,33 +44,18 @@ public class AuthenticationController {
 
     @PostMapping(value = "/api/auth/authenticate")
     @PreAuthorize(value = "isAnonymous()")
-    public void authenticate(@RequestBody LoginDto loginDto, HttpServletResponse response) {
+    public void authenticate(@RequestBody LoginDto loginDto, HttpServletRequest request, HttpServletResponse response) {
         System.out.println("auth");
-        RefreshToken refreshToken = authenticationService.authenticate(loginDto);
+        // the proxy's address unless server.forward-headers-strategy is set
+        RefreshToken refreshToken = authenticationService.authenticate(loginDto, request.getRemoteAddr());
 
         response.addCookie(refreshToken.toCookie());
-        response.addCookie(createUsernameCookie(loginDto.username(), refreshToken.getExpirationDate()));
     }
 
+    // The refresh token identifies the user, a 'username' cookie of older clients is ignored
     @PostMapping(value = "/api/auth/refresh")
     @PreAuthorize(value = "permitAll()")
-    public JwtTokenDto refresh(@CookieValue(USERNAME_COOKIE_NAME) String username,
-                               @CookieValue(REFRESH_TOKEN_COOKIE_NAME) String refreshTokenValue) {
-        return authenticationService.refresh(username, refreshTokenValue);
-    }
-
-    private Cookie createUsernameCookie(String username, Date expirationDate) {
-        Cookie cookie = new Cookie(USERNAME_COOKIE_NAME, username);
-
-        int secondsToExpirationDate = (int)(expirationDate.getTime() - Instant.now().toEpochMilli()) / 1000;
-        cookie.setMaxAge(secondsToExpirationDate);
-
-        cookie.setSecure(SecurityConfiguration.COOKIE_SECURENESS);
-        cookie.setHttpOnly(true);
-        // "/api/auth/authenticate" and "/api/auth/refresh"
-        cookie.setPath("/api/auth/");
-        cookie.setComment("Username of the logged-in user.");
-
-        return cookie;
+    public JwtTokenDto refresh(@CookieValue(REFRESH_TOKEN_COOKIE_NAME) String refreshTokenValue) {
+        return authenticationService.refresh(refreshTokenValue);
     }
 }
@@ -0,0 +1,98 @@
+package pl.adambalski.springbootboilerplate.datasource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.util.BoundedExpiringCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Keeps reads of users, who have just been written, off the read replica, which may lag behind the primary.<br>
+ * Every user a {@link UserChangedEvent} is published for (signed up, deleted, password or role changed,
+ * on this node or on another one) is remembered for
+ * 'app.datasource.replica.read_your_writes_window', at most 'app.datasource.replica.read_your_writes_max_size'
+ * of them; after an {@link AllUsersChangedEvent} all users are. Callers, which read a user,
+ * check {@link #wasRecentlyWritten(String)} and read such users in {@link #onPrimary(Supplier)},
+ * which makes {@link ReplicaRoutingDataSource} route the read-only transactions of the calling thread to the primary.<br>
+ * If 'app.datasource.replica.enabled' is false, every read goes to the primary anyway and nothing is remembered.<br><br>
+ *
+ * @see ReplicaRoutingDataSource
+ * @see ReplicaDataSourceFactory
+ * @see BoundedExpiringCache
+ * @author Adam Balski
+ */
+@Component
+public class ReadYourWrites {
+    private static final ThreadLocal<Boolean> onPrimary = ThreadLocal.withInitial(() -> false);
+
+    private final boolean enabled;
+    // login -> itself, users written within the window
+    private final BoundedExpiringCache<String, String> recentlyWritten;
+    private final long windowMillis;
+    private final Clock clock;
+    private volatile long allWrittenUntilMillis;
+
+    @Autowired
+    ReadYourWrites(@Value(value = "${app.datasource.replica.enabled}") boolean enabled,
+                   @Value(value = "${app.datasource.replica.read_your_writes_window}") Duration window,
+                   @Value(value = "${app.datasource.replica.read_your_writes_max_size}") int maxSize) {
+        this(enabled, window, maxSize, Clock.systemUTC());
+    }
+
+    public ReadYourWrites(boolean enabled, Duration window, int maxSize, Clock clock) {
+        this.enabled = enabled;
+        this.recentlyWritten = new BoundedExpiringCache<>(maxSize, clock);
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean wasRecentlyWritten(String login) {
+        if(!enabled) {
+            return false;
+        }
+        return clock.millis() < allWrittenUntilMillis || recentlyWritten.get(login) != null;
+    }
+
+    // Runs 'read' with its read-only transactions on the primary, 'read' must not join a running transaction
+    public <T> T onPrimary(Supplier<T> read) {
+        if(!enabled || onPrimary.get()) {
+            return read.get();
+        }
+
+        onPrimary.set(true);
+        try {
+            return read.get();
+        } finally {
+            onPrimary.remove();
+        }
+    }
+
+    // True in onPrimary(), read by ReplicaRoutingDataSource
+    static boolean isOnPrimary() {
+        return onPrimary.get();
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if(enabled) {
+            recentlyWritten.put(event.login(), event.login(), clock.millis() + windowMillis);
+        }
+    }
+
+    @EventListener
+    public void onAllUsersChanged(AllUsersChangedEvent event) {
+        if(enabled) {
+            allWrittenUntilMillis = clock.millis() + windowMillis;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package pl.adambalski.springbootboilerplate.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Factory that creates the {@link DataSource} beans, if 'app.datasource.replica.enabled' is true
+ * (otherwise Spring Boot creates the only one from 'spring.datasource.*').<br>
+ * The primary pool is configured by 'spring.datasource.*' as before, the replica pool by
+ * 'app.datasource.replica.url', 'app.datasource.replica.username', 'app.datasource.replica.password'
+ * and 'app.datasource.replica.hikari.*', its connections are read-only.
+ * The primary bean (the one JPA, Flyway and everything else get) is a {@link ReplicaRoutingDataSource}
+ * of both behind a {@link LazyConnectionDataSourceProxy}.<br><br>
+ *
+ * @see ReplicaRoutingDataSource
+ * @see ReadYourWrites
+ * @author Adam Balski
+ */
+@Configuration
+@ConditionalOnProperty(value = "app.datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceFactory {
+    @Bean(value = "primaryDataSource")
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSourceBean(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+
+        return dataSource;
+    }
+
+    @Bean(value = "replicaDataSource")
+    @ConfigurationProperties(prefix = "app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSourceBean(
+            @Value(value = "${app.datasource.replica.url}") String url,
+            @Value(value = "${app.datasource.replica.username}") String username,
+            @Value(value = "${app.datasource.replica.password}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        // writes must never get here
+        dataSource.setReadOnly(true);
+
+        return dataSource;
+    }
+
+    @Primary
+    @Bean(value = "dataSource")
+    public DataSource dataSourceBean(@Qualifier("primaryDataSource") DataSource primary,
+                                     @Qualifier("replicaDataSource") DataSource replica,
+                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        // there is no registry in sliced tests
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new)));
+    }
+}
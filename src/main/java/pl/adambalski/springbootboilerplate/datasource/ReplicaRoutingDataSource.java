@@ -0,0 +1,53 @@
+package pl.adambalski.springbootboilerplate.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * {@link DataSource} that gives out connections of the replica to read-only transactions
+ * (repositories are {@code @Transactional(readOnly = true)}, unless a method says otherwise)
+ * and connections of the primary to everything else: read-write transactions, code outside of transactions
+ * (Flyway, {@link pl.adambalski.springbootboilerplate.event.PostgresInvalidationBus}, leader election)
+ * and reads run in {@link ReadYourWrites#onPrimary(java.util.function.Supplier)}.<br>
+ * Transaction managers take the connection before they mark the transaction read-only,
+ * so it must be wrapped in a {@link LazyConnectionDataSourceProxy}, which takes the real one at the first statement.
+ * A transaction keeps its connection, so a read-only method called from a read-write transaction
+ * reads from the primary.<br>
+ * Metrics: 'datasource.routed' tagged with the target ('primary' or 'replica').<br><br>
+ *
+ * @see ReplicaDataSourceFactory
+ * @see ReadYourWrites
+ * @author Adam Balski
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    enum Target { PRIMARY, REPLICA }
+
+    private final Counter routedToPrimary;
+    private final Counter routedToReplica;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, MeterRegistry meterRegistry) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+
+        this.routedToPrimary = Counter.builder("datasource.routed").tag("target", "primary").register(meterRegistry);
+        this.routedToReplica = Counter.builder("datasource.routed").tag("target", "replica").register(meterRegistry);
+    }
+
+    @Override
+    protected Target determineCurrentLookupKey() {
+        if(TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadYourWrites.isOnPrimary()) {
+            routedToReplica.increment();
+            return Target.REPLICA;
+        }
+
+        routedToPrimary.increment();
+        return Target.PRIMARY;
+    }
+}
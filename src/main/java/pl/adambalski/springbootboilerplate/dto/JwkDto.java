@@ -0,0 +1,61 @@
+package pl.adambalski.springbootboilerplate.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Public key in the JSON Web Key format (RFC 7517), used to publish keys, which verify JWTs,
+ * at /.well-known/jwks.json. EC keys have 'crv', 'x' and 'y', RSA keys have 'n' and 'e'.<br><br>
+ *
+ * @see JwkSetDto
+ * @see pl.adambalski.springbootboilerplate.controller.security.JwksController
+ * @author Adam Balski
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record JwkDto(String kty, String kid, String use, String alg,
+                     String crv, String x, String y,
+                     String n, String e) {
+
+    public static JwkDto of(String keyId, SignatureAlgorithm algorithm, PublicKey publicKey) {
+        if(publicKey instanceof ECPublicKey ecPublicKey) {
+            // P-256 coordinates are 32 bytes long
+            int length = (ecPublicKey.getParams().getCurve().getField().getFieldSize() + 7) / 8;
+            return new JwkDto("EC", keyId, "sig", algorithm.getValue(),
+                    "P-" + ecPublicKey.getParams().getCurve().getField().getFieldSize(),
+                    encode(ecPublicKey.getW().getAffineX(), length),
+                    encode(ecPublicKey.getW().getAffineY(), length),
+                    null, null);
+        }
+        if(publicKey instanceof RSAPublicKey rsaPublicKey) {
+            return new JwkDto("RSA", keyId, "sig", algorithm.getValue(),
+                    null, null, null,
+                    encode(rsaPublicKey.getModulus(), 0),
+                    encode(rsaPublicKey.getPublicExponent(), 0));
+        }
+
+        throw new IllegalArgumentException("Unsupported public key " + publicKey.getAlgorithm());
+    }
+
+    // Base64url of the unsigned big-endian bytes, left padded with zeros to 'length'
+    private static String encode(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        // toByteArray adds a leading zero byte when the highest bit is set
+        if(bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if(bytes.length < length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,12 @@
+package pl.adambalski.springbootboilerplate.dto;
+
+import java.util.List;
+
+/**
+ * JSON Web Key Set (RFC 7517) returned from /.well-known/jwks.json.<br><br>
+ *
+ * @see JwkDto
+ * @see pl.adambalski.springbootboilerplate.controller.security.JwksController
+ * @author Adam Balski
+ */
+public record JwkSetDto(List<JwkDto> keys) {}
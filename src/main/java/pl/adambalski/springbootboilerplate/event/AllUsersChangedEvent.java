@@ -0,0 +1,13 @@
+package pl.adambalski.springbootboilerplate.event;
+
+/**
+ * Published when changes of any user may have been missed,
+ * for example when {@link PostgresInvalidationBus} has been disconnected for a while,
+ * so everything that caches users' data drops all of it.<br><br>
+ *
+ * @see UserChangedEvent
+ * @see PostgresInvalidationBus
+ * @author Adam Balski
+ */
+public record AllUsersChangedEvent() {
+}
@@ -0,0 +1,44 @@
+package pl.adambalski.springbootboilerplate.event;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Factory that creates a {@link PostgresInvalidationBus} bean by {@link #postgresInvalidationBusBean},
+ * if 'app.invalidation_bus.enabled' is true (it needs a Postgres database, so it is off in tests).
+ * Notifications are sent on 'app.invalidation_bus.channel', batched for 'app.invalidation_bus.batch_window'
+ * and a lost connection is retried at most every 'app.invalidation_bus.max_reconnect_backoff'.<br><br>
+ *
+ * @see PostgresInvalidationBus
+ * @author Adam Balski
+ */
+@Configuration
+public class InvalidationBusFactory {
+    @Bean(value = "postgresInvalidationBus", destroyMethod = "close")
+    @ConditionalOnProperty(value = "app.invalidation_bus.enabled", havingValue = "true")
+    public PostgresInvalidationBus postgresInvalidationBusBean(
+            DataSource dataSource,
+            ApplicationEventPublisher eventPublisher,
+            @Value(value = "${app.invalidation_bus.channel}") String channel,
+            @Value(value = "${app.invalidation_bus.batch_window}") Duration batchWindow,
+            @Value(value = "${app.invalidation_bus.max_reconnect_backoff}") Duration maxReconnectBackoff,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Qualifier("slf4jLogger") Logger logger) {
+        PostgresInvalidationBus invalidationBus = new PostgresInvalidationBus(dataSource, eventPublisher, channel,
+                batchWindow, maxReconnectBackoff, meterRegistry.getIfAvailable(SimpleMeterRegistry::new), logger);
+        invalidationBus.start();
+
+        return invalidationBus;
+    }
+}
@@ -0,0 +1,92 @@
+package pl.adambalski.springbootboilerplate.event;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Payload of a notification sent by {@link PostgresInvalidationBus}:
+ * the sending node, the time it was sent at (for the lag metric), logins of the changed users
+ * and hashes of evicted refresh tokens.<br>
+ * Encoded as plain text, the first line is '${nodeId} ${sentAtMillis}', then one entry per line:
+ * a login or '~' and the hex of a token hash ({@link #entryOf(ByteBuffer)}); logins never contain whitespace
+ * nor '~', see {@link pl.adambalski.springbootboilerplate.validation.SignUpUserDtoValidator}.
+ * Postgres limits a payload to 8000 bytes, so {@link #encode(String, long, List)} splits
+ * a long list of entries into several messages.<br><br>
+ *
+ * @param nodeId id of the sending node
+ * @param sentAtMillis epoch millis at which the message was sent
+ * @param logins logins of the changed users
+ * @param tokenHashes hashes of the evicted refresh tokens
+ * @see PostgresInvalidationBus
+ * @author Adam Balski
+ */
+public record InvalidationMessage(String nodeId, long sentAtMillis, List<String> logins, List<ByteBuffer> tokenHashes) {
+    static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final char TOKEN_HASH_PREFIX = '~';
+
+    // Entry of an evicted refresh token, logins are entries of their own
+    public static String entryOf(ByteBuffer tokenHash) {
+        byte[] bytes = new byte[tokenHash.remaining()];
+        tokenHash.duplicate().get(bytes);
+        return TOKEN_HASH_PREFIX + HexFormat.of().formatHex(bytes);
+    }
+
+    public static List<String> encode(String nodeId, long sentAtMillis, List<String> entries) {
+        String header = nodeId + " " + sentAtMillis;
+        int headerBytes = utf8Length(header);
+
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(header);
+        int payloadBytes = headerBytes;
+
+        for(String entry : entries) {
+            int entryBytes = utf8Length(entry) + 1;
+            if(payloadBytes + entryBytes > MAX_PAYLOAD_BYTES && payloadBytes > headerBytes) {
+                payloads.add(payload.toString());
+                payload = new StringBuilder(header);
+                payloadBytes = headerBytes;
+            }
+
+            payload.append('\n').append(entry);
+            payloadBytes += entryBytes;
+        }
+
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    // Returns null if the payload was not sent by PostgresInvalidationBus
+    public static InvalidationMessage decode(String payload) {
+        String[] lines = payload.split("\n", -1);
+        String[] header = lines[0].split(" ");
+        if(header.length != 2) {
+            return null;
+        }
+
+        try {
+            long sentAtMillis = Long.parseLong(header[1]);
+
+            List<String> logins = new ArrayList<>();
+            List<ByteBuffer> tokenHashes = new ArrayList<>();
+            for(int i = 1; i < lines.length; i++) {
+                if(!lines[i].isEmpty() && lines[i].charAt(0) == TOKEN_HASH_PREFIX) {
+                    tokenHashes.add(ByteBuffer.wrap(HexFormat.of().parseHex(lines[i], 1, lines[i].length())));
+                }
+                else {
+                    logins.add(lines[i]);
+                }
+            }
+            return new InvalidationMessage(header[0], sentAtMillis, logins, tokenHashes);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException too
+            return null;
+        }
+    }
+
+    private static int utf8Length(String string) {
+        return string.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,265 @@
+package pl.adambalski.springbootboilerplate.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Sends {@link UserChangedEvent}s and {@link RefreshTokensEvictedEvent}s published on this node to every other node
+ * over Postgres LISTEN/NOTIFY, so a user deleted on one node is not served from the caches of the others.<br>
+ * Logins of changed users and hashes of evicted tokens are queued and sent by the 'invalidation-bus-publisher' thread,
+ * which waits 'batchWindow' after the first one, so that a burst of changes goes out as one notification
+ * ({@link InvalidationMessage}). If sending fails, the batch is kept and sent again.<br>
+ * The 'invalidation-bus-listener' thread holds one connection of the pool, on which it LISTENs,
+ * and publishes received logins as remote {@link UserChangedEvent}s and received token hashes
+ * as a remote {@link RefreshTokensEvictedEvent} (its own notifications are skipped).
+ * When the connection is lost, it reconnects with an exponential backoff (up to 'maxReconnectBackoff')
+ * and, since notifications sent in the meantime are lost, publishes an {@link AllUsersChangedEvent}.<br>
+ * Metrics: 'invalidation.bus.lag' (time between sending and receiving a notification, so it includes the clock skew
+ * between nodes), 'invalidation.bus.sent', 'invalidation.bus.received', 'invalidation.bus.reconnects',
+ * 'invalidation.bus.failures' and 'invalidation.bus.pending'.<br><br>
+ *
+ * @see UserChangedEvent
+ * @see InvalidationMessage
+ * @see InvalidationBusFactory
+ * @author Adam Balski
+ */
+public class PostgresInvalidationBus implements AutoCloseable {
+    // LISTEN does not take parameters, so the channel is put into the statement as it is
+    private static final Pattern CHANNEL_PATTERN = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final long MIN_RECONNECT_BACKOFF_MILLIS = 100;
+
+    private final DataSource dataSource;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String channel;
+    private final long batchWindowMillis;
+    private final long maxReconnectBackoffMillis;
+    private final Clock clock;
+    private final Logger logger;
+    private final String nodeId = UUID.randomUUID().toString();
+    // entries of InvalidationMessage
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+
+    private final Thread listenerThread;
+    private final Thread publisherThread;
+    private volatile boolean running = true;
+
+    private final Timer lag;
+    private final Counter sent;
+    private final Counter received;
+    private final Counter reconnects;
+    private final Counter failures;
+
+    public PostgresInvalidationBus(DataSource dataSource, ApplicationEventPublisher eventPublisher, String channel,
+                                   Duration batchWindow, Duration maxReconnectBackoff,
+                                   MeterRegistry meterRegistry, Logger logger) {
+        this(dataSource, eventPublisher, channel, batchWindow, maxReconnectBackoff, Clock.systemUTC(), meterRegistry, logger);
+    }
+
+    public PostgresInvalidationBus(DataSource dataSource, ApplicationEventPublisher eventPublisher, String channel,
+                                   Duration batchWindow, Duration maxReconnectBackoff, Clock clock,
+                                   MeterRegistry meterRegistry, Logger logger) {
+        if(!CHANNEL_PATTERN.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Channel '" + channel + "' does not match " + CHANNEL_PATTERN);
+        }
+
+        this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
+        this.channel = channel;
+        this.batchWindowMillis = batchWindow.toMillis();
+        this.maxReconnectBackoffMillis = Math.max(maxReconnectBackoff.toMillis(), MIN_RECONNECT_BACKOFF_MILLIS);
+        this.clock = clock;
+        this.logger = logger;
+
+        this.lag = Timer.builder("invalidation.bus.lag").register(meterRegistry);
+        this.sent = Counter.builder("invalidation.bus.sent").register(meterRegistry);
+        this.received = Counter.builder("invalidation.bus.received").register(meterRegistry);
+        this.reconnects = Counter.builder("invalidation.bus.reconnects").register(meterRegistry);
+        this.failures = Counter.builder("invalidation.bus.failures").register(meterRegistry);
+        Gauge.builder("invalidation.bus.pending", pending, BlockingQueue::size).register(meterRegistry);
+
+        this.listenerThread = daemon(this::listen, "invalidation-bus-listener");
+        this.publisherThread = daemon(this::publish, "invalidation-bus-publisher");
+    }
+
+    public void start() {
+        listenerThread.start();
+        publisherThread.start();
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if(!event.remote()) {
+            pending.add(event.login());
+        }
+    }
+
+    @EventListener
+    public void onRefreshTokensEvicted(RefreshTokensEvictedEvent event) {
+        if(!event.remote()) {
+            event.tokenHashes().forEach(tokenHash -> pending.add(InvalidationMessage.entryOf(tokenHash)));
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        listenerThread.interrupt();
+        publisherThread.interrupt();
+    }
+
+    private void listen() {
+        long backoffMillis = MIN_RECONNECT_BACKOFF_MILLIS;
+        boolean listenedBefore = false;
+
+        while(running) {
+            try(Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try(Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+
+                if(listenedBefore) {
+                    // notifications sent while disconnected are lost
+                    reconnects.increment();
+                    eventPublisher.publishEvent(new AllUsersChangedEvent());
+                    logger.log("Invalidation bus reconnected", PostgresInvalidationBus.class, Status.INFO);
+                }
+                listenedBefore = true;
+                backoffMillis = MIN_RECONNECT_BACKOFF_MILLIS;
+
+                while(running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if(notifications != null) {
+                        for(PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if(!running) {
+                    return;
+                }
+
+                failures.increment();
+                logger.log("Invalidation bus lost its connection: " + e.getMessage(), PostgresInvalidationBus.class, Status.EXCEPTION);
+                if(!sleep(backoffMillis)) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, maxReconnectBackoffMillis);
+            }
+        }
+    }
+
+    void receive(String payload) {
+        InvalidationMessage message = InvalidationMessage.decode(payload);
+        if(message == null || message.nodeId().equals(nodeId)) {
+            return;
+        }
+
+        lag.record(Math.max(0, clock.millis() - message.sentAtMillis()), TimeUnit.MILLISECONDS);
+        for(String login : message.logins()) {
+            received.increment();
+            eventPublisher.publishEvent(new UserChangedEvent(login, true));
+        }
+        if(!message.tokenHashes().isEmpty()) {
+            received.increment(message.tokenHashes().size());
+            eventPublisher.publishEvent(new RefreshTokensEvictedEvent(message.tokenHashes(), true));
+        }
+    }
+
+    private void publish() {
+        // entries, which have not been sent yet, in order and without duplicates
+        LinkedHashSet<String> batch = new LinkedHashSet<>();
+        long backoffMillis = MIN_RECONNECT_BACKOFF_MILLIS;
+
+        while(running) {
+            try {
+                if(batch.isEmpty()) {
+                    String first = pending.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    if(first == null) {
+                        continue;
+                    }
+
+                    batch.add(first);
+                    // lets a burst of changes go out in one notification
+                    Thread.sleep(batchWindowMillis);
+                }
+
+                List<String> drained = new ArrayList<>();
+                pending.drainTo(drained);
+                batch.addAll(drained);
+
+                send(new ArrayList<>(batch));
+                sent.increment(batch.size());
+                batch.clear();
+                backoffMillis = MIN_RECONNECT_BACKOFF_MILLIS;
+            } catch (InterruptedException e) {
+                return;
+            } catch (SQLException e) {
+                failures.increment();
+                logger.log("Invalidation bus could not send " + batch.size() + " entries: " + e.getMessage(),
+                        PostgresInvalidationBus.class, Status.EXCEPTION);
+                if(!sleep(backoffMillis)) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, maxReconnectBackoffMillis);
+            }
+        }
+    }
+
+    private void send(List<String> entries) throws SQLException {
+        try(Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            for(String payload : InvalidationMessage.encode(nodeId, clock.millis(), entries)) {
+                statement.setString(1, channel);
+                statement.setString(2, payload);
+                statement.execute();
+            }
+        }
+    }
+
+    // Returns false if the thread was interrupted
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
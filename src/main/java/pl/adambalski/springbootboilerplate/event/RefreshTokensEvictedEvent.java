@@ -0,0 +1,25 @@
+package pl.adambalski.springbootboilerplate.event;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Published when the oldest sessions of users are evicted at login
+ * (see {@link pl.adambalski.springbootboilerplate.service.RefreshTokenWriter}),
+ * so the caches of refresh tokens drop the deleted ones. Nothing else about the users has changed,
+ * so unlike {@link UserChangedEvent} it leaves every other cache alone.<br>
+ * Events published on this node are sent to the other nodes by {@link PostgresInvalidationBus},
+ * which publishes them there as remote events (those are not sent any further).<br><br>
+ *
+ * @param tokenHashes hashes of the deleted refresh tokens (RefreshToken.hashOf)
+ * @param remote true if the tokens were deleted on another node
+ * @see UserChangedEvent
+ * @see pl.adambalski.springbootboilerplate.service.RefreshTokenValidationCache
+ * @see pl.adambalski.springbootboilerplate.service.RefreshCoalescer
+ * @author Adam Balski
+ */
+public record RefreshTokensEvictedEvent(List<ByteBuffer> tokenHashes, boolean remote) {
+    public RefreshTokensEvictedEvent(List<ByteBuffer> tokenHashes) {
+        this(tokenHashes, false);
+    }
+}
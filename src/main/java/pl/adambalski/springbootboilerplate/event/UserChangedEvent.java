@@ -0,0 +1,22 @@
+package pl.adambalski.springbootboilerplate.event;
+
+/**
+ * Published when a user signs up, is deleted or their password or role changes,
+ * so everything that caches the user's data drops it
+ * and {@link pl.adambalski.springbootboilerplate.datasource.ReadYourWrites} reads the user from the primary for a while.<br>
+ * Events are delivered synchronously, so once the publishing call returns,
+ * no cache serves the old data.<br>
+ * Events published on this node are sent to the other nodes by {@link PostgresInvalidationBus},
+ * which publishes them there as remote events (those are not sent any further).<br><br>
+ *
+ * @param login login of the changed user
+ * @param remote true if the user was changed on another node
+ * @see org.springframework.context.ApplicationEventPublisher
+ * @see pl.adambalski.springbootboilerplate.security.CachingUserDetailsService
+ * @author Adam Balski
+ */
+public record UserChangedEvent(String login, boolean remote) {
+    public UserChangedEvent(String login) {
+        this(login, false);
+    }
+}
@@ -0,0 +1,35 @@
+package pl.adambalski.springbootboilerplate.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+/**
+ * Thrown if there are too many passwords waiting to be hashed or verified.
+ * The response has a 'Retry-After' header, so clients know when to try again.<br>
+ *
+ * @author Adam Balski
+ * @see org.springframework.web.server.ResponseStatusException
+ * @see pl.adambalski.springbootboilerplate.security.PasswordHashingExecutor
+ */
+public class PasswordHashingOverloadedException extends ResponseStatusException {
+    private final Duration retryAfter;
+
+    public PasswordHashingOverloadedException(Duration retryAfter) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "PASSWORD_HASHING_OVERLOADED_EXCEPTION");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter.toSeconds()));
+        return headers;
+    }
+}
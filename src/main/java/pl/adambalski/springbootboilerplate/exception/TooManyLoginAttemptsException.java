@@ -0,0 +1,36 @@
+package pl.adambalski.springbootboilerplate.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+/**
+ * Thrown if there were too many attempts to log in as a user or from a client.
+ * The response has a 'Retry-After' header, so clients know when to try again.<br>
+ *
+ * @author Adam Balski
+ * @see org.springframework.web.server.ResponseStatusException
+ * @see pl.adambalski.springbootboilerplate.security.LoginThrottle
+ */
+public class TooManyLoginAttemptsException extends ResponseStatusException {
+    private final Duration retryAfter;
+
+    public TooManyLoginAttemptsException(Duration retryAfter) {
+        super(HttpStatus.TOO_MANY_REQUESTS, "TOO_MANY_LOGIN_ATTEMPTS_EXCEPTION");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        // rounded up, so the client does not come back too early
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString((retryAfter.toMillis() + 999) / 1000));
+        return headers;
+    }
+}
@@ -5,9 +5,13 @@ import pl.adambalski.springbootboilerplate.util.RandomAlphaNumericStringGenerato
 
 import javax.persistence.*;
 import javax.servlet.http.Cookie;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Date;
 import java.time.Instant;
 import java.time.Period;
+import java.util.Arrays;
 import java.util.Objects;
 
 import static pl.adambalski.springbootboilerplate.security.SecurityConfiguration.COOKIE_SECURENESS;
@@ -15,7 +19,12 @@ import static pl.adambalski.springbootboilerplate.security.SecurityConfiguration
 
 /**
  * Is used for authenticating users that want to get an access token,
- * which you can use to authenticate to other endpoints.<br><br>
+ * which you can use to authenticate to other endpoints.<br>
+ * Ids are allocated by Hibernate's pooled optimizer, 'nextval' reserves ID_ALLOCATION_SIZE ids
+ * (the sequence is incremented by as much), so only one of ID_ALLOCATION_SIZE inserts goes to the sequence.<br>
+ * Only the SHA-256 digest of the token is stored (token_hash, unique index), the token itself is known
+ * only to the client and to the RefreshToken created at login, so a leaked table does not give out sessions.
+ * The token is random and long enough, that a fast, unsalted digest is as good as a password hash.<br><br>
  *
  * @author Adam Balski
  * @see pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository
@@ -25,16 +34,24 @@ import static pl.adambalski.springbootboilerplate.security.SecurityConfiguration
 @Entity
 @Table(name = "refresh_token", schema = "public")
 public final class RefreshToken {
+    // Has to be the same as the increment of refresh_token_id_gen (V4__pool_refresh_token_ids.sql)
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "refresh_token_id_gen")
-    @SequenceGenerator(name = "refresh_token_id_gen", sequenceName = "refresh_token_id_gen", allocationSize = 1)
+    @SequenceGenerator(name = "refresh_token_id_gen", sequenceName = "refresh_token_id_gen", allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "id", nullable = false, unique = true, updatable = false)
     private Long id;
 
     @Column(name = "user_login", columnDefinition = "varchar(30)", updatable = false, nullable = false)
     private String userLogin;
 
-    @Column(name = "token", columnDefinition = "varchar(12)", updatable = false, nullable = false)
+    // SHA-256 of the token
+    @Column(name = "token_hash", columnDefinition = "bytea", updatable = false, nullable = false)
+    private byte[] tokenHash;
+
+    // null unless the token has just been created
+    @Transient
     private String token;
 
     @Column(name = "expiration_date", columnDefinition = "date", updatable = false, nullable = false)
@@ -45,12 +62,27 @@ public final class RefreshToken {
     }
 
     public RefreshToken(long id, String userLogin, String token, Date expirationDate) {
+        this(userLogin, token, expirationDate);
         this.id = id;
+    }
+
+    // Refresh token without an id, which is allocated when it is saved
+    public RefreshToken(String userLogin, String token, Date expirationDate) {
         this.userLogin = userLogin;
-        this.token = token;
+        setToken(token);
         this.expirationDate = expirationDate;
     }
 
+    // Digest, which is stored and looked up instead of the token
+    public static byte[] hashOf(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static RefreshToken createRefreshToken(String userLogin, RandomAlphaNumericStringGenerator randomAlphaNumericStringGenerator) {
         String token = randomAlphaNumericStringGenerator.generate();
 
@@ -58,7 +90,8 @@ public final class RefreshToken {
         Period expirationPeriod = REFRESH_TOKEN_EXPIRATION_PERIOD;
         java.sql.Date expirationDate = new Date(now.plus(expirationPeriod).toEpochMilli());
 
-        return new RefreshToken(0, userLogin, token, expirationDate);
+        // without an id save() persists the token, an id would make it merge (SELECT before INSERT)
+        return new RefreshToken(userLogin, token, expirationDate);
     }
 
     public Cookie toCookie() {
@@ -98,6 +131,11 @@ public final class RefreshToken {
 
     public void setToken(String token) {
         this.token = token;
+        this.tokenHash = token == null ? null : hashOf(token);
+    }
+
+    public byte[] getTokenHash() {
+        return tokenHash;
     }
 
     public Date getExpirationDate() {
@@ -115,13 +153,13 @@ public final class RefreshToken {
         RefreshToken that = (RefreshToken) o;
         return Objects.equals(id, that.id) &&
                 Objects.equals(userLogin, that.userLogin) &&
-                Objects.equals(token, that.token) &&
+                Arrays.equals(tokenHash, that.tokenHash) &&
                 Objects.equals(expirationDate, that.expirationDate);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, userLogin, token, expirationDate);
+        return Objects.hash(id, userLogin, Arrays.hashCode(tokenHash), expirationDate);
     }
 
     @Override
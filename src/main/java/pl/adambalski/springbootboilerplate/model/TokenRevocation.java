@@ -0,0 +1,64 @@
+package pl.adambalski.springbootboilerplate.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Access tokens of the user issued at or before 'revokedAt' are not accepted anymore
+ * (the user has been deleted or their sessions have been killed).<br>
+ * A row matters only as long as the access tokens issued before it live, then it is deleted.<br><br>
+ *
+ * @author Adam Balski
+ * @see pl.adambalski.springbootboilerplate.repository.TokenRevocationRepository
+ * @see pl.adambalski.springbootboilerplate.security.TokenRevocations
+ */
+@Entity
+@Table(name = "token_revocation", schema = "public")
+public final class TokenRevocation {
+    @Id
+    @Column(name = "user_login", columnDefinition = "varchar(30)", nullable = false, updatable = false)
+    private String userLogin;
+
+    @Column(name = "revoked_at", columnDefinition = "timestamptz", nullable = false)
+    private Instant revokedAt;
+
+    public TokenRevocation() {
+
+    }
+
+    public TokenRevocation(String userLogin, Instant revokedAt) {
+        this.userLogin = userLogin;
+        this.revokedAt = revokedAt;
+    }
+
+    public String getUserLogin() {
+        return userLogin;
+    }
+
+    public Instant getRevokedAt() {
+        return revokedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TokenRevocation that = (TokenRevocation) o;
+        return Objects.equals(userLogin, that.userLogin) &&
+                Objects.equals(revokedAt, that.revokedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userLogin, revokedAt);
+    }
+
+    @Override
+    public String toString() {
+        return "TokenRevocation{userLogin='" + userLogin + "', revokedAt=" + revokedAt + '}';
+    }
+}
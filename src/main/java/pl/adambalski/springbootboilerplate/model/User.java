@@ -162,8 +162,6 @@ public final class User {
     }
 
     public List<GrantedAuthority> getGrantedAuthorities() {
-        return List.of(
-                new GrantedAuthorityImpl(this.role)
-        );
+        return GrantedAuthorityImpl.authoritiesOf(this.role);
     }
 }
@@ -0,0 +1,27 @@
+package pl.adambalski.springbootboilerplate.model;
+
+import org.springframework.security.core.userdetails.UserDetails;
+import pl.adambalski.springbootboilerplate.security.GrantedAuthorityImpl;
+
+/**
+ * The columns of a {@link User}, which are needed to authenticate them.<br>
+ * Read by {@link pl.adambalski.springbootboilerplate.repository.UserRepository#findCredentialsByLogin(String)}
+ * with a constructor expression, so it is not an entity: Hibernate neither keeps it
+ * in the persistence context nor takes a snapshot of it for dirty checking.<br><br>
+ *
+ * @param login user's login
+ * @param password user's password hash
+ * @param role user's role
+ * @see User
+ * @see pl.adambalski.springbootboilerplate.security.UserDetailsServiceImpl
+ * @author Adam Balski
+ */
+public record UserCredentials(String login, String password, Role role) {
+    public UserDetails toUserDetails() {
+        return new org.springframework.security.core.userdetails.User(
+                login,
+                password,
+                GrantedAuthorityImpl.authoritiesOf(role)
+        );
+    }
+}
@@ -22,6 +22,8 @@ import java.util.UUID;
 public interface AdminRepository extends JpaRepository<User, UUID> {
     Optional<User> findByLogin(String login);
 
+    // Not read-only, a read-only transaction would go to the read replica and never flush the delete
     @Modifying
+    @Transactional
     int deleteByLogin(String login);
 }
@@ -0,0 +1,23 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Manages the monthly partitions of the refresh_token table (by expiration_date),
+ * it is a part of {@link RefreshTokenRepository}.<br><br>
+ *
+ * @author Adam Balski
+ * @see RefreshTokenPartitionsImpl
+ * @see pl.adambalski.springbootboilerplate.service.RefreshTokenPartitionMaintainer
+ */
+public interface RefreshTokenPartitions {
+    // Months, which have their own partition (the default partition is not one of them)
+    List<YearMonth> findPartitionMonths();
+
+    // Returns false if the partition already exists, tokens of the month in the default partition are moved into it
+    boolean createPartition(YearMonth month);
+
+    // Detaches and drops the partition with all of its tokens, returns false if it does not exist
+    boolean dropPartition(YearMonth month);
+}
@@ -0,0 +1,119 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Implementation of {@link RefreshTokenPartitions}, picked up by Spring Data for {@link RefreshTokenRepository}.<br>
+ * A month's partition is named 'refresh_token_YYYY_MM' and holds tokens expiring in that month.<br>
+ * Partitions are created and dropped under a transaction-level advisory lock and only after checking,
+ * whether they exist, so two nodes maintaining them at once (leadership may overlap) do not fail each other.<br><br>
+ *
+ * @author Adam Balski
+ * @see RefreshTokenPartitions
+ */
+class RefreshTokenPartitionsImpl implements RefreshTokenPartitions {
+    private static final String TABLE = "refresh_token";
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final DateTimeFormatter SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern PARTITION_NAME_PATTERN = Pattern.compile(TABLE + "_\\d{4}_\\d{2}");
+    // Keys of the advisory lock of creating and dropping partitions, so they do not collide with other advisory locks
+    static final int PARTITIONS_LOCK_NAMESPACE = 0x9a27;
+    private static final int PARTITIONS_LOCK_KEY = 0;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Partitions are created and dropped by what it returns, so it reads from the primary even if there is a read replica
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<YearMonth> findPartitionMonths() {
+        List<String> names = entityManager.createNativeQuery("""
+                select c.relname from pg_inherits i
+                    join pg_class c on c.oid = i.inhrelid
+                    where i.inhparent = cast('public.refresh_token' as regclass);
+                """).getResultList();
+
+        return names.stream()
+                .map(RefreshTokenPartitionsImpl::monthOf)
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public boolean createPartition(YearMonth month) {
+        String name = partitionNameOf(month);
+        lockPartitions();
+        if(exists(name)) {
+            return false;
+        }
+
+        // DDL does not take parameters, the name and the bounds come from a YearMonth
+        String range = "expiration_date >= '" + month.atDay(1) + "'" +
+                " and expiration_date < '" + month.plusMonths(1).atDay(1) + "'";
+
+        // Postgres refuses to create the partition while the default one has tokens of the month,
+        // so they are moved out and back in, no token can be added meanwhile
+        entityManager.createNativeQuery("lock table " + DEFAULT_PARTITION + " in access exclusive mode;").executeUpdate();
+        entityManager.createNativeQuery("create temporary table refresh_token_moved on commit drop as" +
+                " select * from " + DEFAULT_PARTITION + " where " + range + ";").executeUpdate();
+        entityManager.createNativeQuery("delete from " + DEFAULT_PARTITION + " where " + range + ";").executeUpdate();
+
+        entityManager.createNativeQuery("create table " + name + " partition of " + TABLE +
+                " for values from ('" + month.atDay(1) + "') to ('" + month.plusMonths(1).atDay(1) + "');")
+                .executeUpdate();
+
+        entityManager.createNativeQuery("insert into " + TABLE + " select * from refresh_token_moved;").executeUpdate();
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean dropPartition(YearMonth month) {
+        String name = partitionNameOf(month);
+        lockPartitions();
+        if(!exists(name)) {
+            return false;
+        }
+
+        entityManager.createNativeQuery("alter table " + TABLE + " detach partition " + name + ";").executeUpdate();
+        entityManager.createNativeQuery("drop table " + name + ";").executeUpdate();
+        return true;
+    }
+
+    // Held until the end of the transaction
+    private void lockPartitions() {
+        entityManager.createNativeQuery("select cast(pg_advisory_xact_lock(:namespace, :key) as text);")
+                .setParameter("namespace", PARTITIONS_LOCK_NAMESPACE)
+                .setParameter("key", PARTITIONS_LOCK_KEY)
+                .getSingleResult();
+    }
+
+    private boolean exists(String name) {
+        return entityManager.createNativeQuery("select cast(to_regclass(:name) as text);")
+                .setParameter("name", "public." + name)
+                .getSingleResult() != null;
+    }
+
+    static String partitionNameOf(YearMonth month) {
+        return TABLE + "_" + month.format(SUFFIX_FORMATTER);
+    }
+
+    // Returns null if it is not a month's partition
+    static YearMonth monthOf(String partitionName) {
+        if(!PARTITION_NAME_PATTERN.matcher(partitionName).matches()) {
+            return null;
+        }
+        return YearMonth.parse(partitionName.substring(TABLE.length() + 1), SUFFIX_FORMATTER);
+    }
+}
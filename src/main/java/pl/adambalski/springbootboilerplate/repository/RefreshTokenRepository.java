@@ -3,32 +3,59 @@ package pl.adambalski.springbootboilerplate.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import pl.adambalski.springbootboilerplate.model.RefreshToken;
 import pl.adambalski.springbootboilerplate.model.User;
 
+import java.util.Optional;
+
 /**
  * Performs SQL queries on database. Primarily called by {@link pl.adambalski.springbootboilerplate.service.AuthenticationService}.<br><br>
  *
  * @author Adam Balski
  * @see pl.adambalski.springbootboilerplate.service.AuthenticationService
  * @see RefreshToken
+ * @see RefreshTokenPartitions
+ * @see RefreshTokenSessions
  * @see User
  * @see pl.adambalski.springbootboilerplate.controller.user.AuthenticationController
  */
 @Repository
 @Transactional(readOnly = true)
-public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long>, RefreshTokenPartitions, RefreshTokenSessions {
+    // Deletes at most 'limit' expired tokens in its own short transaction, returns how many were deleted
+    // Rows are matched by the whole primary key, so the delete uses it and prunes the partitions
     @Modifying
+    @Transactional
     @Query(value =
             """
             delete from refresh_token
-                where expiration_date < cast(NOW() AS DATE);
+                where (id, expiration_date) in (
+                    select id, expiration_date from refresh_token
+                        where expiration_date < cast(NOW() AS DATE)
+                        limit :limit
+                );
             """,
             nativeQuery = true
     )
-    void deleteAllByExpirationDateBeforeNow();
+    int deleteExpiredBatch(@Param("limit") int limit);
+
+    // Deletes all tokens of a user, who has been deleted, returns how many were deleted
+    // Uses ix_refresh_token_user_login_expiration_date of every partition
+    @Modifying
+    @Transactional
+    @Query(value = "delete from refresh_token where user_login = :login", nativeQuery = true)
+    int deleteAllByUserLogin(@Param("login") String login);
 
-    boolean existsByUserLoginAndToken(String userLogin, String token);
+    // Login of the owner of a token, which has not expired, 'tokenHash' is RefreshToken.hashOf(token)
+    // Probes ux_refresh_token_token_hash of every partition, which has not expired
+    @Query(value =
+            """
+            select r.userLogin from RefreshToken r
+                where r.tokenHash = :tokenHash and r.expirationDate >= current_date
+            """
+    )
+    Optional<String> findUserLoginByTokenHash(@Param("tokenHash") byte[] tokenHash);
 }
@@ -0,0 +1,20 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import pl.adambalski.springbootboilerplate.model.RefreshToken;
+
+import java.util.List;
+
+/**
+ * Saves refresh tokens of new logins and keeps the number of sessions (refresh tokens) of a user bounded,
+ * it is a part of {@link RefreshTokenRepository}.<br><br>
+ *
+ * @author Adam Balski
+ * @see RefreshTokenSessionsImpl
+ * @see pl.adambalski.springbootboilerplate.service.RefreshTokenWriter
+ */
+public interface RefreshTokenSessions {
+    // Saves the tokens and deletes the oldest tokens of their users, so that every user has
+    // at most 'maxSessionsPerUser' tokens, in one transaction
+    // Returns hashes of the deleted tokens
+    List<byte[]> saveAndEvictOldest(List<RefreshToken> refreshTokens, int maxSessionsPerUser);
+}
@@ -0,0 +1,71 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+import pl.adambalski.springbootboilerplate.model.RefreshToken;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Implementation of {@link RefreshTokenSessions}, picked up by Spring Data for {@link RefreshTokenRepository}.<br>
+ * Logins of the same user are serialized by a transaction-level advisory lock on the login,
+ * taken before the insert, so concurrent logins cannot both keep the token, which the other one has evicted.
+ * Users are locked in the order of their logins, so two batches cannot deadlock.<br>
+ * The oldest tokens are the ones, which expire first, ties are broken by created_at (set by the database
+ * at insert, after the lock), not by id, as blocks of ids handed out to different nodes are not in the order
+ * of creation. They are found by ix_refresh_token_user_login_expiration_date.<br><br>
+ *
+ * @author Adam Balski
+ * @see RefreshTokenSessions
+ */
+class RefreshTokenSessionsImpl implements RefreshTokenSessions {
+    // First key of the two-key advisory locks of logins, so they do not collide with other advisory locks
+    static final int LOGIN_LOCK_NAMESPACE = 0x5e55;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<byte[]> saveAndEvictOldest(List<RefreshToken> refreshTokens, int maxSessionsPerUser) {
+        if(maxSessionsPerUser < 1) {
+            throw new IllegalArgumentException("maxSessionsPerUser must be positive");
+        }
+
+        SortedSet<String> logins = new TreeSet<>();
+        refreshTokens.forEach(refreshToken -> logins.add(refreshToken.getUserLogin()));
+
+        for(String login : logins) {
+            entityManager.createNativeQuery("select cast(pg_advisory_xact_lock(:namespace, hashtext(:login)) as text);")
+                    .setParameter("namespace", LOGIN_LOCK_NAMESPACE)
+                    .setParameter("login", login)
+                    .getSingleResult();
+        }
+
+        refreshTokens.forEach(entityManager::persist);
+        entityManager.flush();
+
+        List<byte[]> deleted = new ArrayList<>();
+        for(String login : logins) {
+            deleted.addAll(entityManager.createNativeQuery("""
+                    delete from refresh_token
+                        where (id, expiration_date) in (
+                            select id, expiration_date from refresh_token
+                                where user_login = :login
+                                order by expiration_date desc, created_at desc, id desc
+                                offset :max
+                        )
+                        returning token_hash;
+                    """)
+                    .setParameter("login", login)
+                    .setParameter("max", maxSessionsPerUser)
+                    .getResultList());
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,52 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import pl.adambalski.springbootboilerplate.model.TokenRevocation;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Performs SQL queries on the token_revocation table, is called by {@link pl.adambalski.springbootboilerplate.security.TokenRevocations}.<br><br>
+ *
+ * @author Adam Balski
+ * @see TokenRevocation
+ * @see pl.adambalski.springbootboilerplate.security.TokenRevocations
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, String> {
+    // Revokes tokens of the user issued at or before 'revokedAt', a later revocation is kept
+    @Modifying
+    @Transactional
+    @Query(value =
+            """
+            insert into token_revocation (user_login, revoked_at)
+                values (:login, :revokedAt)
+                on conflict (user_login)
+                    do update set revoked_at = greatest(token_revocation.revoked_at, excluded.revoked_at);
+            """,
+            nativeQuery = true
+    )
+    void revoke(@Param("login") String login, @Param("revokedAt") Instant revokedAt);
+
+    // Revocations must not be missed, so they are read from the primary even if there is a read replica
+    @Override
+    @Transactional
+    Optional<TokenRevocation> findById(String login);
+
+    @Transactional
+    List<TokenRevocation> findAllByRevokedAtAfter(Instant instant);
+
+    // Deletes revocations, which have outlived every token they revoke
+    @Modifying
+    @Transactional
+    @Query(value = "delete from token_revocation where revoked_at < :instant", nativeQuery = true)
+    int deleteAllRevokedBefore(@Param("instant") Instant instant);
+}
@@ -2,10 +2,15 @@ package pl.adambalski.springbootboilerplate.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import pl.adambalski.springbootboilerplate.model.User;
+import pl.adambalski.springbootboilerplate.model.UserCredentials;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -22,12 +27,37 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     // Get by
     Optional<User> findByLogin(String login);
 
+    // Only the columns needed to authenticate, without a managed entity
+    @Query("SELECT new pl.adambalski.springbootboilerplate.model.UserCredentials(u.login, u.password, u.role) " +
+            "FROM User u WHERE u.login = :login")
+    Optional<UserCredentials> findCredentialsByLogin(@Param("login") String login);
+
+    // Credentials of many users in one query (see UserLookupBatcher), logins, which do not exist, are left out
+    @Query("SELECT new pl.adambalski.springbootboilerplate.model.UserCredentials(u.login, u.password, u.role) " +
+            "FROM User u WHERE u.login IN :logins")
+    List<UserCredentials> findCredentialsByLoginIn(@Param("logins") Collection<String> logins);
+
     // Exists by
+    // They guard sign-ups, so they read from the primary even if there is a read replica
+    @Transactional
     boolean existsByLoginOrEmail(String login, String email);
+    @Transactional
     boolean existsByLogin(String login);
+    @Transactional
     boolean existsByEmail(String email);
 
+    // Update
+    // Only if the password has not been changed in the meantime
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.login = :login AND u.password = :oldPassword")
+    int updatePasswordByLogin(@Param("login") String login,
+                              @Param("oldPassword") String oldPassword,
+                              @Param("newPassword") String newPassword);
+
     // Delete
+    // Not read-only, a read-only transaction would go to the read replica and never flush the delete
     @Modifying
+    @Transactional
     int deleteByLogin(String login);
 }
@@ -0,0 +1,158 @@
+package pl.adambalski.springbootboilerplate.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * {@link LeaderElection} built on a Postgres session-level advisory lock ('pg_try_advisory_lock').<br>
+ * Every node tries to take the lock every 'checkInterval', the node which got it keeps the connection
+ * (one connection of the pool), so the lock is held until that node stops or loses the connection,
+ * then another node takes it over within 'checkInterval'.
+ * The leader checks its connection every 'checkInterval' and stops being the leader as soon as it finds it broken.
+ * Postgres releases the lock as soon as the session ends, so there is at most one leader,
+ * but with up to 'checkInterval' of overlap: another node may take the lock before the old leader finds out.
+ * Jobs run by the leader must tolerate running on two nodes at once.<br>
+ * Metrics: 'scheduling.leader' is 1 on the node, which holds the lease, and 0 on the others
+ * (tagged with the node's name), 'scheduling.leader.changes' counts gained and lost leaderships.<br><br>
+ *
+ * @see LeaderElection
+ * @see LeaderElectionFactory
+ * @author Adam Balski
+ */
+public class AdvisoryLockLeaderElection implements LeaderElection, AutoCloseable {
+    private final DataSource dataSource;
+    private final long lockKey;
+    private final long checkIntervalMillis;
+    private final Logger logger;
+    private final Thread thread;
+
+    private Connection lockConnection;
+    private volatile boolean leader;
+    private volatile boolean running = true;
+
+    private final Counter changes;
+
+    public AdvisoryLockLeaderElection(DataSource dataSource, String lockName, Duration checkInterval,
+                                      String nodeName, MeterRegistry meterRegistry, Logger logger) {
+        this.dataSource = dataSource;
+        this.lockKey = lockKeyOf(lockName);
+        this.checkIntervalMillis = checkInterval.toMillis();
+        this.logger = logger;
+        this.thread = new Thread(this::run, "leader-election");
+        this.thread.setDaemon(true);
+
+        Gauge.builder("scheduling.leader", this, election -> election.isLeader() ? 1 : 0)
+                .tag("node", nodeName)
+                .register(meterRegistry);
+        this.changes = Counter.builder("scheduling.leader.changes").register(meterRegistry);
+    }
+
+    // Tries to take the lock right away, so jobs scheduled at start up already know the leader
+    public void start() {
+        check();
+        thread.start();
+    }
+
+    @Override
+    public boolean isLeader() {
+        return leader;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        synchronized(this) {
+            release();
+        }
+    }
+
+    // The same name gives the same key on every node
+    static long lockKeyOf(String lockName) {
+        return UUID.nameUUIDFromBytes(lockName.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+    }
+
+    private void run() {
+        while(running) {
+            try {
+                Thread.sleep(checkIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            check();
+        }
+    }
+
+    synchronized void check() {
+        if(!running) {
+            return;
+        }
+
+        try {
+            if(lockConnection == null) {
+                tryAcquire();
+            }
+            else if(!lockConnection.isValid((int) Math.max(1, checkIntervalMillis / 1000))) {
+                throw new SQLException("Connection holding the leader lock is broken");
+            }
+        } catch (SQLException e) {
+            logger.log("Leader election failed: " + e.getMessage(), AdvisoryLockLeaderElection.class, Status.EXCEPTION);
+            release();
+        }
+    }
+
+    private void tryAcquire() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        boolean acquired = false;
+        try(PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, lockKey);
+            try(ResultSet resultSet = statement.executeQuery()) {
+                acquired = resultSet.next() && resultSet.getBoolean(1);
+            }
+        } finally {
+            if(!acquired) {
+                connection.close();
+            }
+        }
+        if(!acquired) {
+            return;
+        }
+
+        lockConnection = connection;
+        leader = true;
+        changes.increment();
+        logger.log("This node is the leader of scheduled jobs", AdvisoryLockLeaderElection.class, Status.INFO);
+    }
+
+    private void release() {
+        if(leader) {
+            changes.increment();
+            logger.log("This node is not the leader of scheduled jobs anymore", AdvisoryLockLeaderElection.class, Status.INFO);
+        }
+        leader = false;
+
+        if(lockConnection != null) {
+            // a pooled connection is not closed, so the lock would outlive close() without the unlock
+            try(Connection connection = lockConnection;
+                PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                statement.setLong(1, lockKey);
+                statement.execute();
+            } catch (SQLException ignored) {
+                // a broken connection is dropped by the pool, which ends the session and its lock
+            }
+            lockConnection = null;
+        }
+    }
+}
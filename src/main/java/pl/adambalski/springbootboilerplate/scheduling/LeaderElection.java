@@ -0,0 +1,18 @@
+package pl.adambalski.springbootboilerplate.scheduling;
+
+/**
+ * Tells whether this node is the one, which runs cluster-wide scheduled jobs.
+ * Jobs opt in by returning early when {@link #isLeader()} is false.
+ * Leadership may briefly overlap when it moves to another node, so the jobs must tolerate running twice at once.<br><br>
+ *
+ * @see AdvisoryLockLeaderElection
+ * @see LeaderElectionFactory
+ * @author Adam Balski
+ */
+@FunctionalInterface
+public interface LeaderElection {
+    // Leader election of a single node, which always runs the jobs
+    LeaderElection ALWAYS_LEADER = () -> true;
+
+    boolean isLeader();
+}
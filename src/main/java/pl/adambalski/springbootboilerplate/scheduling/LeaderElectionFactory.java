@@ -0,0 +1,49 @@
+package pl.adambalski.springbootboilerplate.scheduling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Factory that creates the {@link LeaderElection} bean of scheduled jobs.<br>
+ * If 'app.scheduling.leader_election.enabled' is true it is an {@link AdvisoryLockLeaderElection}
+ * on 'app.scheduling.leader_election.lock_name', checked every 'app.scheduling.leader_election.check_interval',
+ * otherwise (single node, tests without a database) this node is always the leader.<br><br>
+ *
+ * @see LeaderElection
+ * @see AdvisoryLockLeaderElection
+ * @author Adam Balski
+ */
+@Configuration
+public class LeaderElectionFactory {
+    @Bean(value = "leaderElection", destroyMethod = "close")
+    @ConditionalOnProperty(value = "app.scheduling.leader_election.enabled", havingValue = "true")
+    public AdvisoryLockLeaderElection advisoryLockLeaderElectionBean(
+            DataSource dataSource,
+            @Value(value = "${app.scheduling.leader_election.lock_name}") String lockName,
+            @Value(value = "${app.scheduling.leader_election.check_interval}") Duration checkInterval,
+            @Value(value = "${app.scheduling.leader_election.node_name}") String nodeName,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Qualifier("slf4jLogger") Logger logger) {
+        AdvisoryLockLeaderElection leaderElection = new AdvisoryLockLeaderElection(dataSource, lockName, checkInterval,
+                nodeName, meterRegistry.getIfAvailable(SimpleMeterRegistry::new), logger);
+        leaderElection.start();
+
+        return leaderElection;
+    }
+
+    @Bean(value = "leaderElection")
+    @ConditionalOnProperty(value = "app.scheduling.leader_election.enabled", havingValue = "false", matchIfMissing = true)
+    public LeaderElection singleNodeLeaderElectionBean() {
+        return LeaderElection.ALWAYS_LEADER;
+    }
+}
@@ -0,0 +1,92 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link BCryptPasswordEncoder} whose cost (strength) is configured for the whole cluster
+ * or picked for the machine it runs on.<br>
+ * {@link #calibrate(Duration, int, int, int)} measures hashing with increasing costs and picks the highest one,
+ * which still hashes a password within the target latency. Timings differ between machines and runs,
+ * so it is meant for a single node, a cluster should configure the cost.<br>
+ * {@link #upgradeEncoding(String)} returns true only if a password was hashed with a cost lower than
+ * the strength by more than the upgrade margin, so it can be rehashed after the user logs in with it.
+ * Hashes are never downgraded, so nodes with different strengths do not rehash a password back and forth.<br><br>
+ *
+ * @see BCryptPasswordEncoder
+ * @see PasswordEncoderFactory
+ * @author Adam Balski
+ */
+public class AdaptiveBCryptPasswordEncoder extends BCryptPasswordEncoder {
+    public static final int MIN_STRENGTH = 4;
+    public static final int MAX_STRENGTH = 31;
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2([ayb])?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final int strength;
+    private final int upgradeMargin;
+
+    public AdaptiveBCryptPasswordEncoder(int strength) {
+        this(strength, 0);
+    }
+
+    public AdaptiveBCryptPasswordEncoder(int strength, int upgradeMargin) {
+        super(strength);
+        if(upgradeMargin < 0) throw new IllegalArgumentException("upgradeMargin must not be negative");
+
+        this.strength = strength;
+        this.upgradeMargin = upgradeMargin;
+    }
+
+    // Picks the highest strength from [minStrength, maxStrength] that hashes within targetLatency,
+    // minStrength if even that one is slower
+    public static AdaptiveBCryptPasswordEncoder calibrate(Duration targetLatency, int minStrength, int maxStrength,
+                                                         int upgradeMargin) {
+        if(minStrength < MIN_STRENGTH || maxStrength > MAX_STRENGTH || minStrength > maxStrength) {
+            throw new IllegalArgumentException("BCrypt strength has to be between " + MIN_STRENGTH + " and " + MAX_STRENGTH);
+        }
+
+        int strength = minStrength;
+        // every next strength takes twice as long, so this measures at most two hashes above the target
+        while(strength < maxStrength && timeOfHash(strength + 1).compareTo(targetLatency) <= 0) {
+            strength++;
+        }
+
+        return new AdaptiveBCryptPasswordEncoder(strength, upgradeMargin);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    // True if the password was hashed with a strength lower by more than the upgrade margin, never for a higher one
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int encodedStrength = strengthOf(encodedPassword);
+        return encodedStrength >= 0 && encodedStrength + upgradeMargin < strength;
+    }
+
+    // Returns -1 if it is not a BCrypt hash
+    static int strengthOf(String encodedPassword) {
+        if(encodedPassword == null) return -1;
+
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        return matcher.find() ? Integer.parseInt(matcher.group(2)) : -1;
+    }
+
+    // The faster of two hashes, the first one may include class loading and JIT compilation
+    private static Duration timeOfHash(int strength) {
+        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(strength);
+
+        long fastest = Long.MAX_VALUE;
+        for(int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            passwordEncoder.encode("calibration password");
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return Duration.ofNanos(fastest);
+    }
+}
@@ -0,0 +1,123 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.util.BoundedExpiringCache;
+import pl.adambalski.springbootboilerplate.util.KeyedGenerations;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * {@link UserDetailsService} which keeps the {@link UserDetails} loaded by {@link UserDetailsServiceImpl}
+ * for 'app.security.user_details_cache.ttl', at most 'app.security.user_details_cache.max_size' of them.
+ * It is the primary {@link UserDetailsService}, so both {@link pl.adambalski.springbootboilerplate.security.filter.JwtAuthFilter}
+ * and {@link pl.adambalski.springbootboilerplate.service.AuthenticationService} go through it.<br>
+ * A user's entry is removed as soon as a {@link UserChangedEvent} is published for them
+ * (on this node or, through {@link pl.adambalski.springbootboilerplate.event.PostgresInvalidationBus}, on another one)
+ * and all entries are removed on {@link AllUsersChangedEvent}.
+ * A load, which was running while its user was invalidated, may have read the old row,
+ * so its result is not kept (every invalidation bumps the user's generation, which the load compares),
+ * loads of other users are kept.<br>
+ * Unknown usernames are not cached. Cached {@link UserDetails} are shared between callers, so they must not be modified.<br>
+ * Hits, misses, evictions and the size are published as 'user.details.cache.*' metrics.<br><br>
+ *
+ * @see UserDetailsServiceImpl
+ * @see BoundedExpiringCache
+ * @see KeyedGenerations
+ * @see UserChangedEvent
+ * @author Adam Balski
+ */
+@Primary
+@Component
+public class CachingUserDetailsService implements UserDetailsService {
+    private final UserDetailsService userDetailsService;
+    private final BoundedExpiringCache<String, UserDetails> cache;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final KeyedGenerations<String> generations = new KeyedGenerations<>();
+
+    @Autowired
+    CachingUserDetailsService(@Qualifier("userDetailsServiceImpl") UserDetailsService userDetailsService,
+                              @Value(value = "${app.security.user_details_cache.ttl}") Duration ttl,
+                              @Value(value = "${app.security.user_details_cache.max_size}") int maxSize,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        // there is no registry in sliced tests
+        this(userDetailsService, ttl, maxSize, Clock.systemUTC(), meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    public CachingUserDetailsService(UserDetailsService userDetailsService, Duration ttl, int maxSize,
+                                     Clock clock, MeterRegistry meterRegistry) {
+        this.userDetailsService = userDetailsService;
+        this.cache = new BoundedExpiringCache<>(maxSize, clock);
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+
+        registerMetrics(meterRegistry);
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
+        UserDetails cached = cache.get(login);
+        if(cached != null) {
+            return cached;
+        }
+
+        long generation = generations.stamp();
+        UserDetails userDetails = userDetailsService.loadUserByUsername(login);
+        cache.put(login, userDetails, clock.millis() + ttlMillis);
+
+        // the user was invalidated while loading, the loaded row may be stale already
+        if(!generations.isCurrent(login, generation)) {
+            cache.invalidate(login);
+        }
+        return userDetails;
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        generations.invalidate(event.login());
+        cache.invalidate(event.login());
+    }
+
+    @EventListener
+    public void onAllUsersChanged(AllUsersChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        generations.invalidateAll();
+        cache.invalidateAll();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("user.details.cache.hits", cache, BoundedExpiringCache::getHitCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("user.details.cache.misses", cache, BoundedExpiringCache::getMissCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("user.details.cache.evictions", cache, BoundedExpiringCache::getEvictionCount)
+                .register(meterRegistry);
+        Gauge.builder("user.details.cache.size", cache, BoundedExpiringCache::size)
+                .register(meterRegistry);
+        Gauge.builder("user.details.cache.hit.rate", cache, BoundedExpiringCache::getHitRate)
+                .register(meterRegistry);
+    }
+}
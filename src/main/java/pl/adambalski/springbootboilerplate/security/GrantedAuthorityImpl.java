@@ -3,9 +3,15 @@ package pl.adambalski.springbootboilerplate.security;
 import org.springframework.security.core.GrantedAuthority;
 import pl.adambalski.springbootboilerplate.model.Role;
 
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Simple {@link GrantedAuthority} implementation.
- * It is based on {@link pl.adambalski.springbootboilerplate.model.User}'s {@link Role}s.<br><br>
+ * It is based on {@link pl.adambalski.springbootboilerplate.model.User}'s {@link Role}s.<br>
+ * Instances are immutable, so {@link #of(Role)} and {@link #authoritiesOf(Role)} hand out
+ * shared ones instead of allocating new objects on every authenticated request.<br><br>
  *
  * @see pl.adambalski.springbootboilerplate.model.User
  * @see Role
@@ -13,12 +19,32 @@ import pl.adambalski.springbootboilerplate.model.Role;
  */
 @SuppressWarnings("ClassCanBeRecord")
 public class GrantedAuthorityImpl implements GrantedAuthority {
+    private static final Map<Role, GrantedAuthorityImpl> SHARED_INSTANCES = new EnumMap<>(Role.class);
+    private static final Map<Role, List<GrantedAuthority>> SHARED_AUTHORITY_LISTS = new EnumMap<>(Role.class);
+
+    static {
+        for(Role role : Role.values()) {
+            GrantedAuthorityImpl grantedAuthority = new GrantedAuthorityImpl(role);
+            SHARED_INSTANCES.put(role, grantedAuthority);
+            SHARED_AUTHORITY_LISTS.put(role, List.of(grantedAuthority));
+        }
+    }
+
     private final Role role;
 
     public GrantedAuthorityImpl(Role role) {
         this.role = role;
     }
 
+    public static GrantedAuthorityImpl of(Role role) {
+        return SHARED_INSTANCES.get(role);
+    }
+
+    // Immutable, single element list
+    public static List<GrantedAuthority> authoritiesOf(Role role) {
+        return SHARED_AUTHORITY_LISTS.get(role);
+    }
+
     @Override
     public String getAuthority() {
         return this.role.grantedAuthorityString;
@@ -36,4 +62,4 @@ public class GrantedAuthorityImpl implements GrantedAuthority {
     public int hashCode() {
         return role.hashCode();
     }
-}
\ No newline at end of file
+}
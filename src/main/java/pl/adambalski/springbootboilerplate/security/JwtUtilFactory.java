@@ -0,0 +1,47 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+import pl.adambalski.springbootboilerplate.security.util.JwtKeyRing;
+import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Factory that creates the {@link JwtKeyRing} and the {@link JwtUtil} shared by
+ * {@link SecurityConfiguration} and services.<br>
+ * The key ring is read from the file given by 'app.security.jwt.key_ring_file', so tokens stay valid
+ * after a restart and every node of the cluster signs and verifies with the same keys.
+ * If the property is empty, a random key is generated, which is enough for tests and local development.<br>
+ * 'app.security.jwt.algorithm' is HS512 (shared secret) or ES256/RS256, whose public keys are published
+ * at /.well-known/jwks.json.<br><br>
+ *
+ * @see JwtKeyRing
+ * @see JwtUtil
+ * @author Adam Balski
+ */
+@Configuration
+public class JwtUtilFactory {
+    @Bean("jwtKeyRing")
+    public JwtKeyRing jwtKeyRingBean(@Value(value = "${app.security.jwt.key_ring_file}") String keyRingFile,
+                                     @Value(value = "${app.security.jwt.algorithm}") SignatureAlgorithm algorithm,
+                                     @Qualifier("slf4jLogger") Logger logger) throws IOException {
+        if(keyRingFile.isBlank()) {
+            logger.log("No JWT key ring file given, tokens will be signed with a random key", JwtUtilFactory.class, Status.INFO);
+            return JwtKeyRing.ephemeral(algorithm);
+        }
+
+        return JwtKeyRing.load(Path.of(keyRingFile), algorithm);
+    }
+
+    @Bean("jwtUtil")
+    public JwtUtil jwtUtilBean(JwtKeyRing jwtKeyRing) {
+        return new JwtUtil(jwtKeyRing);
+    }
+}
@@ -0,0 +1,60 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.adambalski.springbootboilerplate.exception.TooManyLoginAttemptsException;
+import pl.adambalski.springbootboilerplate.util.TokenBucketRateLimiter;
+
+import java.time.Duration;
+
+/**
+ * Limits login attempts per login and per client address with {@link TokenBucketRateLimiter}s,
+ * so credential stuffing is rejected before the user is looked up and before any password is hashed.<br>
+ * A login may be tried 'app.security.login_throttling.login_capacity' times at once and once more
+ * every 'app.security.login_throttling.login_refill', the same goes for a client ('client_capacity', 'client_refill').
+ * Each limiter remembers at most 'app.security.login_throttling.max_keys' keys.<br><br>
+ *
+ * @see TokenBucketRateLimiter
+ * @see pl.adambalski.springbootboilerplate.service.AuthenticationService
+ * @author Adam Balski
+ */
+@Component
+public class LoginThrottle {
+    private final TokenBucketRateLimiter<String> loginLimiter;
+    private final TokenBucketRateLimiter<String> clientLimiter;
+
+    @Autowired
+    public LoginThrottle(@Value(value = "${app.security.login_throttling.login_capacity}") int loginCapacity,
+                         @Value(value = "${app.security.login_throttling.login_refill}") Duration loginRefill,
+                         @Value(value = "${app.security.login_throttling.client_capacity}") int clientCapacity,
+                         @Value(value = "${app.security.login_throttling.client_refill}") Duration clientRefill,
+                         @Value(value = "${app.security.login_throttling.max_keys}") int maxKeys) {
+        this(new TokenBucketRateLimiter<>(loginCapacity, loginRefill, maxKeys),
+                new TokenBucketRateLimiter<>(clientCapacity, clientRefill, maxKeys));
+    }
+
+    public LoginThrottle(TokenBucketRateLimiter<String> loginLimiter, TokenBucketRateLimiter<String> clientLimiter) {
+        this.loginLimiter = loginLimiter;
+        this.clientLimiter = clientLimiter;
+    }
+
+    // Throws TooManyLoginAttemptsException (HTTP429) if the client or the login has no attempts left
+    // 'clientAddress' may be null if it is not known
+    public void checkAttempt(String login, String clientAddress) {
+        if(clientAddress != null) {
+            reject(clientLimiter.tryAcquire(clientAddress));
+        }
+        reject(loginLimiter.tryAcquire(login));
+    }
+
+    public long getRejectionCount() {
+        return loginLimiter.getRejectionCount() + clientLimiter.getRejectionCount();
+    }
+
+    private static void reject(long retryAfterMillis) {
+        if(retryAfterMillis > 0) {
+            throw new TooManyLoginAttemptsException(Duration.ofMillis(retryAfterMillis));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * {@link PasswordEncoder} that hashes and verifies passwords with another encoder
+ * on the threads of a {@link PasswordHashingExecutor}, instead of the calling request thread.<br><br>
+ *
+ * @see PasswordHashingExecutor
+ * @see PasswordEncoderFactory
+ * @author Adam Balski
+ */
+public class OffloadingPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    public OffloadingPasswordEncoder(PasswordEncoder passwordEncoder, PasswordHashingExecutor passwordHashingExecutor) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return passwordHashingExecutor.execute(PasswordHashingExecutor.ENCODE_OPERATION,
+                () -> passwordEncoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return passwordHashingExecutor.execute(PasswordHashingExecutor.MATCHES_OPERATION,
+                () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    // Only looks at the hash, so it is cheap
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+}
@@ -1,22 +1,75 @@
 package pl.adambalski.springbootboilerplate.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+
+import java.time.Duration;
 
 /**
- * Factory that creates beans by {@link #passwordEncoderBean()}, which returns a bean of type {@link org.springframework.security.crypto.password.PasswordEncoder}.<br>
- * The encoder is a {@link BCryptPasswordEncoder} with strength of 10.<br><br>
+ * Factory that creates beans by {@link #offloadingPasswordEncoderBean(PasswordHashingExecutor, AdaptiveBCryptPasswordEncoder)},
+ * which returns a bean of type {@link org.springframework.security.crypto.password.PasswordEncoder}.<br>
+ * The encoder is an {@link AdaptiveBCryptPasswordEncoder}, which runs on the threads of a {@link PasswordHashingExecutor}.
+ * Its strength is 'app.security.password_hashing.cost', the same on every node. If it is 0, the strength is calibrated
+ * at startup: the highest one between 'app.security.password_hashing.min_cost'
+ * and 'app.security.password_hashing.max_cost', which hashes within 'app.security.password_hashing.target_latency'
+ * (on a single node only, other nodes would calibrate differently).
+ * Stored hashes are upgraded only if their cost is more than 'app.security.password_hashing.upgrade_margin' lower.
+ * The executor has 'app.security.password_hashing.threads' threads (0 means the number of processors)
+ * and a queue of 'app.security.password_hashing.queue_capacity' passwords.<br><br>
  *
  * @see org.springframework.security.crypto.password.PasswordEncoder
  * @see BCryptPasswordEncoder
+ * @see OffloadingPasswordEncoder
  * @author Adam Balski
  */
 @Configuration
 public class PasswordEncoderFactory {
     @Bean("passwordEncoder")
-    public PasswordEncoder passwordEncoderBean() {
-        return new BCryptPasswordEncoder(10);
+    public PasswordEncoder offloadingPasswordEncoderBean(PasswordHashingExecutor passwordHashingExecutor,
+                                                         AdaptiveBCryptPasswordEncoder adaptiveBCryptPasswordEncoder) {
+        return new OffloadingPasswordEncoder(adaptiveBCryptPasswordEncoder, passwordHashingExecutor);
+    }
+
+    @Bean("adaptiveBCryptPasswordEncoder")
+    public AdaptiveBCryptPasswordEncoder adaptiveBCryptPasswordEncoderBean(
+            @Value(value = "${app.security.password_hashing.cost}") int cost,
+            @Value(value = "${app.security.password_hashing.target_latency}") Duration targetLatency,
+            @Value(value = "${app.security.password_hashing.min_cost}") int minCost,
+            @Value(value = "${app.security.password_hashing.max_cost}") int maxCost,
+            @Value(value = "${app.security.password_hashing.upgrade_margin}") int upgradeMargin,
+            @Qualifier("slf4jLogger") Logger logger) {
+        if(cost > 0) {
+            return new AdaptiveBCryptPasswordEncoder(cost, upgradeMargin);
+        }
+
+        AdaptiveBCryptPasswordEncoder passwordEncoder =
+                AdaptiveBCryptPasswordEncoder.calibrate(targetLatency, minCost, maxCost, upgradeMargin);
+        logger.log("BCrypt cost calibrated to " + passwordEncoder.getStrength(), PasswordEncoderFactory.class, Status.INFO);
+
+        return passwordEncoder;
+    }
+
+    @Bean(value = "passwordHashingExecutor", destroyMethod = "close")
+    public PasswordHashingExecutor passwordHashingExecutorBean(
+            @Value(value = "${app.security.password_hashing.threads}") int threads,
+            @Value(value = "${app.security.password_hashing.queue_capacity}") int queueCapacity,
+            @Value(value = "${app.security.password_hashing.retry_after}") Duration retryAfter,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        if(threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        // there is no registry in sliced tests
+        return new PasswordHashingExecutor(threads, queueCapacity, retryAfter,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
     }
 }
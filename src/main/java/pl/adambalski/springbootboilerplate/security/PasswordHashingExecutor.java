@@ -0,0 +1,115 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import pl.adambalski.springbootboilerplate.exception.PasswordHashingOverloadedException;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of threads, which hash and verify passwords, so a burst of logins and sign-ups
+ * cannot take all the CPU from request threads serving cheap endpoints.<br>
+ * Passwords wait in a queue of a limited capacity. If the queue is full,
+ * {@link PasswordHashingOverloadedException} (503 with 'Retry-After') is thrown at once,
+ * instead of making the request wait.<br>
+ * Metrics:
+ * <ul>
+ *     <li>password.hashing.wait - time spent in the queue,</li>
+ *     <li>password.hashing.time - time of hashing (operation=encode) or verifying (operation=matches),</li>
+ *     <li>password.hashing.rejected - passwords rejected because the queue was full,</li>
+ *     <li>password.hashing.queue - number of passwords in the queue.</li>
+ * </ul>
+ *
+ * @see OffloadingPasswordEncoder
+ * @see PasswordEncoderFactory
+ * @author Adam Balski
+ */
+public class PasswordHashingExecutor implements AutoCloseable {
+    public static final String ENCODE_OPERATION = "encode";
+    public static final String MATCHES_OPERATION = "matches";
+
+    private final ThreadPoolExecutor executor;
+    private final Duration retryAfter;
+    private final Timer waitTimer;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingExecutor(int threads, int queueCapacity, Duration retryAfter, MeterRegistry meterRegistry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfter = retryAfter;
+
+        this.waitTimer = Timer.builder("password.hashing.wait")
+                .description("Time a password waits for a hashing thread")
+                .register(meterRegistry);
+        this.encodeTimer = hashingTimer(ENCODE_OPERATION, meterRegistry);
+        this.matchesTimer = hashingTimer(MATCHES_OPERATION, meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hashing.rejected")
+                .description("Passwords rejected, because the hashing queue was full")
+                .register(meterRegistry);
+        meterRegistry.gauge("password.hashing.queue", executor.getQueue(), BlockingQueue::size);
+    }
+
+    // Runs 'task' on a hashing thread and waits for its result
+    // Throws PasswordHashingOverloadedException if the queue is full
+    public <T> T execute(String operation, Supplier<T> task) {
+        Timer timer = ENCODE_OPERATION.equals(operation) ? encodeTimer : matchesTimer;
+        long submittedAt = System.nanoTime();
+
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return task.get();
+                } finally {
+                    timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingOverloadedException(retryAfter);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password to be hashed", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if(e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static Timer hashingTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("password.hashing.time")
+                .description("Time of hashing or verifying a password")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -1,8 +1,7 @@
 package pl.adambalski.springbootboilerplate.security;
 
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -18,7 +17,6 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import pl.adambalski.springbootboilerplate.security.filter.JwtAuthFilter;
 import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
 
-import javax.crypto.SecretKey;
 import javax.servlet.Filter;
 import java.time.Period;
 
@@ -34,25 +32,38 @@ import java.time.Period;
 @Configuration
 public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     public static final String JWT_TOKEN_PREFIX = "Bearer ";
-    public static final SecretKey KEY = Keys.secretKeyFor(SignatureAlgorithm.HS512);
     public static final Period REFRESH_TOKEN_EXPIRATION_PERIOD = Period.ofDays(365);
-    public static final int REFRESH_TOKEN_LENGTH = 12;
+    // 43 alphanumeric characters are about 256 bits
+    public static final int REFRESH_TOKEN_LENGTH = 43;
     public static final String REFRESH_TOKEN_COOKIE_NAME = "refresh_token";
-    public static final String USERNAME_COOKIE_NAME = "username";
     public static final boolean COOKIE_SECURENESS = false;
+    public static final int VERIFIED_TOKEN_CACHE_SIZE = 10_000;
 
     private UserDetailsService userDetailsService;
-    private final JwtUtil jwtUtil;
-
-    public SecurityConfiguration() {
-        this.jwtUtil = new JwtUtil(KEY);
-    }
+    private JwtUtil jwtUtil;
+    private boolean statelessJwt;
+    private TokenRevocations tokenRevocations;
 
     @Autowired
     private void setUserDetailsService(UserDetailsService userDetailsService) {
         this.userDetailsService = userDetailsService;
     }
 
+    @Autowired
+    private void setJwtUtil(JwtUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Autowired
+    private void setStatelessJwt(@Value(value = "${app.security.jwt.stateless}") boolean statelessJwt) {
+        this.statelessJwt = statelessJwt;
+    }
+
+    @Autowired
+    private void setTokenRevocations(TokenRevocations tokenRevocations) {
+        this.tokenRevocations = tokenRevocations;
+    }
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         CookieCsrfTokenRepository csrfTokenRepository =
@@ -70,8 +81,13 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                 // 401 instead of 403 for unauthenticated people
                 .exceptionHandling()
                     .authenticationEntryPoint(http401StatusEntryPoint).and()
+                // Actuator, other endpoints are secured by @PreAuthorize
+                .authorizeRequests()
+                    .antMatchers("/actuator/health").permitAll()
+                    .antMatchers("/actuator/**").hasRole("ADMIN")
+                    .anyRequest().permitAll().and()
                 // Filters
-                .addFilterAfter(new JwtAuthFilter(this::userDetailsService, jwtUtil), AbstractPreAuthenticatedProcessingFilter.class);
+                .addFilterAfter(new JwtAuthFilter(this::userDetailsService, jwtUtil, statelessJwt, tokenRevocations), AbstractPreAuthenticatedProcessingFilter.class);
     }
 
     @Override
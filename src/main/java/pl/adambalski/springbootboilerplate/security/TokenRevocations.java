@@ -0,0 +1,158 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+import pl.adambalski.springbootboilerplate.model.TokenRevocation;
+import pl.adambalski.springbootboilerplate.repository.TokenRevocationRepository;
+import pl.adambalski.springbootboilerplate.scheduling.LeaderElection;
+import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Access tokens, which must not be accepted anymore even though they have not expired yet,
+ * because their user has been deleted or their sessions have been killed.<br>
+ * Every user has at most one revocation epoch (seconds): tokens of the user issued at or before it are revoked,
+ * so {@link #isRevoked(String, long)} is one map lookup and allocates nothing.
+ * Epochs are kept in the token_revocation table, loaded at start up and reloaded on
+ * {@link UserChangedEvent}s from other nodes and on {@link AllUsersChangedEvent}.<br>
+ * An epoch older than the lifetime of access tokens cannot revoke any token that has not expired yet,
+ * so every 'app.security.token_revocations.purge_interval' such epochs are dropped from memory
+ * and the leader of {@link LeaderElection} deletes their rows.<br>
+ * Metrics: 'token.revocations.size' (users with an epoch) and 'token.revocations.rejected' (rejected tokens).<br><br>
+ *
+ * @see TokenRevocation
+ * @see TokenRevocationRepository
+ * @see pl.adambalski.springbootboilerplate.security.filter.JwtAuthFilter
+ * @author Adam Balski
+ */
+@Component
+public class TokenRevocations {
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final LeaderElection leaderElection;
+    private final long tokenLifetimeSeconds;
+    private final Clock clock;
+    private final Logger logger;
+
+    // login -> revocation epoch in seconds
+    private final ConcurrentHashMap<String, Long> revokedAt = new ConcurrentHashMap<>();
+    private final Counter rejected;
+
+    @Autowired
+    TokenRevocations(TokenRevocationRepository tokenRevocationRepository,
+                     LeaderElection leaderElection,
+                     JwtUtil jwtUtil,
+                     ObjectProvider<MeterRegistry> meterRegistry,
+                     @Qualifier("slf4jLogger") Logger logger) {
+        // there is no registry in sliced tests
+        this(tokenRevocationRepository, leaderElection, jwtUtil.getExpiresIn(), Clock.systemUTC(),
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new), logger);
+    }
+
+    public TokenRevocations(TokenRevocationRepository tokenRevocationRepository, LeaderElection leaderElection,
+                            Duration tokenLifetime, Clock clock, MeterRegistry meterRegistry, Logger logger) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.leaderElection = leaderElection;
+        this.tokenLifetimeSeconds = tokenLifetime.getSeconds();
+        this.clock = clock;
+        this.logger = logger;
+
+        Gauge.builder("token.revocations.size", revokedAt, ConcurrentHashMap::size).register(meterRegistry);
+        this.rejected = Counter.builder("token.revocations.rejected").register(meterRegistry);
+
+        reloadAll();
+    }
+
+    // 'issuedAtSeconds' is the token's 'iat', 0 if the token has none
+    public boolean isRevoked(String login, long issuedAtSeconds) {
+        if(revokedAt.isEmpty() || login == null) {
+            return false;
+        }
+
+        Long epoch = revokedAt.get(login);
+        if(epoch == null || issuedAtSeconds > epoch) {
+            return false;
+        }
+
+        rejected.increment();
+        return true;
+    }
+
+    // Revokes every token of the user issued until now, other nodes learn about it from the UserChangedEvent,
+    // which the caller publishes afterwards
+    public void revoke(String login) {
+        long now = nowSeconds();
+        tokenRevocationRepository.revoke(login, Instant.ofEpochSecond(now));
+        put(login, now);
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        // revocations made on this node are already in the map
+        if(event.remote()) {
+            tokenRevocationRepository.findById(event.login())
+                    .ifPresent(revocation -> put(revocation.getUserLogin(), revocation.getRevokedAt().getEpochSecond()));
+        }
+    }
+
+    @EventListener
+    public void onAllUsersChanged(AllUsersChangedEvent event) {
+        reloadAll();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.token_revocations.purge_interval}",
+            initialDelayString = "${app.security.token_revocations.purge_interval}")
+    public void scheduledPurge() {
+        long cutoff = purge();
+        if(!leaderElection.isLeader()) {
+            return;
+        }
+
+        int deleted = tokenRevocationRepository.deleteAllRevokedBefore(Instant.ofEpochSecond(cutoff));
+        if(deleted > 0) {
+            logger.log("Deleted " + deleted + " outlived token revocations", TokenRevocations.class, Status.DEBUG);
+        }
+    }
+
+    // Drops epochs, which cannot revoke any unexpired token, returns the cutoff (seconds)
+    long purge() {
+        long cutoff = nowSeconds() - tokenLifetimeSeconds;
+        revokedAt.values().removeIf(epoch -> epoch < cutoff);
+        return cutoff;
+    }
+
+    public int size() {
+        return revokedAt.size();
+    }
+
+    private void reloadAll() {
+        Instant cutoff = Instant.ofEpochSecond(nowSeconds() - tokenLifetimeSeconds);
+        for(TokenRevocation revocation : tokenRevocationRepository.findAllByRevokedAtAfter(cutoff)) {
+            put(revocation.getUserLogin(), revocation.getRevokedAt().getEpochSecond());
+        }
+    }
+
+    // A later epoch always wins, epochs are never moved back
+    private void put(String login, long epoch) {
+        revokedAt.merge(login, epoch, Math::max);
+    }
+
+    private long nowSeconds() {
+        return clock.millis() / 1000;
+    }
+}
@@ -5,29 +5,32 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
-import pl.adambalski.springbootboilerplate.repository.UserRepository;
 
 /**
- * Simple implementation of {@link UserDetailsService}.<br><br>
+ * Simple implementation of {@link UserDetailsService}.<br>
+ * Reads only the user's {@link pl.adambalski.springbootboilerplate.model.UserCredentials}, not the whole entity,
+ * through {@link UserLookupBatcher}, which may resolve lookups of concurrent requests with one query.<br><br>
  *
  * @see pl.adambalski.springbootboilerplate.model.User
+ * @see pl.adambalski.springbootboilerplate.model.UserCredentials
  * @see org.springframework.security.core.userdetails.User
  * @see UserDetailsService
  * @see UserDetails
+ * @see UserLookupBatcher
  * @author Adam Balski
  */
 @Component
 public class UserDetailsServiceImpl implements UserDetailsService {
-    private final UserRepository userRepository;
+    private final UserLookupBatcher userLookupBatcher;
 
     @Autowired
-    UserDetailsServiceImpl(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    UserDetailsServiceImpl(UserLookupBatcher userLookupBatcher) {
+        this.userLookupBatcher = userLookupBatcher;
     }
 
     @Override
     public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
-        return userRepository.findByLogin(login)
+        return userLookupBatcher.findCredentialsByLogin(login)
                 .orElseThrow(() -> new UsernameNotFoundException("Username not found"))
                 .toUserDetails();
     }
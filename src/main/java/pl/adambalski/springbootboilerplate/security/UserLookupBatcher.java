@@ -0,0 +1,195 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.adambalski.springbootboilerplate.datasource.ReadYourWrites;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+import pl.adambalski.springbootboilerplate.model.UserCredentials;
+import pl.adambalski.springbootboilerplate.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Looks up {@link UserCredentials} for {@link UserDetailsServiceImpl}.<br>
+ * If 'app.security.user_lookup_batching.enabled' is true, lookups of concurrent requests are put into a queue
+ * and a single thread resolves them with one query ({@link UserRepository#findCredentialsByLoginIn(Collection)})
+ * as soon as there are 'app.security.user_lookup_batching.batch_size' of them or the first one has waited
+ * 'app.security.user_lookup_batching.max_delay', so under load there are far fewer round trips
+ * at the cost of at most 'max_delay' of latency. If the query fails, every lookup of the batch fails.
+ * When the queue ('app.security.user_lookup_batching.queue_capacity') is full, the calling thread queries itself.<br>
+ * Otherwise every lookup is a query of its own, done by the calling thread.<br>
+ * Users, who have just been written (see {@link ReadYourWrites}), are looked up by the calling thread
+ * on the primary, not batched.<br>
+ * Metrics: 'user.lookup.batch.size' (lookups per query), 'user.lookup.batch.wait' (time in the queue)
+ * and 'user.lookup.batch.query' (time of a query).<br><br>
+ *
+ * @see UserDetailsServiceImpl
+ * @see UserRepository
+ * @see CachingUserDetailsService
+ * @see ReadYourWrites
+ * @author Adam Balski
+ */
+@Component
+public class UserLookupBatcher implements AutoCloseable {
+    private final UserRepository userRepository;
+    private final ReadYourWrites readYourWrites;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingLookup> queue;
+    private final Logger logger;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Timer waitTimer;
+    private final Timer queryTimer;
+
+    @Autowired
+    UserLookupBatcher(UserRepository userRepository,
+                      ReadYourWrites readYourWrites,
+                      @Value(value = "${app.security.user_lookup_batching.enabled}") boolean enabled,
+                      @Value(value = "${app.security.user_lookup_batching.batch_size}") int batchSize,
+                      @Value(value = "${app.security.user_lookup_batching.max_delay}") Duration maxDelay,
+                      @Value(value = "${app.security.user_lookup_batching.queue_capacity}") int queueCapacity,
+                      ObjectProvider<MeterRegistry> meterRegistry,
+                      @Qualifier("slf4jLogger") Logger logger) {
+        // there is no registry in sliced tests
+        this(userRepository, readYourWrites, enabled, batchSize, maxDelay, queueCapacity,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new), logger);
+    }
+
+    public UserLookupBatcher(UserRepository userRepository, ReadYourWrites readYourWrites, boolean enabled,
+                             int batchSize, Duration maxDelay, int queueCapacity, MeterRegistry meterRegistry,
+                             Logger logger) {
+        if(batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        if(queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be positive");
+
+        this.userRepository = userRepository;
+        this.readYourWrites = readYourWrites;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.logger = logger;
+
+        this.batchSizeSummary = DistributionSummary.builder("user.lookup.batch.size").register(meterRegistry);
+        this.waitTimer = Timer.builder("user.lookup.batch.wait").register(meterRegistry);
+        this.queryTimer = Timer.builder("user.lookup.batch.query").register(meterRegistry);
+
+        this.thread = new Thread(this::run, "user-lookup-batcher");
+        this.thread.setDaemon(true);
+        if(enabled) {
+            thread.start();
+        }
+    }
+
+    public Optional<UserCredentials> findCredentialsByLogin(String login) {
+        // a replica may not have the user's last write yet
+        if(readYourWrites.wasRecentlyWritten(login)) {
+            return readYourWrites.onPrimary(() -> userRepository.findCredentialsByLogin(login));
+        }
+
+        PendingLookup pendingLookup = new PendingLookup(login, System.nanoTime(), new CompletableFuture<>());
+
+        if(!enabled || !running || !queue.offer(pendingLookup)) {
+            return userRepository.findCredentialsByLogin(login);
+        }
+        return await(pendingLookup.result());
+    }
+
+    // Resolves whatever is in the queue and stops the thread
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingLookup> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if(!rest.isEmpty()) {
+            resolve(rest);
+        }
+    }
+
+    private void run() {
+        List<PendingLookup> batch = new ArrayList<>(batchSize);
+
+        while(running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                queue.drainTo(batch, batchSize - batch.size());
+
+                while(batch.size() < batchSize) {
+                    PendingLookup next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if(next == null) break;
+
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // close() resolves what is left in the queue
+                if(!batch.isEmpty()) {
+                    resolve(batch);
+                }
+                return;
+            }
+
+            resolve(batch);
+            batch.clear();
+        }
+    }
+
+    void resolve(List<PendingLookup> batch) {
+        long start = System.nanoTime();
+        batch.forEach(pendingLookup -> waitTimer.record(start - pendingLookup.queuedAtNanos(), TimeUnit.NANOSECONDS));
+
+        // the same login may be looked up by several requests
+        Set<String> logins = new HashSet<>();
+        batch.forEach(pendingLookup -> logins.add(pendingLookup.login()));
+
+        try {
+            Map<String, UserCredentials> found = new HashMap<>();
+            userRepository.findCredentialsByLoginIn(logins)
+                    .forEach(userCredentials -> found.put(userCredentials.login(), userCredentials));
+
+            batch.forEach(pendingLookup ->
+                    pendingLookup.result().complete(Optional.ofNullable(found.get(pendingLookup.login()))));
+        } catch (RuntimeException e) {
+            logger.log("Batch of " + batch.size() + " user lookups failed: " + e.getMessage(),
+                    UserLookupBatcher.class, Status.EXCEPTION);
+            batch.forEach(pendingLookup -> pendingLookup.result().completeExceptionally(e));
+        }
+
+        queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizeSummary.record(batch.size());
+    }
+
+    private static Optional<UserCredentials> await(CompletableFuture<Optional<UserCredentials>> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    record PendingLookup(String login, long queuedAtNanos, CompletableFuture<Optional<UserCredentials>> result) {}
+}
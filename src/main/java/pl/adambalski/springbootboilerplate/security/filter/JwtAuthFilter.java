@@ -10,6 +10,9 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.filter.OncePerRequestFilter;
+import pl.adambalski.springbootboilerplate.model.Role;
+import pl.adambalski.springbootboilerplate.security.GrantedAuthorityImpl;
+import pl.adambalski.springbootboilerplate.security.TokenRevocations;
 import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
 
 import javax.servlet.FilterChain;
@@ -32,6 +35,10 @@ import java.util.function.Supplier;
  *         otherwise clears {@link SecurityContextHolder}'s context;
  *     </li>
  * </ul>
+ * In stateless mode the {@link Authentication} is built straight from the token's claims
+ * (see {@link JwtUtil#tokenOf(String, Role, java.util.UUID)}), so there is no database lookup.
+ * Tokens minted without a role claim are still checked against {@link UserDetailsService}.<br>
+ * Tokens revoked by {@link TokenRevocations} (deleted users, killed sessions) are not accepted in either mode.<br><br>
  *
  * @see SecurityContextHolder
  * @see org.springframework.security.core.context.SecurityContext
@@ -42,11 +49,15 @@ import java.util.function.Supplier;
  * @see JwtException
  * @see UserDetails
  * @see Authentication
+ * @see TokenRevocations
  * @author Adam Balski
  */
 public class JwtAuthFilter extends OncePerRequestFilter {
     private final Supplier<UserDetailsService> userDetailsServiceSupplier;
     private final JwtUtil jwtUtil;
+    private final boolean stateless;
+    // null if tokens are never revoked
+    private final TokenRevocations tokenRevocations;
 
     private static final Converter<UserDetails, Authentication> userDetailsAuthenticationConverter = userDetails ->
             new UsernamePasswordAuthenticationToken(
@@ -56,8 +67,19 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             );
 
     public JwtAuthFilter(Supplier<UserDetailsService> userDetailsServiceSupplier, JwtUtil jwtUtil) {
+        this(userDetailsServiceSupplier, jwtUtil, false);
+    }
+
+    public JwtAuthFilter(Supplier<UserDetailsService> userDetailsServiceSupplier, JwtUtil jwtUtil, boolean stateless) {
+        this(userDetailsServiceSupplier, jwtUtil, stateless, null);
+    }
+
+    public JwtAuthFilter(Supplier<UserDetailsService> userDetailsServiceSupplier, JwtUtil jwtUtil, boolean stateless,
+                         TokenRevocations tokenRevocations) {
         this.userDetailsServiceSupplier = userDetailsServiceSupplier;
         this.jwtUtil = jwtUtil;
+        this.stateless = stateless;
+        this.tokenRevocations = tokenRevocations;
     }
 
     @Override
@@ -77,14 +99,39 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             Claims claims = jwtUtil.verifyAndGetClaims(token);
             String username = claims.getSubject();
 
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            Authentication authentication = userDetailsAuthenticationConverter.convert(userDetails);
+            if(tokenRevocations != null && tokenRevocations.isRevoked(username, issuedAtOf(claims))) {
+                // pass (SecurityContext is cleared)
+                filterChain.doFilter(request, response);
+                return;
+            }
+
+            // throws IllegalArgumentException when the role claim is not a Role
+            Role role = stateless ? JwtUtil.roleOf(claims) : null;
+
+            Authentication authentication;
+            if(role != null) {
+                authentication = new UsernamePasswordAuthenticationToken(
+                        username,
+                        null,
+                        GrantedAuthorityImpl.authoritiesOf(role)
+                );
+            }
+            else {
+                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                authentication = userDetailsAuthenticationConverter.convert(userDetails);
+            }
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
-        } catch (JwtException | UsernameNotFoundException exception) {
+        } catch (JwtException | UsernameNotFoundException | IllegalArgumentException exception) {
             // pass (SecurityContext is cleared)
         }
 
         filterChain.doFilter(request, response);
     }
+
+    // 'iat' in seconds or 0 if the token has none, jjwt keeps it as a number, so nothing is allocated
+    private static long issuedAtOf(Claims claims) {
+        Object issuedAt = claims.get(Claims.ISSUED_AT);
+        return issuedAt instanceof Number number ? number.longValue() : 0;
+    }
 }
@@ -0,0 +1,319 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Verifies the HS512 tokens that {@link JwtUtil} itself mints, without going through jjwt's generic parser.<br>
+ * The MAC is computed with a per-thread {@link Mac} over per-thread buffers and the payload is read
+ * by a small scanner, which only knows the claims {@link JwtUtil} puts into tokens
+ * (sub, iat, exp, iss, role and uid).<br>
+ * {@link #verify(String)} returns null whenever the token is anything else than that
+ * (different header, unknown claims, escaped strings, expired token...),
+ * so the caller can fall back to jjwt, which reports the exact problem.
+ * Only a token with the expected header and a wrong signature is rejected here.<br>
+ * Every key of the {@link JwtKeyRing} has its own expected header, which carries the key's id,
+ * so the key is picked by comparing the header.<br><br>
+ *
+ * @see JwtUtil
+ * @see Mac
+ * @author Adam Balski
+ */
+public class FastJwtVerifier {
+    // base64url('{"alg":"HS512"}'), jjwt's header of an HS512 token
+    static final String HS512_HEADER = "eyJhbGciOiJIUzUxMiJ9";
+    private static final String MAC_ALGORITHM = "HmacSHA512";
+    private static final int SIGNATURE_LENGTH = 64;
+    private static final int ENCODED_SIGNATURE_LENGTH = 86;
+
+    private static final byte[] BASE64_URL_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_URL_VALUES, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for(int i = 0; i < alphabet.length(); i++) {
+            BASE64_URL_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    // Claims that can be found in a token minted by JwtUtil
+    private static final byte[][] KNOWN_CLAIMS = {
+            ascii(Claims.SUBJECT),
+            ascii(Claims.ISSUED_AT),
+            ascii(Claims.EXPIRATION),
+            ascii(Claims.ISSUER),
+            ascii(JwtUtil.ROLE_CLAIM),
+            ascii(JwtUtil.USER_ID_CLAIM)
+    };
+    private static final int SUBJECT = 0, ISSUED_AT = 1, EXPIRATION = 2, ISSUER = 3, ROLE = 4, USER_ID = 5;
+
+    // headers[i] is the expected header of tokens signed with keySpecs[i]
+    private final String[] headers;
+    private final SecretKeySpec[] keySpecs;
+    private final ThreadLocal<Buffers> buffers;
+    private final Clock clock;
+
+    public FastJwtVerifier(SecretKey secretKey) {
+        this(JwtKeyRing.of(secretKey));
+    }
+
+    public FastJwtVerifier(JwtKeyRing keyRing) {
+        this(keyRing, Clock.systemUTC());
+    }
+
+    public FastJwtVerifier(SecretKey secretKey, Clock clock) {
+        this(JwtKeyRing.of(secretKey), clock);
+    }
+
+    public FastJwtVerifier(JwtKeyRing keyRing, Clock clock) {
+        // asymmetric tokens are always verified by jjwt
+        List<String> keyIds = keyRing.getAlgorithm() == SignatureAlgorithm.HS512
+                ? new ArrayList<>(keyRing.getKeyIds())
+                : List.of();
+        int size = keyIds.size();
+        this.headers = new String[size];
+        this.keySpecs = new SecretKeySpec[size];
+
+        int i = 0;
+        for(String keyId : keyIds) {
+            headers[i] = headerOf(keyId);
+            keySpecs[i] = new SecretKeySpec(keyRing.getKey(keyId).getEncoded(), MAC_ALGORITHM);
+            i++;
+        }
+
+        this.buffers = ThreadLocal.withInitial(() -> new Buffers(size));
+        this.clock = clock;
+    }
+
+    // The header jjwt writes for a token signed by JwtUtil, 'kid' goes first since it is set before 'alg'
+    static String headerOf(String keyId) {
+        if(keyId == null) {
+            return HS512_HEADER;
+        }
+
+        String json = "{\"kid\":\"" + keyId + "\",\"alg\":\"HS512\"}";
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Expects a token without the 'Bearer ' prefix
+    // Returns null if the token has to be verified by jjwt
+    public Claims verify(String token) throws SignatureException {
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = token.indexOf('.', headerEnd + 1);
+
+        if(payloadEnd < 0 || token.length() - payloadEnd - 1 != ENCODED_SIGNATURE_LENGTH) {
+            return null;
+        }
+
+        int key = keyOf(token, headerEnd);
+        if(key < 0) {
+            return null;
+        }
+
+        Buffers buffers = this.buffers.get();
+
+        // header.payload
+        byte[] signedBytes = buffers.signedBytes(payloadEnd);
+        for(int i = 0; i < payloadEnd; i++) {
+            char c = token.charAt(i);
+            if(c >= 128) return null;
+            signedBytes[i] = (byte) c;
+        }
+
+        if(decode(token, payloadEnd + 1, token.length(), buffers.signature) != SIGNATURE_LENGTH) {
+            return null;
+        }
+        if(!buffers.macMatches(keySpecs[key], key, signedBytes, payloadEnd)) {
+            throw new SignatureException("JWT signature does not match locally computed signature. " +
+                    "JWT validity cannot be asserted and should not be trusted.");
+        }
+
+        // payload is decoded into signedBytes, which are not needed anymore
+        int payloadLength = decode(token, headerEnd + 1, payloadEnd, signedBytes);
+        if(payloadLength < 0) {
+            return null;
+        }
+
+        return scanPayload(signedBytes, payloadLength);
+    }
+
+    // Reads {"sub":"...","iat":123,"exp":123,"iss":"...","role":"...","uid":"..."}
+    // in any order, without whitespace and without escape sequences
+    private Claims scanPayload(byte[] json, int length) {
+        String[] strings = new String[KNOWN_CLAIMS.length];
+        long issuedAt = -1;
+        long expiration = -1;
+        int seen = 0;
+
+        int i = 0;
+        if(length < 2 || json[i++] != '{') return null;
+
+        while(true) {
+            // key
+            if(i >= length || json[i++] != '"') return null;
+            int keyStart = i;
+            while(i < length && json[i] != '"' && json[i] != '\\') i++;
+            if(i >= length || json[i] != '"') return null;
+            int claim = knownClaim(json, keyStart, i);
+            if(claim < 0 || (seen & (1 << claim)) != 0) return null;
+            seen |= 1 << claim;
+            i++;
+
+            if(i >= length || json[i++] != ':') return null;
+
+            // value
+            if(claim == ISSUED_AT || claim == EXPIRATION) {
+                long number = 0;
+                int numberStart = i;
+                while(i < length && json[i] >= '0' && json[i] <= '9' && i - numberStart < 18) {
+                    number = number * 10 + (json[i++] - '0');
+                }
+                if(i == numberStart) return null;
+
+                if(claim == ISSUED_AT) issuedAt = number;
+                else expiration = number;
+            }
+            else {
+                if(i >= length || json[i++] != '"') return null;
+                int valueStart = i;
+                while(i < length && json[i] != '"' && json[i] != '\\') i++;
+                if(i >= length || json[i] != '"') return null;
+                strings[claim] = new String(json, valueStart, i - valueStart, StandardCharsets.UTF_8);
+                i++;
+            }
+
+            if(i >= length) return null;
+            byte separator = json[i++];
+            if(separator == '}') break;
+            if(separator != ',') return null;
+        }
+
+        // jjwt reports expired tokens and tokens without an expiration date are not minted by JwtUtil
+        if(i != length || expiration < 0 || clock.millis() > expiration * 1000) {
+            return null;
+        }
+
+        Claims claims = Jwts.claims();
+        if(strings[SUBJECT] != null)  claims.setSubject(strings[SUBJECT]);
+        if(issuedAt >= 0)             claims.setIssuedAt(new Date(issuedAt * 1000));
+        claims.setExpiration(new Date(expiration * 1000));
+        if(strings[ISSUER] != null)   claims.setIssuer(strings[ISSUER]);
+        if(strings[ROLE] != null)     claims.put(JwtUtil.ROLE_CLAIM, strings[ROLE]);
+        if(strings[USER_ID] != null)  claims.put(JwtUtil.USER_ID_CLAIM, strings[USER_ID]);
+
+        return claims;
+    }
+
+    // Returns the index of the key whose header the token has or -1
+    private int keyOf(String token, int headerEnd) {
+        for(int i = 0; i < headers.length; i++) {
+            if(headers[i].length() == headerEnd && token.startsWith(headers[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int knownClaim(byte[] json, int start, int end) {
+        outer:
+        for(int claim = 0; claim < KNOWN_CLAIMS.length; claim++) {
+            byte[] name = KNOWN_CLAIMS[claim];
+            if(name.length != end - start) continue;
+
+            for(int j = 0; j < name.length; j++) {
+                if(name[j] != json[start + j]) continue outer;
+            }
+            return claim;
+        }
+        return -1;
+    }
+
+    // Decodes unpadded base64url chars of 'source' from 'start' (inclusive) to 'end' (exclusive)
+    // Returns the decoded length or -1 if the input is not base64url or does not fit
+    private static int decode(String source, int start, int end, byte[] destination) {
+        int length = end - start;
+        if(length % 4 == 1 || length / 4 * 3 + Math.max(0, length % 4 - 1) > destination.length) {
+            return -1;
+        }
+
+        int written = 0;
+        int accumulator = 0;
+        int bits = 0;
+        for(int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            int value = c < 128 ? BASE64_URL_VALUES[c] : -1;
+            if(value < 0) return -1;
+
+            accumulator = (accumulator << 6) | value;
+            bits += 6;
+            if(bits >= 8) {
+                bits -= 8;
+                destination[written++] = (byte) (accumulator >> bits);
+            }
+        }
+
+        // left over bits must be zeros, so that a token has only one encoding
+        return (accumulator & ((1 << bits) - 1)) == 0 ? written : -1;
+    }
+
+    private static byte[] ascii(String string) {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Everything a thread needs to verify a token, reused between tokens
+    private static final class Buffers {
+        // one Mac per key, created when the key is used for the first time
+        private final Mac[] macs;
+        private final byte[] signature = new byte[SIGNATURE_LENGTH];
+        private final byte[] computedSignature = new byte[SIGNATURE_LENGTH];
+        private byte[] signedBytes = new byte[512];
+
+        Buffers(int keys) {
+            this.macs = new Mac[keys];
+        }
+
+        byte[] signedBytes(int length) {
+            if(signedBytes.length < length) {
+                signedBytes = new byte[Math.max(length, signedBytes.length * 2)];
+            }
+            return signedBytes;
+        }
+
+        // Constant time comparison
+        boolean macMatches(SecretKeySpec keySpec, int key, byte[] signed, int length) {
+            try {
+                Mac mac = macs[key];
+                if(mac == null) {
+                    mac = Mac.getInstance(MAC_ALGORITHM);
+                    mac.init(keySpec);
+                    macs[key] = mac;
+                }
+
+                mac.update(signed, 0, length);
+                mac.doFinal(computedSignature, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+
+            int difference = 0;
+            for(int i = 0; i < SIGNATURE_LENGTH; i++) {
+                difference |= signature[i] ^ computedSignature[i];
+            }
+            return difference == 0;
+        }
+    }
+}
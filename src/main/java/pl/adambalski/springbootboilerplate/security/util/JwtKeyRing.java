@@ -0,0 +1,221 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.*;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Set of keys used to sign and verify JWTs. Every key has an id, which is put into
+ * the 'kid' header of tokens, so the verifying side picks the right key with one map lookup.<br>
+ * Exactly one key is active, that is used to sign new tokens. The other ones only verify tokens,
+ * which makes it possible to rotate keys without invalidating tokens already given out:
+ * <ol>
+ *     <li>add the new key to the ring of every node (it is not active yet, so nobody signs with it),</li>
+ *     <li>make the new key active on every node,</li>
+ *     <li>remove the old key once the last token it signed has expired (access tokens live for 10 minutes).</li>
+ * </ol>
+ * Keys are HS512 secrets by default. With ES256 or RS256 tokens are signed with a private key
+ * and verified with public keys, which are published by {@link #getPublicKeys()},
+ * so other services can verify tokens without knowing any secret.<br>
+ * {@link #load(Path, SignatureAlgorithm)} reads a key ring from a properties file:
+ * <pre>
+ * # key used to sign new tokens
+ * active = 2026-10
+ * # HS512: base64 encoded keys, at least 64 bytes each (for example "openssl rand -base64 64")
+ * key.2026-10 = ...
+ * key.2026-09 = ...
+ * # ES256 and RS256: base64 encoded PKCS#8 private key of the active key
+ * # and X.509 public keys of every key
+ * key.2026-10 = ...
+ * public.2026-10 = ...
+ * public.2026-09 = ...
+ * </pre>
+ *
+ * @see JwtUtil
+ * @see FastJwtVerifier
+ * @author Adam Balski
+ */
+public final class JwtKeyRing {
+    public static final String EPHEMERAL_KEY_ID = "ephemeral";
+    public static final Set<SignatureAlgorithm> SUPPORTED_ALGORITHMS =
+            EnumSet.of(SignatureAlgorithm.HS512, SignatureAlgorithm.ES256, SignatureAlgorithm.RS256);
+
+    private static final String ACTIVE_PROPERTY = "active";
+    private static final String KEY_PROPERTY_PREFIX = "key.";
+    private static final String PUBLIC_KEY_PROPERTY_PREFIX = "public.";
+    // key ids are put into the token's header as they are
+    private static final Pattern KEY_ID_PATTERN = Pattern.compile("[a-zA-Z0-9._-]{1,64}");
+
+    private final SignatureAlgorithm algorithm;
+    // secret keys with HS512, public keys otherwise
+    private final Map<String, Key> verificationKeys;
+    private final String activeKeyId;
+    private final Key signingKey;
+
+    private JwtKeyRing(SignatureAlgorithm algorithm, Map<String, ? extends Key> verificationKeys,
+                       String activeKeyId, Key signingKey) {
+        checkAlgorithm(algorithm);
+        if(!verificationKeys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("There is no active key '" + activeKeyId + "' in the key ring");
+        }
+
+        this.algorithm = algorithm;
+        this.verificationKeys = Collections.unmodifiableMap(new HashMap<>(verificationKeys));
+        this.activeKeyId = activeKeyId;
+        this.signingKey = signingKey;
+    }
+
+    // Key ring with a single key and without key ids, so tokens are minted without the 'kid' header
+    public static JwtKeyRing of(SecretKey secretKey) {
+        Map<String, SecretKey> keys = new HashMap<>();
+        keys.put(null, secretKey);
+
+        return new JwtKeyRing(SignatureAlgorithm.HS512, keys, null, secretKey);
+    }
+
+    public static JwtKeyRing of(Map<String, SecretKey> keys, String activeKeyId) {
+        keys.keySet().forEach(JwtKeyRing::checkKeyId);
+        return new JwtKeyRing(SignatureAlgorithm.HS512, keys, activeKeyId, keys.get(activeKeyId));
+    }
+
+    // Asymmetric key ring, 'privateKey' is the private key of the active key
+    public static JwtKeyRing of(SignatureAlgorithm algorithm, Map<String, PublicKey> publicKeys,
+                                String activeKeyId, PrivateKey privateKey) {
+        if(!algorithm.isEllipticCurve() && !algorithm.isRsa()) {
+            throw new IllegalArgumentException("Algorithm " + algorithm + " does not use public keys");
+        }
+        publicKeys.keySet().forEach(JwtKeyRing::checkKeyId);
+        publicKeys.values().forEach(algorithm::assertValidVerificationKey);
+        algorithm.assertValidSigningKey(privateKey);
+
+        return new JwtKeyRing(algorithm, publicKeys, activeKeyId, privateKey);
+    }
+
+    // Random key, which lives as long as the JVM
+    public static JwtKeyRing ephemeral() {
+        return ephemeral(SignatureAlgorithm.HS512);
+    }
+
+    public static JwtKeyRing ephemeral(SignatureAlgorithm algorithm) {
+        checkAlgorithm(algorithm);
+        if(algorithm.isHmac()) {
+            return of(Map.of(EPHEMERAL_KEY_ID, Keys.secretKeyFor(algorithm)), EPHEMERAL_KEY_ID);
+        }
+
+        KeyPair keyPair = Keys.keyPairFor(algorithm);
+        return of(algorithm, Map.of(EPHEMERAL_KEY_ID, keyPair.getPublic()), EPHEMERAL_KEY_ID, keyPair.getPrivate());
+    }
+
+    public static JwtKeyRing load(Path path, SignatureAlgorithm algorithm) throws IOException {
+        checkAlgorithm(algorithm);
+        Properties properties = new Properties();
+        try(Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+
+        String activeKeyId = properties.getProperty(ACTIVE_PROPERTY);
+        if(activeKeyId == null) {
+            throw new IllegalArgumentException("Key ring " + path + " has no '" + ACTIVE_PROPERTY + "' property");
+        }
+        activeKeyId = activeKeyId.trim();
+
+        if(algorithm.isHmac()) {
+            Map<String, SecretKey> keys = new HashMap<>();
+            for(String name : properties.stringPropertyNames()) {
+                if(name.startsWith(KEY_PROPERTY_PREFIX)) {
+                    byte[] encoded = decode(properties, name);
+                    if(encoded.length < 64) {
+                        throw new IllegalArgumentException("Key '" + name + "' is too short for HS512");
+                    }
+                    keys.put(name.substring(KEY_PROPERTY_PREFIX.length()), Keys.hmacShaKeyFor(encoded));
+                }
+            }
+
+            return of(keys, activeKeyId);
+        }
+
+        String privateKeyName = KEY_PROPERTY_PREFIX + activeKeyId;
+        if(properties.getProperty(privateKeyName) == null) {
+            throw new IllegalArgumentException("Key ring " + path + " has no '" + privateKeyName + "' property");
+        }
+
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(algorithm.isEllipticCurve() ? "EC" : "RSA");
+            PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decode(properties, privateKeyName)));
+
+            Map<String, PublicKey> publicKeys = new HashMap<>();
+            for(String name : properties.stringPropertyNames()) {
+                if(name.startsWith(PUBLIC_KEY_PROPERTY_PREFIX)) {
+                    PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(decode(properties, name)));
+                    publicKeys.put(name.substring(PUBLIC_KEY_PROPERTY_PREFIX.length()), publicKey);
+                }
+            }
+
+            return of(algorithm, publicKeys, activeKeyId, privateKey);
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalArgumentException("Key ring " + path + " has an invalid " + algorithm + " key", e);
+        }
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    // Returns null if there is no such key
+    public Key getKey(String keyId) {
+        return verificationKeys.get(keyId);
+    }
+
+    // Secret key with HS512, private key otherwise
+    public Key getActiveKey() {
+        return signingKey;
+    }
+
+    // null if tokens are minted without the 'kid' header
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public Set<String> getKeyIds() {
+        return verificationKeys.keySet();
+    }
+
+    // Keys which can be shown to anyone, empty with HS512
+    public Map<String, PublicKey> getPublicKeys() {
+        Map<String, PublicKey> publicKeys = new HashMap<>();
+        verificationKeys.forEach((keyId, key) -> {
+            if(key instanceof PublicKey publicKey) {
+                publicKeys.put(keyId, publicKey);
+            }
+        });
+
+        return publicKeys;
+    }
+
+    private static byte[] decode(Properties properties, String name) {
+        return Base64.getDecoder().decode(properties.getProperty(name).trim());
+    }
+
+    private static void checkAlgorithm(SignatureAlgorithm algorithm) {
+        if(!SUPPORTED_ALGORITHMS.contains(algorithm)) {
+            throw new IllegalArgumentException("Algorithm " + algorithm + " is not one of " + SUPPORTED_ALGORITHMS);
+        }
+    }
+
+    private static void checkKeyId(String keyId) {
+        if(keyId == null || !KEY_ID_PATTERN.matcher(keyId).matches()) {
+            throw new IllegalArgumentException("Key id '" + keyId + "' does not match " + KEY_ID_PATTERN);
+        }
+    }
+}
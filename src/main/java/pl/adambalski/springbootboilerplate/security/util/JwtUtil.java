@@ -1,9 +1,12 @@
 package pl.adambalski.springbootboilerplate.security.util;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.security.SignatureException;
+import pl.adambalski.springbootboilerplate.model.Role;
 import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
@@ -11,32 +14,64 @@ import java.util.UUID;
 
 /**
  * SWT utility class used for generating bearer tokens and verifying them.<br>
- * {@link #tokenOf(String)} gets JWT out of the uuid and signs it with {@link SecretKey} object from constructor.
+ * {@link #tokenOf(String)} gets JWT out of the uuid and signs it with the active key of a {@link JwtKeyRing}
+ * (HS512 by default, ES256 or RS256 if the ring is asymmetric).
  * Token is in a form of 'Bearer ${SWT}'.<br>
+ * Id of the key is put into the 'kid' header, so tokens signed with any key of the ring can be verified.<br>
+ * {@link #tokenOf(String, Role, UUID)} additionally embeds the user's {@link Role} and id as claims,
+ * so the token can be authenticated without looking the user up in the database.<br>
  * {@link #verifyAndGetClaims(String)} gets {@link Claims}
  * and verifies if Jwt is malformed, expired or has an invalid signature.
- * Token is in a form of 'Bearer ${SWT}'<br><br>
+ * Token is in a form of 'Bearer ${SWT}'.
+ * HS512 tokens are minted by {@link FastJwtSigner}, if it can, and by jjwt otherwise.
+ * Tokens minted by {@link JwtUtil} are verified by {@link FastJwtVerifier} and other ones by jjwt.
+ * Verified tokens are remembered in a {@link VerifiedTokenCache} until they expire.<br><br>
  *
  * @see Jwts
  * @see Claims
  * @see UUID
+ * @see VerifiedTokenCache
+ * @see FastJwtVerifier
+ * @see JwtKeyRing
  * @author Adam Balski
  */
 public class JwtUtil {
-    private final SecretKey key;
+    public static final String ROLE_CLAIM = "role";
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ISSUER = "server-core";
+
+    private final JwtKeyRing keyRing;
     private final Duration expiresIn;
     private final JwtParser jwtParser;
+    private final FastJwtVerifier fastJwtVerifier;
+    private final FastJwtSigner fastJwtSigner;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     public JwtUtil(SecretKey secretKey) {
-        this(secretKey, Duration.ofMinutes(10));
+        this(JwtKeyRing.of(secretKey));
+    }
+
+    public JwtUtil(JwtKeyRing keyRing) {
+        this(keyRing, new VerifiedTokenCache(SecurityConfiguration.VERIFIED_TOKEN_CACHE_SIZE));
+    }
+
+    public JwtUtil(SecretKey secretKey, VerifiedTokenCache verifiedTokenCache) {
+        this(JwtKeyRing.of(secretKey), verifiedTokenCache);
+    }
+
+    public JwtUtil(JwtKeyRing keyRing, VerifiedTokenCache verifiedTokenCache) {
+        this(keyRing, Duration.ofMinutes(10), verifiedTokenCache);
     }
 
-    private JwtUtil(SecretKey secretKey, Duration expiresIn) {
-        this.key = secretKey;
+    private JwtUtil(JwtKeyRing keyRing, Duration expiresIn, VerifiedTokenCache verifiedTokenCache) {
+        this.keyRing = keyRing;
         this.expiresIn = expiresIn;
+        this.verifiedTokenCache = verifiedTokenCache;
         this.jwtParser = Jwts.parserBuilder()
-                .setSigningKey(key)
+                .setSigningKeyResolver(new KeyRingResolver(keyRing))
                 .build();
+        this.fastJwtVerifier = new FastJwtVerifier(keyRing);
+        this.fastJwtSigner = new FastJwtSigner(keyRing, ISSUER, expiresIn);
     }
 
     // Checks for token malformation,
@@ -45,17 +80,99 @@ public class JwtUtil {
     public Claims verifyAndGetClaims(String token) throws JwtException {
         if(token == null)   throw new JwtException("SWT token cannot be null");
 
-        token = token.replaceFirst(SecurityConfiguration.JWT_TOKEN_PREFIX, "");
-        return jwtParser.parseClaimsJws(token).getBody();
+        if(token.startsWith(SecurityConfiguration.JWT_TOKEN_PREFIX)) {
+            token = token.substring(SecurityConfiguration.JWT_TOKEN_PREFIX.length());
+        }
+
+        Claims claims = verifiedTokenCache.get(token);
+        if(claims == null) {
+            // null if the token does not look like one minted by tokenOf
+            claims = fastJwtVerifier.verify(token);
+            if(claims == null) {
+                claims = jwtParser.parseClaimsJws(token).getBody();
+            }
+            verifiedTokenCache.put(token, claims);
+        }
+
+        return claims;
+    }
+
+    // Lifetime of access tokens
+    public Duration getExpiresIn() {
+        return expiresIn;
+    }
+
+    public JwtKeyRing getKeyRing() {
+        return keyRing;
+    }
+
+    public VerifiedTokenCache getVerifiedTokenCache() {
+        return verifiedTokenCache;
     }
 
     public String tokenOf(String subject) {
-        return SecurityConfiguration.JWT_TOKEN_PREFIX + Jwts.builder()
+        // null if the token has to be minted by jjwt
+        String token = fastJwtSigner.sign(subject, null, null);
+        if(token != null) {
+            return token;
+        }
+
+        return SecurityConfiguration.JWT_TOKEN_PREFIX + builderOf(subject).compact();
+    }
+
+    public String tokenOf(String subject, Role role, UUID userId) {
+        String token = fastJwtSigner.sign(subject, role, userId);
+        if(token != null) {
+            return token;
+        }
+
+        return SecurityConfiguration.JWT_TOKEN_PREFIX + builderOf(subject)
+                .claim(ROLE_CLAIM, role.name())
+                .claim(USER_ID_CLAIM, userId.toString())
+                .compact();
+    }
+
+    // Returns null if the token was minted without a role
+    public static Role roleOf(Claims claims) {
+        String role = claims.get(ROLE_CLAIM, String.class);
+        return role == null ? null : Role.valueOf(role);
+    }
+
+    private JwtBuilder builderOf(String subject) {
+        JwtBuilder builder = Jwts.builder();
+        if(keyRing.getActiveKeyId() != null) {
+            // FastJwtVerifier expects 'kid' to be the first header
+            builder.setHeaderParam(JwsHeader.KEY_ID, keyRing.getActiveKeyId());
+        }
+
+        return builder
                 .setSubject(subject)
                 .setIssuedAt(new Date())
                 .setExpiration(Date.from(Instant.now().plus(expiresIn)))
-                .setIssuer("server-core")
-                .signWith(key, SignatureAlgorithm.HS512)
-                .compact();
+                .setIssuer(ISSUER)
+                .signWith(keyRing.getActiveKey(), keyRing.getAlgorithm());
+    }
+
+    // Picks the key by the token's 'kid' header
+    private static final class KeyRingResolver extends SigningKeyResolverAdapter {
+        private final JwtKeyRing keyRing;
+
+        KeyRingResolver(JwtKeyRing keyRing) {
+            this.keyRing = keyRing;
+        }
+
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            // a token cannot choose how it is verified
+            if(!keyRing.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+                throw new SignatureException("JWT was signed with " + header.getAlgorithm() + " instead of " + keyRing.getAlgorithm());
+            }
+
+            Key key = keyRing.getKey(header.getKeyId());
+            if(key == null) {
+                throw new SignatureException("JWT was signed with an unknown key '" + header.getKeyId() + "'");
+            }
+            return key;
+        }
     }
 }
@@ -0,0 +1,84 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.Claims;
+import pl.adambalski.springbootboilerplate.util.BoundedExpiringCache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Date;
+
+/**
+ * Caches {@link Claims} of JWTs, which have already been verified by {@link JwtUtil},
+ * so the same token does not get its signature checked and its body parsed on each request.<br>
+ * Tokens are kept under their SHA-256 digest (not the token itself) until they expire.<br>
+ * Cached {@link Claims} are shared between callers, so they must not be modified.<br><br>
+ *
+ * @see JwtUtil
+ * @see BoundedExpiringCache
+ * @author Adam Balski
+ */
+public class VerifiedTokenCache {
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final BoundedExpiringCache<Digest, Claims> cache;
+
+    public VerifiedTokenCache(int maxSize) {
+        this(maxSize, Clock.systemUTC());
+    }
+
+    public VerifiedTokenCache(int maxSize, Clock clock) {
+        this.cache = new BoundedExpiringCache<>(maxSize, clock);
+    }
+
+    // Returns null if the token has not been verified yet or if it has expired
+    public Claims get(String token) {
+        return cache.get(Digest.of(token));
+    }
+
+    // Tokens without an expiration date are not cached
+    public void put(String token, Claims claims) {
+        Date expiration = claims.getExpiration();
+        if(expiration != null) {
+            cache.put(Digest.of(token), claims, expiration.getTime());
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    // 256 bits of SHA-256 as four longs, so equals and hashCode come for free
+    private record Digest(long first, long second, long third, long fourth) {
+        static Digest of(String token) {
+            MessageDigest messageDigest = SHA_256.get();
+            ByteBuffer digest = ByteBuffer.wrap(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+
+            return new Digest(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package pl.adambalski.springbootboilerplate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
 import pl.adambalski.springbootboilerplate.exception.NoSuchUserException;
 import pl.adambalski.springbootboilerplate.model.User;
 import pl.adambalski.springbootboilerplate.repository.AdminRepository;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.security.TokenRevocations;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -14,16 +18,26 @@ import java.util.UUID;
  *
  * @author Adam Balski
  * @see AdminRepository
+ * @see RefreshTokenRepository
  * @see pl.adambalski.springbootboilerplate.controller.admin.AdminController
  * @see User
+ * @see UserChangedEvent
+ * @see TokenRevocations
  */
 @Service
 public class AdminService {
     private final AdminRepository adminRepository;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final TokenRevocations tokenRevocations;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    AdminService(AdminRepository adminRepository) {
+    AdminService(AdminRepository adminRepository, RefreshTokenRepository refreshTokenRepository,
+                 TokenRevocations tokenRevocations, ApplicationEventPublisher eventPublisher) {
         this.adminRepository = adminRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.tokenRevocations = tokenRevocations;
+        this.eventPublisher = eventPublisher;
     }
 
     public User getUserByUUID(UUID uuid) throws NoSuchUserException {
@@ -37,7 +51,17 @@ public class AdminService {
     }
 
     public void deleteByLogin(String login) throws NoSuchUserException {
-        if(adminRepository.deleteByLogin(login) == 0) {
+        int deleted = adminRepository.deleteByLogin(login);
+        if(deleted != 0) {
+            // access tokens given out before are not accepted anymore
+            tokenRevocations.revoke(login);
+            // nor are refresh tokens, a user signed up later with the same login must not get them
+            refreshTokenRepository.deleteAllByUserLogin(login);
+        }
+        // cached UserDetails and refresh tokens are dropped before this returns
+        eventPublisher.publishEvent(new UserChangedEvent(login));
+
+        if(deleted == 0) {
             throw new NoSuchUserException();
         }
     }
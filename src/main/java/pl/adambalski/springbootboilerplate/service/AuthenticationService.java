@@ -2,7 +2,8 @@ package pl.adambalski.springbootboilerplate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -10,15 +11,17 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import pl.adambalski.springbootboilerplate.dto.JwtTokenDto;
 import pl.adambalski.springbootboilerplate.dto.LoginDto;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
 import pl.adambalski.springbootboilerplate.exception.AtLeastOneFieldIncorrectException;
 import pl.adambalski.springbootboilerplate.exception.NoSuchRefreshTokenException;
 import pl.adambalski.springbootboilerplate.exception.NoSuchUsernameAuthenticationException;
 import pl.adambalski.springbootboilerplate.exception.PasswordDoesNotMatchException;
+import pl.adambalski.springbootboilerplate.exception.PasswordHashingOverloadedException;
 import pl.adambalski.springbootboilerplate.logger.Logger;
-import pl.adambalski.springbootboilerplate.logger.Status;
 import pl.adambalski.springbootboilerplate.model.RefreshToken;
-import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
-import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+import pl.adambalski.springbootboilerplate.model.User;
+import pl.adambalski.springbootboilerplate.repository.UserRepository;
+import pl.adambalski.springbootboilerplate.security.LoginThrottle;
 import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
 import pl.adambalski.springbootboilerplate.util.RandomAlphaNumericStringGenerator;
 
@@ -28,61 +31,91 @@ import pl.adambalski.springbootboilerplate.util.RandomAlphaNumericStringGenerato
  * @author Adam Balski
  * @see pl.adambalski.springbootboilerplate.controller.user.AuthenticationController
  * @see JwtUtil
- * @see RefreshTokenRepository
+ * @see RefreshTokenValidationCache
+ * @see RefreshTokenWriter
  * @see UserDetailsService
+ * @see LoginThrottle
+ * @see RefreshCoalescer
  */
 @Service
 public class AuthenticationService {
-    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenValidationCache refreshTokenValidationCache;
+    private final RefreshTokenWriter refreshTokenWriter;
+    private final UserRepository userRepository;
     private final UserDetailsService userDetailsService;
     private final JwtUtil jwtUtil;
     private final PasswordEncoder passwordEncoder;
     private final RandomAlphaNumericStringGenerator randomAlphaNumericStringGenerator;
+    private final LoginThrottle loginThrottle;
+    private final RefreshCoalescer refreshCoalescer;
+    private final ApplicationEventPublisher eventPublisher;
     private final Logger logger;
-
+    private boolean statelessJwt;
 
     @Autowired
-    public AuthenticationService(RefreshTokenRepository refreshTokenRepository,
+    public AuthenticationService(RefreshTokenValidationCache refreshTokenValidationCache,
+                                 RefreshTokenWriter refreshTokenWriter,
+                                 UserRepository userRepository,
                                  UserDetailsService userDetailsService,
+                                 JwtUtil jwtUtil,
                                  PasswordEncoder passwordEncoder,
                                  RandomAlphaNumericStringGenerator randomAlphaNumericStringGenerator,
+                                 LoginThrottle loginThrottle,
+                                 RefreshCoalescer refreshCoalescer,
+                                 ApplicationEventPublisher eventPublisher,
                                  @Qualifier("slf4jLogger") Logger logger) {
-        this.refreshTokenRepository = refreshTokenRepository;
-        this.jwtUtil = new JwtUtil(SecurityConfiguration.KEY);
+        this.refreshTokenValidationCache = refreshTokenValidationCache;
+        this.refreshTokenWriter = refreshTokenWriter;
+        this.userRepository = userRepository;
+        this.jwtUtil = jwtUtil;
         this.passwordEncoder = passwordEncoder;
         this.userDetailsService = userDetailsService;
         this.randomAlphaNumericStringGenerator = randomAlphaNumericStringGenerator;
+        this.loginThrottle = loginThrottle;
+        this.refreshCoalescer = refreshCoalescer;
+        this.eventPublisher = eventPublisher;
         this.logger = logger;
     }
 
-    @Scheduled(fixedRate = 24 * 3600 * 1000) // one time each day
-    public void deleteAllExpired() {
-        refreshTokenRepository.deleteAllByExpirationDateBeforeNow();
-        logger.log("DELETED ALL EXPIRED", AuthenticationService.class, Status.INFO);
+    @Autowired
+    private void setStatelessJwt(@Value(value = "${app.security.jwt.stateless}") boolean statelessJwt) {
+        this.statelessJwt = statelessJwt;
     }
 
-    public RefreshToken authenticate(LoginDto loginDto) {
+    public RefreshToken authenticate(LoginDto loginDto, String clientAddress) {
         String username = loginDto.username();
         String password = loginDto.password();
 
         // throws AtLeastOneFieldIncorrectException if username or password is null
         checkIfCredentialsAreNull(username, password);
+        // throws TooManyLoginAttemptsException if the user or the client has tried too many times
+        loginThrottle.checkAttempt(username, clientAddress);
         // throws spring security's UsernameNotFoundException if user does not exist
         UserDetails userDetails = loadUserDetails(username);
         // throws PasswordDoesNotMatchException if password is not correct
         checkIfPasswordMatches(userDetails, password);
+        // the password may have been hashed with a lower BCrypt cost, before the cost was raised
+        rehashIfNeeded(username, password, userDetails);
 
         RefreshToken refreshToken = RefreshToken.createRefreshToken(loginDto.username(), randomAlphaNumericStringGenerator);
-        refreshTokenRepository.save(refreshToken);
+        // returns after the token has been committed, with group commit together with tokens of other logins
+        refreshTokenWriter.save(refreshToken);
 
         return refreshToken;
     }
 
-    public JwtTokenDto refresh(String username, String refreshTokenValue) {
-        if(refreshTokenRepository.existsByUserLoginAndToken(username, refreshTokenValue)) {
-            return getJwtTokenDto(username);
-        }
-        throw new NoSuchRefreshTokenException();
+    // The token alone identifies its owner
+    // Concurrent refreshes with the same token are done once (see RefreshCoalescer)
+    public JwtTokenDto refresh(String refreshTokenValue) {
+        byte[] tokenHash = RefreshToken.hashOf(refreshTokenValue);
+
+        return refreshCoalescer.refresh(tokenHash, () -> {
+            // most refreshes are answered without querying the database
+            String username = refreshTokenValidationCache.findUserLoginByTokenHash(tokenHash)
+                    .orElseThrow(NoSuchRefreshTokenException::new);
+
+            return new RefreshCoalescer.Refreshed(username, getJwtTokenDto(username));
+        });
     }
 
     private void checkIfCredentialsAreNull(String username, String password) {
@@ -105,7 +138,30 @@ public class AuthenticationService {
         }
     }
 
+    private void rehashIfNeeded(String username, String password, UserDetails userDetails) {
+        if(!passwordEncoder.upgradeEncoding(userDetails.getPassword())) {
+            return;
+        }
+
+        try {
+            if(userRepository.updatePasswordByLogin(username, userDetails.getPassword(), passwordEncoder.encode(password)) == 1) {
+                // cached UserDetails still have the old hash
+                eventPublisher.publishEvent(new UserChangedEvent(username));
+            }
+        } catch(PasswordHashingOverloadedException e) {
+            // the user is already authenticated, the password will be rehashed on another login
+        }
+    }
+
+    // In stateless mode the role and the id are embedded in the token,
+    // so JwtAuthFilter does not have to look the user up on every request
     private JwtTokenDto getJwtTokenDto(String username) {
-        return new JwtTokenDto(jwtUtil.tokenOf(username));
+        if(!statelessJwt) {
+            return new JwtTokenDto(jwtUtil.tokenOf(username));
+        }
+
+        // the refresh token may outlive its user
+        User user = userRepository.findByLogin(username).orElseThrow(NoSuchRefreshTokenException::new);
+        return new JwtTokenDto(jwtUtil.tokenOf(username, user.getRole(), user.getUuid()));
     }
 }
@@ -0,0 +1,127 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.scheduling.LeaderElection;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Deletes expired refresh tokens every 'app.refresh_token_reaper.interval' in batches
+ * of 'app.refresh_token_reaper.batch_size' rows, each batch in its own short transaction,
+ * so locks are held and WAL is written in small portions instead of one huge DELETE.<br>
+ * It paces itself to at most 'app.refresh_token_reaper.rows_per_second' and stops after
+ * 'app.refresh_token_reaper.max_run_time', whatever is left is deleted by the next run.<br>
+ * Each run is logged and reported as 'refresh.token.reaper.run' (time) and 'refresh.token.reaper.deleted' (rows).<br>
+ * Months, which have ended, are dropped as whole partitions by {@link RefreshTokenPartitionMaintainer},
+ * so this only deletes tokens of the current month and of the default partition.<br>
+ * Scheduled runs are done only by the leader of {@link LeaderElection}, so nodes do not delete the same rows
+ * (while leadership overlaps, rows deleted by the other node are not matched anymore).<br><br>
+ *
+ * @see RefreshTokenPartitionMaintainer
+ * @see RefreshTokenRepository#deleteExpiredBatch(int)
+ * @see LeaderElection
+ * @author Adam Balski
+ */
+@Service
+public class ExpiredRefreshTokenReaper {
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final LeaderElection leaderElection;
+    private final int batchSize;
+    private final int rowsPerSecond;
+    private final long maxRunTimeMillis;
+    private final Clock clock;
+    private final Logger logger;
+
+    private final Timer runTimer;
+    private final Counter deletedCounter;
+
+    @Autowired
+    ExpiredRefreshTokenReaper(RefreshTokenRepository refreshTokenRepository,
+                              LeaderElection leaderElection,
+                              @Value(value = "${app.refresh_token_reaper.batch_size}") int batchSize,
+                              @Value(value = "${app.refresh_token_reaper.rows_per_second}") int rowsPerSecond,
+                              @Value(value = "${app.refresh_token_reaper.max_run_time}") Duration maxRunTime,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              @Qualifier("slf4jLogger") Logger logger) {
+        // there is no registry in sliced tests
+        this(refreshTokenRepository, leaderElection, batchSize, rowsPerSecond, maxRunTime, Clock.systemUTC(),
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new), logger);
+    }
+
+    public ExpiredRefreshTokenReaper(RefreshTokenRepository refreshTokenRepository, LeaderElection leaderElection,
+                                     int batchSize, int rowsPerSecond, Duration maxRunTime, Clock clock, MeterRegistry meterRegistry, Logger logger) {
+        if(batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        if(rowsPerSecond < 1) throw new IllegalArgumentException("rowsPerSecond must be positive");
+
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.leaderElection = leaderElection;
+        this.batchSize = batchSize;
+        this.rowsPerSecond = rowsPerSecond;
+        this.maxRunTimeMillis = maxRunTime.toMillis();
+        this.clock = clock;
+        this.logger = logger;
+
+        this.runTimer = Timer.builder("refresh.token.reaper.run").register(meterRegistry);
+        this.deletedCounter = Counter.builder("refresh.token.reaper.deleted").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.refresh_token_reaper.interval}",
+            initialDelayString = "${app.refresh_token_reaper.interval}")
+    public void scheduledReap() {
+        if(!leaderElection.isLeader()) {
+            return;
+        }
+
+        try {
+            reap();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns the number of deleted tokens
+    public long reap() throws InterruptedException {
+        long start = clock.millis();
+        long deleted = 0;
+
+        while(true) {
+            int deletedInBatch = refreshTokenRepository.deleteExpiredBatch(batchSize);
+            deleted += deletedInBatch;
+
+            long elapsedMillis = clock.millis() - start;
+            if(deletedInBatch < batchSize || elapsedMillis >= maxRunTimeMillis) {
+                break;
+            }
+
+            long pauseMillis = pauseMillis(deleted, elapsedMillis, rowsPerSecond);
+            if(pauseMillis > 0) {
+                Thread.sleep(Math.min(pauseMillis, maxRunTimeMillis - elapsedMillis));
+            }
+        }
+
+        long tookMillis = clock.millis() - start;
+        runTimer.record(Duration.ofMillis(tookMillis));
+        deletedCounter.increment(deleted);
+        logger.log("DELETED " + deleted + " EXPIRED REFRESH TOKENS IN " + tookMillis + "MS", ExpiredRefreshTokenReaper.class, Status.INFO);
+
+        return deleted;
+    }
+
+    // How long to wait, so that 'deleted' rows take at least as long as 'rowsPerSecond' allows
+    static long pauseMillis(long deleted, long elapsedMillis, int rowsPerSecond) {
+        return deleted * 1000 / rowsPerSecond - elapsedMillis;
+    }
+}
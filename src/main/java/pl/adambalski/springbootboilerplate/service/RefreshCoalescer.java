@@ -0,0 +1,151 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.adambalski.springbootboilerplate.dto.JwtTokenDto;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.RefreshTokensEvictedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.util.BoundedExpiringCache;
+import pl.adambalski.springbootboilerplate.util.KeyedGenerations;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent refreshes with the same refresh token, which clients fire in bursts when their access token
+ * expires (several tabs, several API calls at once).<br>
+ * The first refresh of a token looks it up and mints the access token, refreshes of the same token,
+ * which come while it is running, wait for it and get the same result (or the same exception).
+ * The minted access token is then handed out again for 'app.security.refresh_coalescing.reuse_window'
+ * (0 turns reusing off), at most 'app.security.refresh_coalescing.max_size' of them are kept.
+ * Failed refreshes are never reused.<br>
+ * Reused tokens of a user are outdated on {@link UserChangedEvent} (stateless tokens carry the role)
+ * and all of them on {@link AllUsersChangedEvent}, a refresh, which was running meanwhile, is not reused.
+ * Both are O(1), each reused token keeps the generation of its user (see {@link KeyedGenerations})
+ * and is checked when it is about to be handed out again, outdated ones are dropped then or when they expire.
+ * Evicted refresh tokens are dropped on {@link RefreshTokensEvictedEvent}.
+ * A token minted before its user was deleted is rejected by
+ * {@link pl.adambalski.springbootboilerplate.security.TokenRevocations} anyway.<br>
+ * Metrics: 'refresh.coalesced' (refreshes, which waited for a running one) and 'refresh.reused'.<br><br>
+ *
+ * @see AuthenticationService#refresh(String)
+ * @see BoundedExpiringCache
+ * @author Adam Balski
+ */
+@Component
+public class RefreshCoalescer {
+    // keyed by the token's hash, so plain refresh tokens are not kept
+    private final ConcurrentHashMap<ByteBuffer, CompletableFuture<Refreshed>> inFlight = new ConcurrentHashMap<>();
+    private final BoundedExpiringCache<ByteBuffer, Reused> reused;
+    private final long reuseWindowMillis;
+    private final Clock clock;
+    // username -> generation, bumped when the user changes
+    private final KeyedGenerations<String> generations = new KeyedGenerations<>();
+    // token hash -> generation, bumped when the token is evicted
+    private final KeyedGenerations<ByteBuffer> evictions = new KeyedGenerations<>();
+
+    private final Counter coalesced;
+
+    @Autowired
+    RefreshCoalescer(@Value(value = "${app.security.refresh_coalescing.reuse_window}") Duration reuseWindow,
+                     @Value(value = "${app.security.refresh_coalescing.max_size}") int maxSize,
+                     ObjectProvider<MeterRegistry> meterRegistry) {
+        // there is no registry in sliced tests
+        this(reuseWindow, maxSize, Clock.systemUTC(), meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    public RefreshCoalescer(Duration reuseWindow, int maxSize, Clock clock, MeterRegistry meterRegistry) {
+        this.reused = new BoundedExpiringCache<>(maxSize, clock);
+        this.reuseWindowMillis = reuseWindow.toMillis();
+        this.clock = clock;
+
+        this.coalesced = Counter.builder("refresh.coalesced").register(meterRegistry);
+        FunctionCounter.builder("refresh.reused", reused, BoundedExpiringCache::getHitCount).register(meterRegistry);
+    }
+
+    // 'refresh' returns the token's owner and the access token minted for them
+    public JwtTokenDto refresh(byte[] tokenHash, Supplier<Refreshed> refresh) {
+        ByteBuffer key = ByteBuffer.wrap(tokenHash);
+
+        Reused cached = reuseWindowMillis > 0 ? reused.get(key) : null;
+        if(cached != null) {
+            if(generations.isCurrent(cached.refreshed().username(), cached.generation())) {
+                return cached.refreshed().jwtTokenDto();
+            }
+            reused.invalidate(key);
+        }
+
+        CompletableFuture<Refreshed> mine = new CompletableFuture<>();
+        CompletableFuture<Refreshed> running = inFlight.putIfAbsent(key, mine);
+        if(running != null) {
+            coalesced.increment();
+            return join(running).jwtTokenDto();
+        }
+
+        try {
+            long generation = generations.stamp();
+            long evictionsBefore = evictions.stamp();
+            Refreshed refreshed = refresh.get();
+            // the user changed or the token was evicted while refreshing, the minted token may be stale already
+            if(reuseWindowMillis > 0 && generations.isCurrent(refreshed.username(), generation)
+                    && evictions.isCurrent(key, evictionsBefore)) {
+                reused.put(key, new Reused(refreshed, generation), clock.millis() + reuseWindowMillis);
+            }
+            mine.complete(refreshed);
+            return refreshed.jwtTokenDto();
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        generations.invalidate(event.login());
+    }
+
+    @EventListener
+    public void onRefreshTokensEvicted(RefreshTokensEvictedEvent event) {
+        for(ByteBuffer key : event.tokenHashes()) {
+            evictions.invalidate(key);
+            reused.invalidate(key);
+        }
+    }
+
+    @EventListener
+    public void onAllUsersChanged(AllUsersChangedEvent event) {
+        generations.invalidateAll();
+        reused.invalidateAll();
+    }
+
+    // Rethrows what the running refresh has thrown
+    private static Refreshed join(CompletableFuture<Refreshed> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if(e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    public record Refreshed(String username, JwtTokenDto jwtTokenDto) {}
+
+    // 'generation' is the stamp taken before the refresh
+    private record Reused(Refreshed refreshed, long generation) {}
+}
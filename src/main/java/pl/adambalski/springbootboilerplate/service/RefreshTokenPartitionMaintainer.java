@@ -0,0 +1,94 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.scheduling.LeaderElection;
+import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Keeps the monthly partitions of refresh_token (by expiration date) every 'app.refresh_token_partitions.interval':
+ * creates partitions from the current month up to the month, in which a token created now expires,
+ * and 'app.refresh_token_partitions.months_ahead' more, so tokens never land in the default partition,
+ * and drops partitions of months, which have ended, since every token in them has expired.
+ * Tokens of a new month, which are in the default partition already, are moved into the month's partition.
+ * Dropping a partition does not depend on how many tokens it has.<br>
+ * Tokens expiring during the current month are deleted by {@link ExpiredRefreshTokenReaper}.<br>
+ * Scheduled runs are done only by the leader of {@link LeaderElection}, while leadership overlaps
+ * partitions, which the other node has created or dropped already, are skipped.<br><br>
+ *
+ * @see pl.adambalski.springbootboilerplate.repository.RefreshTokenPartitions
+ * @see ExpiredRefreshTokenReaper
+ * @see LeaderElection
+ * @author Adam Balski
+ */
+@Service
+public class RefreshTokenPartitionMaintainer {
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final LeaderElection leaderElection;
+    private final int monthsAhead;
+    private final Clock clock;
+    private final Logger logger;
+
+    @Autowired
+    RefreshTokenPartitionMaintainer(RefreshTokenRepository refreshTokenRepository,
+                                    LeaderElection leaderElection,
+                                    @Value(value = "${app.refresh_token_partitions.months_ahead}") int monthsAhead,
+                                    @Qualifier("slf4jLogger") Logger logger) {
+        this(refreshTokenRepository, leaderElection, monthsAhead, Clock.systemUTC(), logger);
+    }
+
+    public RefreshTokenPartitionMaintainer(RefreshTokenRepository refreshTokenRepository, LeaderElection leaderElection,
+                                           int monthsAhead, Clock clock, Logger logger) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.leaderElection = leaderElection;
+        this.monthsAhead = monthsAhead;
+        this.clock = clock;
+        this.logger = logger;
+    }
+
+    // Runs right after start up, but only the leader maintains: a node, which is not elected yet, waits for the next run.
+    // Meanwhile the partitions created ahead (by the migration and by earlier runs) take the tokens,
+    // a token, which lands in the default partition anyway, is moved when its month's partition is created
+    @Scheduled(fixedDelayString = "${app.refresh_token_partitions.interval}")
+    public void scheduledMaintain() {
+        if(leaderElection.isLeader()) {
+            maintain();
+        }
+    }
+
+    public void maintain() {
+        LocalDate today = LocalDate.now(clock);
+        YearMonth currentMonth = YearMonth.from(today);
+        YearMonth lastMonth = YearMonth.from(today.plus(SecurityConfiguration.REFRESH_TOKEN_EXPIRATION_PERIOD))
+                .plusMonths(monthsAhead);
+
+        int created = 0;
+        for(YearMonth month = currentMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            if(refreshTokenRepository.createPartition(month)) {
+                created++;
+            }
+        }
+
+        int dropped = 0;
+        for(YearMonth month : refreshTokenRepository.findPartitionMonths()) {
+            // tokens expire at the start of their expiration date, so the whole month has expired
+            // another node may have dropped it meanwhile
+            if(!month.plusMonths(1).atDay(1).isAfter(today) && refreshTokenRepository.dropPartition(month)) {
+                dropped++;
+            }
+        }
+
+        logger.log("CREATED " + created + " AND DROPPED " + dropped + " REFRESH TOKEN PARTITIONS",
+                RefreshTokenPartitionMaintainer.class, Status.INFO);
+    }
+}
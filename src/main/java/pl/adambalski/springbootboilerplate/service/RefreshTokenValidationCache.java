@@ -0,0 +1,180 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.adambalski.springbootboilerplate.datasource.ReadYourWrites;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.RefreshTokensEvictedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.util.BoundedExpiringCache;
+import pl.adambalski.springbootboilerplate.util.KeyedGenerations;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Remembers which refresh tokens are valid and whose they are, so most refreshes do not query the database.<br>
+ * Owners of valid tokens are kept for 'app.security.refresh_token_cache.ttl', but never past the end of the day
+ * (tokens are valid until the end of their expiration date, the database is asked again the next day),
+ * at most 'app.security.refresh_token_cache.max_size' of them.
+ * Unknown and expired tokens are remembered for 'app.security.refresh_token_cache.negative_ttl',
+ * at most 'app.security.refresh_token_cache.negative_max_size' of them in a cache of their own,
+ * so a flood of bogus tokens does not push valid ones out.<br>
+ * Tokens are deleted when their user is deleted (see {@link UserService#deleteUserByLogin(String)}
+ * and {@link AdminService#deleteByLogin(String)}), which publishes a {@link UserChangedEvent} and outdates
+ * the user's tokens here (on every node), all tokens are outdated on {@link AllUsersChangedEvent}.
+ * Both are O(1), each token keeps the generation of its owner (see {@link KeyedGenerations}) and is checked
+ * when it is looked up, outdated ones are dropped then or when they expire.
+ * Tokens deleted when {@link RefreshTokenWriter} evicts the oldest sessions are dropped on
+ * {@link RefreshTokensEvictedEvent} and remembered as invalid, as the replica may still have them.
+ * A lookup, which was running meanwhile, is not kept.
+ * The reaper and the partition maintenance delete only expired tokens, which are not kept past their day anyway.<br>
+ * A read replica may lag behind, so tokens it does not know (e.g. issued a moment ago) and tokens of users,
+ * who have just been written (see {@link ReadYourWrites}), are looked up on the primary once more
+ * before anything is cached.<br>
+ * Entries are keyed by the token's hash, hits, misses and sizes are published as 'refresh.token.cache.*' metrics.<br><br>
+ *
+ * @see RefreshTokenRepository#findUserLoginByTokenHash(byte[])
+ * @see BoundedExpiringCache
+ * @see AuthenticationService#refresh(String)
+ * @see ReadYourWrites
+ * @author Adam Balski
+ */
+@Component
+public class RefreshTokenValidationCache {
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final ReadYourWrites readYourWrites;
+    // token hash -> login of the owner
+    private final BoundedExpiringCache<ByteBuffer, Owner> valid;
+    // token hash -> itself, tokens, which are not valid
+    private final BoundedExpiringCache<ByteBuffer, ByteBuffer> invalid;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final Clock clock;
+    // login -> generation, bumped when the user changes
+    private final KeyedGenerations<String> generations = new KeyedGenerations<>();
+    // token hash -> generation, bumped when the token is evicted
+    private final KeyedGenerations<ByteBuffer> evictions = new KeyedGenerations<>();
+
+    @Autowired
+    RefreshTokenValidationCache(RefreshTokenRepository refreshTokenRepository,
+                                ReadYourWrites readYourWrites,
+                                @Value(value = "${app.security.refresh_token_cache.ttl}") Duration ttl,
+                                @Value(value = "${app.security.refresh_token_cache.max_size}") int maxSize,
+                                @Value(value = "${app.security.refresh_token_cache.negative_ttl}") Duration negativeTtl,
+                                @Value(value = "${app.security.refresh_token_cache.negative_max_size}") int negativeMaxSize,
+                                ObjectProvider<MeterRegistry> meterRegistry) {
+        // there is no registry in sliced tests
+        this(refreshTokenRepository, readYourWrites, ttl, maxSize, negativeTtl, negativeMaxSize,
+                Clock.systemDefaultZone(), meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    // 'clock' must be in the zone of the database sessions, pgjdbc sets it to the JVM's default zone
+    public RefreshTokenValidationCache(RefreshTokenRepository refreshTokenRepository, ReadYourWrites readYourWrites,
+                                       Duration ttl, int maxSize, Duration negativeTtl, int negativeMaxSize,
+                                       Clock clock, MeterRegistry meterRegistry) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.readYourWrites = readYourWrites;
+        this.valid = new BoundedExpiringCache<>(maxSize, clock);
+        this.invalid = new BoundedExpiringCache<>(negativeMaxSize, clock);
+        this.ttlMillis = ttl.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.clock = clock;
+
+        registerMetrics(meterRegistry);
+    }
+
+    // Login of the owner of a token, which has not expired, 'tokenHash' is RefreshToken.hashOf(token)
+    public Optional<String> findUserLoginByTokenHash(byte[] tokenHash) {
+        ByteBuffer key = ByteBuffer.wrap(tokenHash);
+
+        Owner cached = valid.get(key);
+        if(cached != null) {
+            if(generations.isCurrent(cached.login(), cached.generation())) {
+                return Optional.of(cached.login());
+            }
+            valid.invalidate(key);
+        }
+        if(invalid.get(key) != null) {
+            return Optional.empty();
+        }
+
+        long generation = generations.stamp();
+        long evictionsBefore = evictions.stamp();
+        Optional<String> userLogin = refreshTokenRepository.findUserLoginByTokenHash(tokenHash);
+        if(userLogin.isEmpty() ? readYourWrites.isEnabled() : readYourWrites.wasRecentlyWritten(userLogin.get())) {
+            // the replica may not have the token yet or may still have a deleted one
+            userLogin = readYourWrites.onPrimary(() -> refreshTokenRepository.findUserLoginByTokenHash(tokenHash));
+        }
+        long now = clock.millis();
+
+        if(userLogin.isEmpty()) {
+            // a token is never valid again, so there is nothing to invalidate
+            invalid.put(key, key, now + negativeTtlMillis);
+        }
+        // the owner changed or the token was evicted while loading, the token may have been deleted already
+        else if(generations.isCurrent(userLogin.get(), generation) && evictions.isCurrent(key, evictionsBefore)) {
+            valid.put(key, new Owner(userLogin.get(), generation), Math.min(now + ttlMillis, endOfToday()));
+        }
+        return userLogin;
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        generations.invalidate(event.login());
+    }
+
+    @EventListener
+    public void onRefreshTokensEvicted(RefreshTokensEvictedEvent event) {
+        long now = clock.millis();
+        for(ByteBuffer key : event.tokenHashes()) {
+            evictions.invalidate(key);
+            valid.invalidate(key);
+            invalid.put(key, key, now + negativeTtlMillis);
+        }
+    }
+
+    @EventListener
+    public void onAllUsersChanged(AllUsersChangedEvent event) {
+        generations.invalidateAll();
+        valid.invalidateAll();
+    }
+
+    // Outdated tokens are counted until they are looked up or expire
+    public int size() {
+        return valid.size();
+    }
+
+    private long endOfToday() {
+        LocalDate today = LocalDate.now(clock);
+        return today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+    }
+
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("refresh.token.cache.hits", valid, BoundedExpiringCache::getHitCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("refresh.token.cache.negative.hits", invalid, BoundedExpiringCache::getHitCount)
+                .register(meterRegistry);
+        // lookups, which have missed both caches, query the database
+        FunctionCounter.builder("refresh.token.cache.misses", invalid, BoundedExpiringCache::getMissCount)
+                .register(meterRegistry);
+        Gauge.builder("refresh.token.cache.size", valid, BoundedExpiringCache::size)
+                .register(meterRegistry);
+        Gauge.builder("refresh.token.cache.negative.size", invalid, BoundedExpiringCache::size)
+                .register(meterRegistry);
+    }
+
+    // 'generation' is the stamp taken before the lookup
+    private record Owner(String login, long generation) {}
+}
@@ -0,0 +1,215 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import pl.adambalski.springbootboilerplate.event.RefreshTokensEvictedEvent;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.logger.Status;
+import pl.adambalski.springbootboilerplate.model.RefreshToken;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Saves refresh tokens of new logins and, in the same transaction, deletes the oldest tokens of their users,
+ * so a user has at most 'app.security.sessions.max_per_user' sessions
+ * (see {@link RefreshTokenRepository#saveAndEvictOldest(List, int)}).
+ * When sessions have been evicted, a {@link RefreshTokensEvictedEvent} with the deleted tokens is published,
+ * so caches of refresh tokens of every node drop them (see {@link RefreshTokenValidationCache}),
+ * nothing else about the users is invalidated.<br>
+ * If 'app.refresh_token_writer.group_commit' is true, tokens are put into a queue and a single thread saves them
+ * in one transaction (one JDBC batch, see 'hibernate.jdbc.batch_size') as soon as there are
+ * 'app.refresh_token_writer.batch_size' tokens or the first one has waited 'app.refresh_token_writer.max_delay'.
+ * {@link #save(RefreshToken)} returns only after the transaction with its token has committed,
+ * so a login still gets a refresh token, which is in the database.
+ * If a batch fails, its tokens are saved one by one, so only the faulty one fails.
+ * When the queue ('app.refresh_token_writer.queue_capacity') is full, the token is saved by the calling thread.<br>
+ * Otherwise every token is saved right away by the calling thread.<br>
+ * Metrics: 'refresh.token.writer.batch.size' (tokens per transaction), 'refresh.token.writer.flush' (time of a transaction)
+ * and 'refresh.token.writer.latency' (from {@link #save(RefreshToken)} till the commit).<br><br>
+ *
+ * @see AuthenticationService
+ * @see RefreshTokenRepository
+ * @see pl.adambalski.springbootboilerplate.repository.RefreshTokenSessions
+ * @author Adam Balski
+ */
+@Service
+public class RefreshTokenWriter implements AutoCloseable {
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxSessionsPerUser;
+    private final boolean groupCommit;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingToken> queue;
+    private final Logger logger;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushTimer;
+    private final Timer latencyTimer;
+
+    @Autowired
+    RefreshTokenWriter(RefreshTokenRepository refreshTokenRepository,
+                       ApplicationEventPublisher eventPublisher,
+                       @Value(value = "${app.security.sessions.max_per_user}") int maxSessionsPerUser,
+                       @Value(value = "${app.refresh_token_writer.group_commit}") boolean groupCommit,
+                       @Value(value = "${app.refresh_token_writer.batch_size}") int batchSize,
+                       @Value(value = "${app.refresh_token_writer.max_delay}") Duration maxDelay,
+                       @Value(value = "${app.refresh_token_writer.queue_capacity}") int queueCapacity,
+                       ObjectProvider<MeterRegistry> meterRegistry,
+                       @Qualifier("slf4jLogger") Logger logger) {
+        // there is no registry in sliced tests
+        this(refreshTokenRepository, eventPublisher, maxSessionsPerUser, groupCommit, batchSize, maxDelay, queueCapacity,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new), logger);
+    }
+
+    public RefreshTokenWriter(RefreshTokenRepository refreshTokenRepository, ApplicationEventPublisher eventPublisher,
+                              int maxSessionsPerUser, boolean groupCommit, int batchSize, Duration maxDelay,
+                              int queueCapacity, MeterRegistry meterRegistry, Logger logger) {
+        if(maxSessionsPerUser < 1) throw new IllegalArgumentException("maxSessionsPerUser must be positive");
+        if(batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        if(queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be positive");
+
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.eventPublisher = eventPublisher;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.groupCommit = groupCommit;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.logger = logger;
+
+        this.batchSizeSummary = DistributionSummary.builder("refresh.token.writer.batch.size").register(meterRegistry);
+        this.flushTimer = Timer.builder("refresh.token.writer.flush").register(meterRegistry);
+        this.latencyTimer = Timer.builder("refresh.token.writer.latency").register(meterRegistry);
+
+        this.thread = new Thread(this::run, "refresh-token-writer");
+        this.thread.setDaemon(true);
+        if(groupCommit) {
+            thread.start();
+        }
+    }
+
+    // Returns after the token has been committed
+    public void save(RefreshToken refreshToken) {
+        long start = System.nanoTime();
+        PendingToken pendingToken = new PendingToken(refreshToken, new CompletableFuture<>());
+
+        if(!groupCommit || !running || !queue.offer(pendingToken)) {
+            saveAndEvictOldest(List.of(refreshToken));
+        }
+        else {
+            await(pendingToken.committed());
+        }
+
+        latencyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Saves whatever is in the queue and stops the thread
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingToken> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if(!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    private void run() {
+        List<PendingToken> batch = new ArrayList<>(batchSize);
+
+        while(running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                queue.drainTo(batch, batchSize - batch.size());
+
+                while(batch.size() < batchSize) {
+                    PendingToken next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if(next == null) break;
+
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // close() saves what is left in the queue
+                if(!batch.isEmpty()) {
+                    flush(batch);
+                }
+                return;
+            }
+
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    void flush(List<PendingToken> batch) {
+        long start = System.nanoTime();
+        try {
+            saveAndEvictOldest(batch.stream().map(PendingToken::refreshToken).toList());
+            batch.forEach(pendingToken -> pendingToken.committed().complete(null));
+        } catch (RuntimeException e) {
+            logger.log("Batch of " + batch.size() + " refresh tokens failed, saving them one by one: " + e.getMessage(),
+                    RefreshTokenWriter.class, Status.EXCEPTION);
+            batch.forEach(this::saveAlone);
+        }
+
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizeSummary.record(batch.size());
+    }
+
+    private void saveAlone(PendingToken pendingToken) {
+        try {
+            // the id allocated in the rolled back batch would make save() merge
+            pendingToken.refreshToken().setId(null);
+            saveAndEvictOldest(List.of(pendingToken.refreshToken()));
+            pendingToken.committed().complete(null);
+        } catch (RuntimeException e) {
+            pendingToken.committed().completeExceptionally(e);
+        }
+    }
+
+    private void saveAndEvictOldest(List<RefreshToken> refreshTokens) {
+        List<byte[]> evicted = refreshTokenRepository.saveAndEvictOldest(refreshTokens, maxSessionsPerUser);
+        if(!evicted.isEmpty()) {
+            // the evicted tokens may be cached on any node
+            eventPublisher.publishEvent(new RefreshTokensEvictedEvent(evicted.stream().map(ByteBuffer::wrap).toList()));
+        }
+    }
+
+    private static void await(CompletableFuture<Void> committed) {
+        try {
+            committed.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    record PendingToken(RefreshToken refreshToken, CompletableFuture<Void> committed) {}
+}
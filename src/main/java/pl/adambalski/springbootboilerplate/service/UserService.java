@@ -1,15 +1,19 @@
 package pl.adambalski.springbootboilerplate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
 import pl.adambalski.springbootboilerplate.exception.AtLeastOneFieldIncorrectException;
 import pl.adambalski.springbootboilerplate.exception.EmailIsTakenException;
 import pl.adambalski.springbootboilerplate.exception.LoginIsTakenException;
 import pl.adambalski.springbootboilerplate.exception.NoSuchUserException;
 import pl.adambalski.springbootboilerplate.model.User;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
 import pl.adambalski.springbootboilerplate.repository.UserRepository;
+import pl.adambalski.springbootboilerplate.security.TokenRevocations;
 import pl.adambalski.springbootboilerplate.validation.SignUpUserDtoValidationResult;
 import pl.adambalski.springbootboilerplate.validation.SignUpUserDtoValidator;
 
@@ -20,21 +24,41 @@ import java.util.UUID;
  *
  * @author Adam Balski
  * @see UserRepository
+ * @see RefreshTokenRepository
  * @see pl.adambalski.springbootboilerplate.controller.user.UserController
+ * @see UserChangedEvent
+ * @see TokenRevocations
  */
 @Service
 public class UserService {
     private final UserRepository userRepository;
+    private final RefreshTokenRepository refreshTokenRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenRevocations tokenRevocations;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    UserService(UserRepository userRepository, RefreshTokenRepository refreshTokenRepository,
+                PasswordEncoder passwordEncoder, TokenRevocations tokenRevocations,
+                ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
         this.passwordEncoder = passwordEncoder;
+        this.tokenRevocations = tokenRevocations;
+        this.eventPublisher = eventPublisher;
     }
 
     public boolean deleteUserByLogin(String login) {
-        return userRepository.deleteByLogin(login) == 1;
+        boolean deleted = userRepository.deleteByLogin(login) == 1;
+        if(deleted) {
+            // access tokens given out before are not accepted anymore
+            tokenRevocations.revoke(login);
+            // nor are refresh tokens, a user signed up later with the same login must not get them
+            refreshTokenRepository.deleteAllByUserLogin(login);
+        }
+        // cached UserDetails and refresh tokens are dropped before this returns
+        eventPublisher.publishEvent(new UserChangedEvent(login));
+        return deleted;
     }
 
     public User getUserByLogin(String login) {
@@ -78,5 +102,7 @@ public class UserService {
 
     private void addUser(User user) {
         userRepository.save(user);
+        // the new user is read from the primary for a while (see ReadYourWrites), on every node
+        eventPublisher.publishEvent(new UserChangedEvent(user.getLogin()));
     }
 }
@@ -0,0 +1,138 @@
+package pl.adambalski.springbootboilerplate.util;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * Concurrent in-memory cache, whose entries expire at a given point in time
+ * and whose size is bounded.<br>
+ * When the cache grows over its maximal size, expired entries are removed first
+ * and then arbitrary entries, until the cache is 10% below its maximal size.<br>
+ * Hits, misses and evictions are counted, so the cache's effectiveness can be monitored.<br><br>
+ *
+ * @param <K> key
+ * @param <V> cached value
+ * @see ConcurrentHashMap
+ * @author Adam Balski
+ */
+public class BoundedExpiringCache<K, V> {
+    private final Map<K, Entry<V>> map = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final Clock clock;
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedExpiringCache(int maxSize) {
+        this(maxSize, Clock.systemUTC());
+    }
+
+    public BoundedExpiringCache(int maxSize, Clock clock) {
+        if(maxSize < 1) throw new IllegalArgumentException("maxSize must be positive");
+
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    // Returns null if there is no such key or if the entry has expired
+    public V get(K key) {
+        Entry<V> entry = map.get(key);
+        if(entry == null) {
+            misses.increment();
+            return null;
+        }
+        if(entry.expiresAtMillis() <= clock.millis()) {
+            map.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.value();
+    }
+
+    public void put(K key, V value, long expiresAtMillis) {
+        if(expiresAtMillis <= clock.millis()) {
+            return;
+        }
+
+        map.put(key, new Entry<>(value, expiresAtMillis));
+        if(map.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void invalidate(K key) {
+        map.remove(key);
+    }
+
+    public void invalidateIf(BiPredicate<K, V> predicate) {
+        map.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue().value()));
+    }
+
+    public void invalidateAll() {
+        map.clear();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long requestCount = hitCount + getMissCount();
+        return requestCount == 0 ? 0.0 : (double) hitCount / requestCount;
+    }
+
+    // Only one thread evicts at a time, others just go on
+    private void evict() {
+        if(!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            long now = clock.millis();
+            int targetSize = maxSize - maxSize / 10;
+
+            map.entrySet().removeIf(entry -> {
+                boolean expired = entry.getValue().expiresAtMillis() <= now;
+                if(expired) evictions.increment();
+                return expired;
+            });
+
+            Iterator<K> iterator = map.keySet().iterator();
+            while(map.size() > targetSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAtMillis) {}
+}
@@ -0,0 +1,70 @@
+package pl.adambalski.springbootboilerplate.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generation numbers of keys, so a cache can tell whether a key was invalidated while its value was being loaded
+ * (or after it was cached) without a global counter, which any other key's invalidation would bump.<br>
+ * {@link #stamp()} is taken before loading and {@link #isCurrent(Object, long)} is checked afterwards,
+ * the key does not have to be known until then (e.g. the owner of a token is known only after it is looked up).
+ * Every invalidation takes the next number of a sequence and records it for its key, a stamp is the last number
+ * taken and stays current for a key as long as the key has not been invalidated after it.
+ * Keys are hashed onto a fixed number of stripes, so the memory used does not grow with the number of keys:
+ * a stamp may be outdated by an invalidation of another key of the same stripe (rarely, with enough stripes),
+ * but never stays current after an invalidation of its own key.
+ * {@link #invalidateAll()} outdates every stamp.<br><br>
+ *
+ * @param <K> key
+ * @see BoundedExpiringCache
+ * @author Adam Balski
+ */
+public class KeyedGenerations<K> {
+    public static final int DEFAULT_STRIPES = 8192;
+
+    private final AtomicLong sequence = new AtomicLong();
+    // stripe -> number of its last invalidation
+    private final AtomicLongArray stripes;
+    // number of the last invalidateAll()
+    private final AtomicLong all = new AtomicLong();
+    private final int mask;
+
+    public KeyedGenerations() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public KeyedGenerations(int stripes) {
+        if(stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes must be a positive power of 2");
+        }
+
+        this.stripes = new AtomicLongArray(stripes);
+        this.mask = stripes - 1;
+    }
+
+    public long stamp() {
+        return sequence.get();
+    }
+
+    public boolean isCurrent(K key, long stamp) {
+        return stripes.get(stripeOf(key)) <= stamp && all.get() <= stamp;
+    }
+
+    // The number is recorded after it is taken, a stamp taken in between is current, as the key's value was
+    // invalidated before the stamp and is loaded after it
+    public void invalidate(K key) {
+        long number = sequence.incrementAndGet();
+        stripes.accumulateAndGet(stripeOf(key), number, Math::max);
+    }
+
+    public void invalidateAll() {
+        long number = sequence.incrementAndGet();
+        all.accumulateAndGet(number, Math::max);
+    }
+
+    private int stripeOf(K key) {
+        int hash = key.hashCode();
+        // spreads the higher bits, as HashMap does
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
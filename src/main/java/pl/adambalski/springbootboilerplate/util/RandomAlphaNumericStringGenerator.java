@@ -1,19 +1,24 @@
 package pl.adambalski.springbootboilerplate.util;
 
-import net.bytebuddy.utility.RandomString;
 import org.springframework.stereotype.Component;
 import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
 
+import java.security.SecureRandom;
+
 /**
- * Is used to create random strings of specified length, which contain numbers and letters (both uppercase and lowercase). <br><br>
+ * Is used to create random strings of specified length, which contain numbers and letters (both uppercase and lowercase). <br>
+ * Characters are drawn from {@link SecureRandom}, since the strings are used as refresh tokens. <br><br>
  *
  * @author Adam Balski
  * @see SecurityConfiguration
- * @see RandomString
+ * @see SecureRandom
  */
 @Component
 public class RandomAlphaNumericStringGenerator {
+    private static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
     private final int length;
+    private final SecureRandom secureRandom = new SecureRandom();
 
     public RandomAlphaNumericStringGenerator() {
         this(SecurityConfiguration.REFRESH_TOKEN_LENGTH);
@@ -24,7 +29,13 @@ public class RandomAlphaNumericStringGenerator {
     }
 
     public String generate(int length) {
-        return new RandomString(length).nextString();
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) {
+            // nextInt(bound) is uniform, so every character is equally likely
+            chars[i] = ALPHABET[secureRandom.nextInt(ALPHABET.length)];
+        }
+
+        return new String(chars);
     }
 
     public String generate() {
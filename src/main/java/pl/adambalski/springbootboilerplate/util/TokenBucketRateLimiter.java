@@ -0,0 +1,107 @@
+package pl.adambalski.springbootboilerplate.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free token bucket per key: a key can take up to 'capacity' tokens at once
+ * and gets one token back every 'refillInterval'.<br>
+ * A bucket is a single {@link AtomicLong} holding the time, at which it will be full again
+ * (generic cell rate algorithm), so taking a token is one map lookup and one compare-and-set.
+ * A bucket, which is full, is the same as no bucket at all, so such buckets are removed first
+ * when the limiter grows over its maximal number of keys, then arbitrary ones until it is 10% below it.<br><br>
+ *
+ * @param <K> key, for example a login or a client's address
+ * @see BoundedExpiringCache
+ * @author Adam Balski
+ */
+public class TokenBucketRateLimiter<K> {
+    private final Map<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long refillIntervalMillis;
+    // how far the bucket's 'full again' time can be ahead of now
+    private final long limitMillis;
+    private final int maxKeys;
+    private final Clock clock;
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    private final LongAdder rejections = new LongAdder();
+
+    public TokenBucketRateLimiter(int capacity, Duration refillInterval, int maxKeys) {
+        this(capacity, refillInterval, maxKeys, Clock.systemUTC());
+    }
+
+    public TokenBucketRateLimiter(int capacity, Duration refillInterval, int maxKeys, Clock clock) {
+        if(capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        if(maxKeys < 1) throw new IllegalArgumentException("maxKeys must be positive");
+        if(refillInterval.toMillis() < 1) throw new IllegalArgumentException("refillInterval must be at least 1ms");
+
+        this.refillIntervalMillis = refillInterval.toMillis();
+        this.limitMillis = capacity * refillIntervalMillis;
+        this.maxKeys = maxKeys;
+        this.clock = clock;
+    }
+
+    // Returns 0 if a token was taken, otherwise milliseconds until the key gets a token back
+    public long tryAcquire(K key) {
+        long now = clock.millis();
+
+        AtomicLong fullAt = buckets.get(key);
+        if(fullAt == null) {
+            fullAt = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            if(buckets.size() > maxKeys) {
+                evict(now);
+            }
+        }
+
+        while(true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + refillIntervalMillis;
+            if(next - now > limitMillis) {
+                rejections.increment();
+                return next - now - limitMillis;
+            }
+            if(fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    // Only one thread evicts at a time, others just go on
+    private void evict(long now) {
+        if(!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            int targetSize = maxKeys - maxKeys / 10;
+
+            buckets.values().removeIf(fullAt -> fullAt.get() <= now);
+
+            Iterator<K> iterator = buckets.keySet().iterator();
+            while(buckets.size() > targetSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
@@ -1,3 +1,5 @@
+-- Schema as it was created by database/all_tables.sql
+
 -- user
 CREATE TABLE "user"
 (
@@ -32,4 +34,4 @@ CREATE TABLE refresh_token
 ALTER TABLE refresh_token
     ADD CONSTRAINT uc_refresh_token_id UNIQUE (id);
 
-CREATE SEQUENCE refresh_token_id_gen;
\ No newline at end of file
+CREATE SEQUENCE refresh_token_id_gen;
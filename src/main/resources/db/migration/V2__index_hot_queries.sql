@@ -0,0 +1,22 @@
+-- Unique constraints on the primary keys only duplicate the primary key indexes
+ALTER TABLE "user"
+    DROP CONSTRAINT uc_user_id;
+
+ALTER TABLE refresh_token
+    DROP CONSTRAINT uc_refresh_token_id;
+
+-- The login index also carries the credentials,
+-- so UserRepository.findCredentialsByLogin is answered by an index only scan
+CREATE UNIQUE INDEX ux_user_login_credentials
+    ON "user" (login) INCLUDE (password, "role");
+
+ALTER TABLE "user"
+    DROP CONSTRAINT uc_user_login;
+
+-- RefreshTokenRepository.existsByUserLoginAndToken, on every refresh
+CREATE INDEX ix_refresh_token_user_login_token
+    ON refresh_token (user_login, token);
+
+-- RefreshTokenRepository.deleteAllByExpirationDateBeforeNow, every day
+CREATE INDEX ix_refresh_token_expiration_date
+    ON refresh_token (expiration_date);
@@ -0,0 +1,58 @@
+-- refresh_token is range partitioned by the month of expiration_date,
+-- so a month, in which every token has expired, is dropped as a whole (see RefreshTokenPartitionMaintainer).
+-- Partitions are named refresh_token_YYYY_MM, rows outside of them go to refresh_token_default.
+ALTER TABLE refresh_token
+    RENAME TO refresh_token_unpartitioned;
+
+ALTER TABLE refresh_token_unpartitioned
+    RENAME CONSTRAINT pk_refresh_token TO pk_refresh_token_unpartitioned;
+
+DROP INDEX ix_refresh_token_user_login_token;
+DROP INDEX ix_refresh_token_expiration_date;
+
+-- the partition key has to be a part of the primary key, ids are unique anyway thanks to the sequence
+CREATE TABLE refresh_token
+(
+    id              BIGINT       NOT NULL,
+    user_login      VARCHAR(30) NOT NULL,
+    token           VARCHAR(12)  NOT NULL,
+    expiration_date date         NOT NULL,
+    CONSTRAINT pk_refresh_token PRIMARY KEY (id, expiration_date)
+) PARTITION BY RANGE (expiration_date);
+
+CREATE INDEX ix_refresh_token_user_login_token
+    ON refresh_token (user_login, token);
+
+CREATE INDEX ix_refresh_token_expiration_date
+    ON refresh_token (expiration_date);
+
+CREATE TABLE refresh_token_default
+    PARTITION OF refresh_token DEFAULT;
+
+-- months of the existing tokens and 14 months ahead (tokens live for a year),
+-- later months are created by the application
+DO
+$$
+    DECLARE
+        partition_month date;
+    BEGIN
+        FOR partition_month IN
+            SELECT generate_series(
+                           date_trunc('month', LEAST(current_date,
+                                   COALESCE((SELECT min(expiration_date) FROM refresh_token_unpartitioned), current_date))),
+                           date_trunc('month', current_date + interval '14 months'),
+                           interval '1 month')::date
+            LOOP
+                EXECUTE format('CREATE TABLE %I PARTITION OF refresh_token FOR VALUES FROM (%L) TO (%L)',
+                               'refresh_token_' || to_char(partition_month, 'YYYY_MM'),
+                               partition_month,
+                               (partition_month + interval '1 month')::date);
+            END LOOP;
+    END
+$$;
+
+INSERT INTO refresh_token (id, user_login, token, expiration_date)
+SELECT id, user_login, token, expiration_date
+FROM refresh_token_unpartitioned;
+
+DROP TABLE refresh_token_unpartitioned;
@@ -0,0 +1,4 @@
+-- Ids of refresh tokens are allocated by Hibernate's pooled optimizer (RefreshToken.ID_ALLOCATION_SIZE),
+-- each nextval reserves the 50 ids up to the returned value.
+-- Values already given out are below the next one, so existing ids are never allocated again.
+ALTER SEQUENCE refresh_token_id_gen INCREMENT BY 50;
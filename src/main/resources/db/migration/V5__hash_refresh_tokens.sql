@@ -0,0 +1,20 @@
+-- Refresh tokens are stored as SHA-256 digests (RefreshToken.hashOf), tokens given out before
+-- are hashed in place, so they keep working.
+-- The token is looked up by its digest alone (RefreshTokenRepository.findUserLoginByTokenHash),
+-- a unique index on a partitioned table has to contain the partition key, so it is (token_hash, expiration_date).
+ALTER TABLE refresh_token
+    ADD COLUMN token_hash bytea;
+
+UPDATE refresh_token
+    SET token_hash = sha256(convert_to(token, 'UTF8'));
+
+ALTER TABLE refresh_token
+    ALTER COLUMN token_hash SET NOT NULL;
+
+DROP INDEX ix_refresh_token_user_login_token;
+
+ALTER TABLE refresh_token
+    DROP COLUMN token;
+
+CREATE UNIQUE INDEX ux_refresh_token_token_hash
+    ON refresh_token (token_hash, expiration_date);
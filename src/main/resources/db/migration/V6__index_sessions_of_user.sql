@@ -0,0 +1,3 @@
+-- Oldest sessions (refresh tokens) of a user are evicted at every login (RefreshTokenRepository.saveAndEvictOldest)
+CREATE INDEX ix_refresh_token_user_login_expiration_date
+    ON refresh_token (user_login, expiration_date);
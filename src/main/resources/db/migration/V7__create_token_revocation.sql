@@ -0,0 +1,11 @@
+-- Access tokens of a user issued at or before revoked_at are rejected (see TokenRevocations),
+-- rows are deleted once every token they revoke has expired, so the table stays small
+CREATE TABLE token_revocation
+(
+    user_login VARCHAR(30) NOT NULL,
+    revoked_at timestamptz NOT NULL,
+    CONSTRAINT pk_token_revocation PRIMARY KEY (user_login)
+);
+
+CREATE INDEX ix_token_revocation_revoked_at
+    ON token_revocation (revoked_at);
@@ -0,0 +1,9 @@
+-- Tokens of the same day have the same expiration date and ids are handed out in blocks to every node,
+-- so the oldest sessions of a user (RefreshTokenRepository.saveAndEvictOldest) are told apart by created_at.
+-- The constant default does not rewrite the partitions, existing tokens are taken as the oldest ones.
+ALTER TABLE refresh_token
+    ADD COLUMN created_at timestamptz NOT NULL DEFAULT '-infinity';
+
+-- The time of the insert, which is made after the lock on the user's login is taken
+ALTER TABLE refresh_token
+    ALTER COLUMN created_at SET DEFAULT clock_timestamp();
@@ -16,8 +16,9 @@ import pl.adambalski.springbootboilerplate.exception.NoSuchUserException;
 import pl.adambalski.springbootboilerplate.model.User;
 import pl.adambalski.springbootboilerplate.repository.AdminRepository;
 import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.repository.TokenRevocationRepository;
 import pl.adambalski.springbootboilerplate.repository.UserRepository;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
 import pl.adambalski.springbootboilerplate.service.AdminService;
 
 import java.util.UUID;
@@ -51,6 +52,9 @@ public class AdminControllerTest {
     @MockBean
     RefreshTokenRepository refreshTokenRepository;
 
+    @MockBean
+    TokenRevocationRepository tokenRevocationRepository;
+
     User mockUser;
 
     AutoCloseable autoCloseable;
@@ -65,7 +69,7 @@ public class AdminControllerTest {
                 "mock@username.com",
                 "password",
                 "password");
-        mockUser = User.valueOf(mockUserDto, new PasswordEncoderFactory().passwordEncoderBean());
+        mockUser = User.valueOf(mockUserDto, TestPasswordEncoders.bcrypt());
     }
 
     @AfterEach
@@ -0,0 +1,63 @@
+package pl.adambalski.springbootboilerplate.controller.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithAnonymousUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import pl.adambalski.springbootboilerplate.repository.AdminRepository;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.repository.TokenRevocationRepository;
+import pl.adambalski.springbootboilerplate.repository.UserRepository;
+import pl.adambalski.springbootboilerplate.security.util.JwtKeyRing;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest
+@WithAnonymousUser
+@TestPropertySource(properties = "app.security.jwt.algorithm = ES256")
+class JwksControllerTest {
+    @Autowired
+    MockMvc mvc;
+
+    // ApplicationContext wants repositories (services -> repositories),
+    // but springboot can't instantiate repositories with @WebMvcTest, so we
+    // have to create mocked beans.
+    @MockBean
+    AdminRepository adminRepository;
+    @MockBean
+    UserRepository userRepository;
+    @MockBean
+    RefreshTokenRepository refreshTokenRepository;
+
+    @MockBean
+    TokenRevocationRepository tokenRevocationRepository;
+
+    @Test
+    void testGetJwks() throws Exception {
+        mvc.perform(get("/.well-known/jwks.json"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=300, public"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.keys.length()").value(1))
+                .andExpect(jsonPath("$.keys[0].kid").value(JwtKeyRing.EPHEMERAL_KEY_ID))
+                .andExpect(jsonPath("$.keys[0].kty").value("EC"))
+                .andExpect(jsonPath("$.keys[0].alg").value("ES256"))
+                .andExpect(jsonPath("$.keys[0].d").doesNotExist());
+    }
+
+    @Test
+    void testGetJwksWhenETagMatches() throws Exception {
+        String eTag = mvc.perform(get("/.well-known/jwks.json"))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/.well-known/jwks.json").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+}
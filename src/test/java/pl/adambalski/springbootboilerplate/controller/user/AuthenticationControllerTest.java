@@ -20,8 +20,10 @@ import pl.adambalski.springbootboilerplate.exception.PasswordDoesNotMatchExcepti
 import pl.adambalski.springbootboilerplate.model.RefreshToken;
 import pl.adambalski.springbootboilerplate.repository.AdminRepository;
 import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.repository.TokenRevocationRepository;
 import pl.adambalski.springbootboilerplate.repository.UserRepository;
 import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+import pl.adambalski.springbootboilerplate.security.util.JwtKeyRing;
 import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
 import pl.adambalski.springbootboilerplate.service.AuthenticationService;
 import pl.adambalski.springbootboilerplate.util.RandomAlphaNumericStringGenerator;
@@ -61,11 +63,14 @@ public class AuthenticationControllerTest {
     @MockBean
     RefreshTokenRepository refreshTokenRepository;
 
+    @MockBean
+    TokenRevocationRepository tokenRevocationRepository;
+
     JwtUtil jwtUtil;
 
     @BeforeEach
     void init() {
-        this.jwtUtil = new JwtUtil(SecurityConfiguration.KEY);
+        this.jwtUtil = new JwtUtil(JwtKeyRing.ephemeral());
     }
 
 
@@ -93,16 +98,15 @@ public class AuthenticationControllerTest {
         String refreshTokenValue = "ABC123";
         JwtTokenDto jwtTokenDto = new JwtTokenDto(jwtUtil.tokenOf(username));
 
-        when(authenticationService.refresh(username, refreshTokenValue)).thenReturn(jwtTokenDto);
+        when(authenticationService.refresh(refreshTokenValue)).thenReturn(jwtTokenDto);
         when(stringGenerator.generate()).thenReturn(refreshTokenValue);
 
         RefreshToken refreshToken = RefreshToken.createRefreshToken(username, stringGenerator);
-        Cookie usernameCookie = createUsernameCookie(refreshToken);
         Cookie refreshTokenCookie = refreshToken.toCookie();
 
         var request = post("/api/auth/refresh")
                 .with(csrf())
-                .cookie(usernameCookie, refreshTokenCookie);
+                .cookie(refreshTokenCookie);
 
         String expectedJwtTokenDto = new ObjectMapper().writeValueAsString(jwtTokenDto);
 
@@ -112,36 +116,29 @@ public class AuthenticationControllerTest {
     }
 
     @Test
-    void testRefreshIfThereIsNoUsernameCookie() throws Exception {
-        String username = "username";
+    void testRefreshIgnoresUsernameCookie() throws Exception {
+        String refreshTokenValue = "ABC123";
+        JwtTokenDto jwtTokenDto = new JwtTokenDto(jwtUtil.tokenOf("username"));
 
-        JwtTokenDto jwtTokenDto = new JwtTokenDto(jwtUtil.tokenOf(username));
-        when(authenticationService.refresh(username, "ABC123")).thenReturn(jwtTokenDto);
+        when(authenticationService.refresh(refreshTokenValue)).thenReturn(jwtTokenDto);
+        when(stringGenerator.generate()).thenReturn(refreshTokenValue);
 
-        RefreshToken refreshToken = RefreshToken.createRefreshToken(username, stringGenerator);
-        Cookie refreshTokenCookie = refreshToken.toCookie();
+        Cookie refreshTokenCookie = RefreshToken.createRefreshToken("username", stringGenerator).toCookie();
+        // older clients still send it
+        Cookie usernameCookie = new Cookie("username", "another_username");
 
         var request = post("/api/auth/refresh")
-                .cookie(refreshTokenCookie)
-                .with(csrf());
+                .with(csrf())
+                .cookie(usernameCookie, refreshTokenCookie);
 
         mvc.perform(request)
-                .andExpect(status().isBadRequest())
-                .andExpect(status().reason("Required cookie 'username' for method parameter type String is not present"));
+                .andExpect(status().isOk())
+                .andExpect(content().json(new ObjectMapper().writeValueAsString(jwtTokenDto)));
     }
 
     @Test
     void testRefreshIfThereIsNoRefreshTokenCookie() throws Exception {
-        String username = "username";
-
-        JwtTokenDto jwtTokenDto = new JwtTokenDto(jwtUtil.tokenOf(username));
-        when(authenticationService.refresh(username, "ABC123")).thenReturn(jwtTokenDto);
-
-        RefreshToken refreshToken = RefreshToken.createRefreshToken(username, stringGenerator);
-        Cookie usernameCookie = createUsernameCookie(refreshToken);
-
         var request = post("/api/auth/refresh")
-                .cookie(usernameCookie)
                 .with(csrf());
 
         mvc.perform(request)
@@ -150,60 +147,24 @@ public class AuthenticationControllerTest {
     }
 
     @Test
-    void testRefreshIfThereIsNoRefreshTokenCookieAndNoUsernameCookie() throws Exception {
-        String username = "username";
-
-        JwtTokenDto jwtTokenDto = new JwtTokenDto(jwtUtil.tokenOf(username));
-        when(authenticationService.refresh(username, "ABC123")).thenReturn(jwtTokenDto);
-
-        var request = post("/api/auth/refresh")
-                .with(csrf());
-
-        mvc.perform(request)
-                .andExpect(status().isBadRequest())
-                .andExpect(status().reason("Required cookie 'username' for method parameter type String is not present"));
-    }
-
-    @Test
-    void testRefreshIfThereIsNoSuchTokenUsernameCombination() throws Exception {
-        String username = "username";
+    void testRefreshIfThereIsNoSuchToken() throws Exception {
         String refreshTokenValue = "ABC123";
-        JwtTokenDto jwtTokenDto = new JwtTokenDto(jwtUtil.tokenOf(username));
 
-        when(authenticationService.refresh(username, refreshTokenValue))
+        when(authenticationService.refresh(refreshTokenValue))
                 .thenThrow(new NoSuchRefreshTokenException());
         when(stringGenerator.generate()).thenReturn(refreshTokenValue);
 
-        RefreshToken refreshToken = RefreshToken.createRefreshToken(username, stringGenerator);
-        Cookie usernameCookie = createUsernameCookie(refreshToken);
-        Cookie refreshTokenCookie = refreshToken.toCookie();
+        Cookie refreshTokenCookie = RefreshToken.createRefreshToken("username", stringGenerator).toCookie();
 
         var request = post("/api/auth/refresh")
                 .with(csrf())
-                .cookie(usernameCookie, refreshTokenCookie);
-
-        String expectedJwtTokenDto = new ObjectMapper().writeValueAsString(jwtTokenDto);
+                .cookie(refreshTokenCookie);
 
         mvc.perform(request)
                 .andExpect(status().isUnauthorized())
                 .andExpect(status().reason("NO_SUCH_REFRESH_TOKEN_EXCEPTION"));
     }
 
-    private Cookie createUsernameCookie(RefreshToken refreshToken) {
-        Cookie cookie = new Cookie(USERNAME_COOKIE_NAME, refreshToken.getUserLogin());
-
-        int secondsToExpirationDate = (int)(refreshToken.getExpirationDate().getTime() - Instant.now().toEpochMilli()) / 1000;
-        cookie.setMaxAge(secondsToExpirationDate);
-
-        cookie.setSecure(SecurityConfiguration.COOKIE_SECURENESS);
-        cookie.setHttpOnly(true);
-        // "/api/auth/authenticate" and "/api/auth/get-access-token"
-        cookie.setPath("/api/auth/");
-        cookie.setComment("Username of the logged-in user.");
-
-        return cookie;
-    }
-
     // methods below test AuthenticationController.authenticate
 
     @Test
@@ -251,7 +212,7 @@ public class AuthenticationControllerTest {
         // mocking
         when(stringGenerator.generate())
                 .thenReturn(refreshTokenCookieValue);
-        when(authenticationService.authenticate(loginDto))
+        when(authenticationService.authenticate(loginDto, "127.0.0.1"))
                 .thenReturn(refreshToken);
 
         // creating a request
@@ -270,13 +231,8 @@ public class AuthenticationControllerTest {
                 .andExpect(cookie().comment(REFRESH_TOKEN_COOKIE_NAME, "The refresh token is used to make sure the client is log on, when getting the access token."))
                 .andExpect(cookie().secure(REFRESH_TOKEN_COOKIE_NAME, COOKIE_SECURENESS))
                 .andExpect(cookie().maxAge(REFRESH_TOKEN_COOKIE_NAME, maxAge))
-                // 'username' cookie
-                .andExpect(cookie().exists(USERNAME_COOKIE_NAME))
-                .andExpect(cookie().exists(loginDto.username()))
-                .andExpect(cookie().comment(USERNAME_COOKIE_NAME, "Username of the logged-in user."))
-                .andExpect(cookie().httpOnly(USERNAME_COOKIE_NAME, true))
-                .andExpect(cookie().secure(USERNAME_COOKIE_NAME, COOKIE_SECURENESS))
-                .andExpect(cookie().maxAge(REFRESH_TOKEN_COOKIE_NAME, maxAge));
+                // the refresh token alone identifies the user
+                .andExpect(cookie().doesNotExist("username"));
 
         // mock some things, it should theoretically work
     }
@@ -286,7 +242,7 @@ public class AuthenticationControllerTest {
     void testAuthenticateIfNoSuchUser() throws Exception {
         LoginDto loginDto = new LoginDto("nonexistent_username", "password");
 
-        when(authenticationService.authenticate(loginDto))
+        when(authenticationService.authenticate(loginDto, "127.0.0.1"))
                 .thenThrow(UsernameNotFoundException.class);
 
         String loginDtoJSON = new ObjectMapper().writeValueAsString(loginDto);
@@ -303,7 +259,7 @@ public class AuthenticationControllerTest {
     void testAuthenticateIfPasswordDoesNotMatch() throws Exception {
         LoginDto loginDto = new LoginDto(null, "invalid_password");
 
-        when(authenticationService.authenticate(loginDto))
+        when(authenticationService.authenticate(loginDto, "127.0.0.1"))
                 .thenThrow(new PasswordDoesNotMatchException());
 
         String loginDtoJSON = new ObjectMapper().writeValueAsString(loginDto);
@@ -320,7 +276,7 @@ public class AuthenticationControllerTest {
     void testAuthenticateIfUsernameIsNull() throws Exception {
         LoginDto loginDto = new LoginDto(null, "password");
 
-        when(authenticationService.authenticate(loginDto))
+        when(authenticationService.authenticate(loginDto, "127.0.0.1"))
                 .thenThrow(new AtLeastOneFieldIncorrectException());
 
         String loginDtoJSON = new ObjectMapper().writeValueAsString(loginDto);
@@ -20,8 +20,9 @@ import pl.adambalski.springbootboilerplate.exception.NoSuchUserException;
 import pl.adambalski.springbootboilerplate.model.User;
 import pl.adambalski.springbootboilerplate.repository.AdminRepository;
 import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.repository.TokenRevocationRepository;
 import pl.adambalski.springbootboilerplate.repository.UserRepository;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
 import pl.adambalski.springbootboilerplate.service.UserService;
 
 import static org.mockito.Mockito.*;
@@ -52,6 +53,9 @@ public class UserControllerTest {
     @MockBean
     RefreshTokenRepository refreshTokenRepository;
 
+    @MockBean
+    TokenRevocationRepository tokenRevocationRepository;
+
     SignUpUserDto mockUserDto;
     User mockUser;
 
@@ -67,7 +71,7 @@ public class UserControllerTest {
                 "mock@username.com",
                 "password",
                 "password");
-        mockUser = User.valueOf(mockUserDto, new PasswordEncoderFactory().passwordEncoderBean());
+        mockUser = User.valueOf(mockUserDto, TestPasswordEncoders.bcrypt());
     }
 
     @AfterEach
@@ -0,0 +1,87 @@
+package pl.adambalski.springbootboilerplate.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadYourWritesTest {
+    static final Instant NOON = Instant.parse("2026-10-18T12:00:00Z");
+
+    Clock clock;
+    ReadYourWrites readYourWrites;
+
+    @BeforeEach
+    void init() {
+        clock = mock(Clock.class);
+        setNow(NOON);
+        readYourWrites = new ReadYourWrites(true, Duration.ofSeconds(5), 100, clock);
+    }
+
+    @Test
+    void testUserIsRecentlyWrittenWithinTheWindow() {
+        readYourWrites.onUserChanged(new UserChangedEvent("login", true));
+
+        assertTrue(readYourWrites.wasRecentlyWritten("login"));
+        assertFalse(readYourWrites.wasRecentlyWritten("other"));
+
+        setNow(NOON.plus(Duration.ofSeconds(5)));
+        assertFalse(readYourWrites.wasRecentlyWritten("login"));
+    }
+
+    @Test
+    void testAllUsersAreRecentlyWrittenAfterAllUsersChanged() {
+        readYourWrites.onAllUsersChanged(new AllUsersChangedEvent());
+
+        assertTrue(readYourWrites.wasRecentlyWritten("login"));
+
+        setNow(NOON.plus(Duration.ofSeconds(5)));
+        assertFalse(readYourWrites.wasRecentlyWritten("login"));
+    }
+
+    @Test
+    void testNothingIsRememberedWhenDisabled() {
+        readYourWrites = new ReadYourWrites(false, Duration.ofSeconds(5), 100, clock);
+
+        readYourWrites.onUserChanged(new UserChangedEvent("login"));
+        readYourWrites.onAllUsersChanged(new AllUsersChangedEvent());
+
+        assertFalse(readYourWrites.wasRecentlyWritten("login"));
+        assertFalse(readYourWrites.onPrimary(ReadYourWrites::isOnPrimary));
+    }
+
+    @Test
+    void testOnPrimary() {
+        assertFalse(ReadYourWrites.isOnPrimary());
+
+        assertTrue(readYourWrites.onPrimary(ReadYourWrites::isOnPrimary));
+        // nested calls do not leave it too early
+        assertTrue(readYourWrites.onPrimary(() -> {
+            readYourWrites.onPrimary(() -> null);
+            return ReadYourWrites.isOnPrimary();
+        }));
+
+        assertFalse(ReadYourWrites.isOnPrimary());
+    }
+
+    @Test
+    void testOnPrimaryWhenReadThrows() {
+        assertThrows(IllegalStateException.class, () -> readYourWrites.onPrimary(() -> {
+            throw new IllegalStateException();
+        }));
+
+        assertFalse(ReadYourWrites.isOnPrimary());
+    }
+
+    private void setNow(Instant now) {
+        when(clock.millis()).thenReturn(now.toEpochMilli());
+    }
+}
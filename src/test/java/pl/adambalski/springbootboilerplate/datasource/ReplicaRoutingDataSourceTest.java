@@ -0,0 +1,100 @@
+package pl.adambalski.springbootboilerplate.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+    DataSource primary;
+    DataSource replica;
+    SimpleMeterRegistry meterRegistry;
+    // as ReplicaDataSourceFactory puts it together
+    LazyConnectionDataSourceProxy dataSource;
+    TransactionTemplate transactionTemplate;
+    ReadYourWrites readYourWrites;
+
+    @BeforeEach
+    void init() throws SQLException {
+        primary = mockDataSource();
+        replica = mockDataSource();
+        meterRegistry = new SimpleMeterRegistry();
+
+        dataSource = new LazyConnectionDataSourceProxy();
+        // otherwise the proxy takes a connection to find them out
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.setTargetDataSource(new ReplicaRoutingDataSource(primary, replica, meterRegistry));
+        dataSource.afterPropertiesSet();
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readYourWrites = new ReadYourWrites(true, Duration.ofSeconds(5), 100, Clock.systemUTC());
+    }
+
+    @Test
+    void testReadOnlyTransactionGoesToTheReplica() throws SQLException {
+        transactionTemplate.setReadOnly(true);
+
+        transactionTemplate.executeWithoutResult(status -> query());
+
+        verify(replica).getConnection();
+        verifyNoInteractions(primary);
+        assertEquals(1.0, meterRegistry.get("datasource.routed").tag("target", "replica").counter().count());
+    }
+
+    @Test
+    void testReadWriteTransactionGoesToThePrimary() throws SQLException {
+        transactionTemplate.executeWithoutResult(status -> query());
+
+        verify(primary).getConnection();
+        verifyNoInteractions(replica);
+    }
+
+    @Test
+    void testReadOnlyTransactionOnPrimaryGoesToThePrimary() throws SQLException {
+        transactionTemplate.setReadOnly(true);
+
+        readYourWrites.onPrimary(() -> transactionTemplate.execute(status -> query()));
+
+        verify(primary).getConnection();
+        verifyNoInteractions(replica);
+    }
+
+    @Test
+    void testConnectionOutsideOfTransactionsGoesToThePrimary() throws SQLException {
+        try(Connection connection = dataSource.getConnection()) {
+            connection.createStatement();
+        }
+
+        verify(primary).getConnection();
+        verifyNoInteractions(replica);
+    }
+
+    // The real connection is taken at the first statement
+    private Void query() {
+        try {
+            DataSourceUtils.getConnection(dataSource).createStatement();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return null;
+    }
+
+    private static DataSource mockDataSource() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        return dataSource;
+    }
+}
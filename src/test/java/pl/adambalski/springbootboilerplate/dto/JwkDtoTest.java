@@ -0,0 +1,51 @@
+package pl.adambalski.springbootboilerplate.dto;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwkDtoTest {
+    @Test
+    void testOfEcPublicKey() {
+        ECPublicKey publicKey = (ECPublicKey) Keys.keyPairFor(SignatureAlgorithm.ES256).getPublic();
+
+        JwkDto jwk = JwkDto.of("2026-10", SignatureAlgorithm.ES256, publicKey);
+
+        assertEquals("EC", jwk.kty());
+        assertEquals("2026-10", jwk.kid());
+        assertEquals("sig", jwk.use());
+        assertEquals("ES256", jwk.alg());
+        assertEquals("P-256", jwk.crv());
+        assertEquals(32, decode(jwk.x()).length);
+        assertEquals(32, decode(jwk.y()).length);
+        assertEquals(publicKey.getW().getAffineX(), new BigInteger(1, decode(jwk.x())));
+        assertEquals(publicKey.getW().getAffineY(), new BigInteger(1, decode(jwk.y())));
+        assertNull(jwk.n());
+        assertNull(jwk.e());
+    }
+
+    @Test
+    void testOfRsaPublicKey() {
+        RSAPublicKey publicKey = (RSAPublicKey) Keys.keyPairFor(SignatureAlgorithm.RS256).getPublic();
+
+        JwkDto jwk = JwkDto.of("2026-10", SignatureAlgorithm.RS256, publicKey);
+
+        assertEquals("RSA", jwk.kty());
+        assertEquals("RS256", jwk.alg());
+        assertEquals(publicKey.getModulus(), new BigInteger(1, decode(jwk.n())));
+        // 65537
+        assertEquals("AQAB", jwk.e());
+        assertNull(jwk.crv());
+    }
+
+    private static byte[] decode(String base64Url) {
+        return Base64.getUrlDecoder().decode(base64Url);
+    }
+}
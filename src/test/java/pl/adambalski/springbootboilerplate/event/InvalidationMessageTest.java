@@ -0,0 +1,58 @@
+package pl.adambalski.springbootboilerplate.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvalidationMessageTest {
+    @Test
+    void testEncodeAndDecode() {
+        List<String> payloads = InvalidationMessage.encode("node", 1234L, List.of("first", "second"));
+
+        assertEquals(List.of("node 1234\nfirst\nsecond"), payloads);
+        assertEquals(new InvalidationMessage("node", 1234L, List.of("first", "second"), List.of()),
+                InvalidationMessage.decode(payloads.get(0)));
+    }
+
+    @Test
+    void testEncodeAndDecodeTokenHashes() {
+        ByteBuffer tokenHash = ByteBuffer.wrap(new byte[] {0x01, (byte) 0xab, (byte) 0xff});
+
+        List<String> payloads = InvalidationMessage.encode("node", 1234L,
+                List.of("first", InvalidationMessage.entryOf(tokenHash)));
+
+        assertEquals(List.of("node 1234\nfirst\n~01abff"), payloads);
+        assertEquals(new InvalidationMessage("node", 1234L, List.of("first"), List.of(tokenHash)),
+                InvalidationMessage.decode(payloads.get(0)));
+    }
+
+    @Test
+    void testEncodeSplitsLongPayloads() {
+        List<String> logins = IntStream.range(0, 1000)
+                .mapToObj(i -> "login-number-" + i)
+                .toList();
+
+        List<String> payloads = InvalidationMessage.encode("node", 1234L, logins);
+
+        assertTrue(payloads.size() > 1);
+        List<String> decoded = new ArrayList<>();
+        for(String payload : payloads) {
+            assertTrue(payload.getBytes(StandardCharsets.UTF_8).length <= InvalidationMessage.MAX_PAYLOAD_BYTES);
+            decoded.addAll(InvalidationMessage.decode(payload).logins());
+        }
+        assertEquals(logins, decoded);
+    }
+
+    @Test
+    void testDecodeWhenPayloadIsNotAMessage() {
+        assertNull(InvalidationMessage.decode("something else"));
+        assertNull(InvalidationMessage.decode("node time\nlogin"));
+        assertNull(InvalidationMessage.decode("node 1234\n~not-hex"));
+    }
+}
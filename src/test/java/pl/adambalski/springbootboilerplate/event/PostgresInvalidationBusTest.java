@@ -0,0 +1,168 @@
+package pl.adambalski.springbootboilerplate.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.context.ApplicationEventPublisher;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PostgresInvalidationBusTest {
+    DataSource dataSource;
+    Connection connection;
+    PGConnection pgConnection;
+    PreparedStatement preparedStatement;
+    ApplicationEventPublisher eventPublisher;
+    Clock clock;
+    SimpleMeterRegistry meterRegistry;
+    PostgresInvalidationBus invalidationBus;
+
+    @BeforeEach
+    void init() throws SQLException {
+        dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        pgConnection = mock(PGConnection.class);
+        preparedStatement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(pgConnection.getNotifications(anyInt())).thenAnswer(invocation -> {
+            Thread.sleep(10);
+            return null;
+        });
+
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        meterRegistry = new SimpleMeterRegistry();
+
+        invalidationBus = new PostgresInvalidationBus(dataSource, eventPublisher, "user_invalidation",
+                Duration.ofMillis(5), Duration.ofSeconds(1), clock, meterRegistry, mock(Logger.class));
+    }
+
+    @AfterEach
+    void destroy() {
+        invalidationBus.close();
+    }
+
+    @Test
+    void testReceivePublishesRemoteEvents() {
+        when(clock.millis()).thenReturn(1030L);
+
+        invalidationBus.receive("other-node 1000\nfirst\nsecond");
+
+        verify(eventPublisher).publishEvent(new UserChangedEvent("first", true));
+        verify(eventPublisher).publishEvent(new UserChangedEvent("second", true));
+        assertEquals(2.0, meterRegistry.get("invalidation.bus.received").counter().count());
+        assertEquals(30.0, meterRegistry.get("invalidation.bus.lag").timer().max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testReceivePublishesRemoteEvictedTokens() {
+        invalidationBus.receive("other-node 1000\n~01ab\n~02cd");
+
+        verify(eventPublisher).publishEvent(new RefreshTokensEvictedEvent(List.of(
+                ByteBuffer.wrap(new byte[] {0x01, (byte) 0xab}), ByteBuffer.wrap(new byte[] {0x02, (byte) 0xcd})), true));
+        verify(eventPublisher, never()).publishEvent(any(UserChangedEvent.class));
+        assertEquals(2.0, meterRegistry.get("invalidation.bus.received").counter().count());
+    }
+
+    @Test
+    void testReceiveSkipsOwnNotifications() {
+        invalidationBus.receive(invalidationBus.getNodeId() + " 1000\nfirst");
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testListenerPublishesNotifications() throws SQLException {
+        PGNotification notification = mock(PGNotification.class);
+        when(notification.getParameter()).thenReturn("other-node 1000\nlogin");
+        when(pgConnection.getNotifications(anyInt()))
+                .thenReturn(new PGNotification[] { notification })
+                .thenAnswer(invocation -> {
+                    Thread.sleep(10);
+                    return null;
+                });
+
+        invalidationBus.start();
+
+        verify(eventPublisher, timeout(1000)).publishEvent(new UserChangedEvent("login", true));
+    }
+
+    @Test
+    void testLocalEventsAreSentInOneBatch() throws SQLException {
+        invalidationBus.start();
+
+        invalidationBus.onUserChanged(new UserChangedEvent("first"));
+        invalidationBus.onUserChanged(new UserChangedEvent("second"));
+        invalidationBus.onUserChanged(new UserChangedEvent("first"));
+
+        verify(preparedStatement, timeout(1000)).setString(1, "user_invalidation");
+        verify(preparedStatement, timeout(1000)).setString(eq(2), argThat(payload ->
+                InvalidationMessage.decode(payload).logins().equals(List.of("first", "second"))));
+        verify(preparedStatement, timeout(1000).times(1)).execute();
+    }
+
+    @Test
+    void testLocalEvictedTokensAreSent() throws SQLException {
+        ByteBuffer tokenHash = ByteBuffer.wrap(new byte[] {0x01, (byte) 0xab});
+        invalidationBus.start();
+
+        invalidationBus.onRefreshTokensEvicted(new RefreshTokensEvictedEvent(List.of(tokenHash)));
+
+        verify(preparedStatement, timeout(1000)).setString(eq(2), argThat(payload ->
+                InvalidationMessage.decode(payload).tokenHashes().equals(List.of(tokenHash))));
+    }
+
+    @Test
+    void testRemoteEventsAreNotSent() throws InterruptedException, SQLException {
+        invalidationBus.start();
+
+        invalidationBus.onUserChanged(new UserChangedEvent("login", true));
+        invalidationBus.onRefreshTokensEvicted(new RefreshTokensEvictedEvent(
+                List.of(ByteBuffer.wrap(new byte[] {0x01})), true));
+        Thread.sleep(100);
+
+        verify(preparedStatement, never()).execute();
+    }
+
+    @Test
+    void testReconnectPublishesAllUsersChangedEvent() throws SQLException {
+        when(pgConnection.getNotifications(anyInt()))
+                .thenThrow(new SQLException("connection lost"))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(10);
+                    return null;
+                });
+
+        invalidationBus.start();
+
+        verify(eventPublisher, timeout(2000)).publishEvent(any(AllUsersChangedEvent.class));
+    }
+
+    @Test
+    void testConstructorWhenChannelIsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new PostgresInvalidationBus(dataSource, eventPublisher,
+                "channel; DROP TABLE users", Duration.ofMillis(5), Duration.ofSeconds(1), meterRegistry, mock(Logger.class)));
+    }
+}
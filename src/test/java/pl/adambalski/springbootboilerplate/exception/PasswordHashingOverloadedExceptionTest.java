@@ -0,0 +1,25 @@
+package pl.adambalski.springbootboilerplate.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PasswordHashingOverloadedExceptionTest {
+    @Test
+    void testConstructor() {
+        var passwordHashingOverloadedException = new PasswordHashingOverloadedException(Duration.ofSeconds(2));
+        var responseStatusException = new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "PASSWORD_HASHING_OVERLOADED_EXCEPTION");
+
+        assertAll(
+                () -> assertEquals(responseStatusException.getReason(), passwordHashingOverloadedException.getReason()),
+                () -> assertEquals(responseStatusException.getStatus(), passwordHashingOverloadedException.getStatus()),
+                () -> assertEquals("2", passwordHashingOverloadedException.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER))
+        );
+    }
+}
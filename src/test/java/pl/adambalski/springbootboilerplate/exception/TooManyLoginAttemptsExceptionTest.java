@@ -0,0 +1,25 @@
+package pl.adambalski.springbootboilerplate.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TooManyLoginAttemptsExceptionTest {
+    @Test
+    void testConstructor() {
+        var tooManyLoginAttemptsException = new TooManyLoginAttemptsException(Duration.ofMillis(1500));
+        var responseStatusException = new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "TOO_MANY_LOGIN_ATTEMPTS_EXCEPTION");
+
+        assertAll(
+                () -> assertEquals(responseStatusException.getReason(), tooManyLoginAttemptsException.getReason()),
+                () -> assertEquals(responseStatusException.getStatus(), tooManyLoginAttemptsException.getStatus()),
+                () -> assertEquals("2", tooManyLoginAttemptsException.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER))
+        );
+    }
+}
@@ -4,13 +4,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
 import pl.adambalski.springbootboilerplate.util.RandomAlphaNumericStringGenerator;
 
 import javax.servlet.http.Cookie;
 import java.sql.Date;
 import java.time.Instant;
 import java.time.Period;
+import java.util.Arrays;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,7 +24,7 @@ class RefreshTokenTest {
 
     @BeforeEach
     void init() {
-        PasswordEncoder passwordEncoder = new PasswordEncoderFactory().passwordEncoderBean();
+        PasswordEncoder passwordEncoder = TestPasswordEncoders.bcrypt();
 
         user1 = User.valueOf(
                 new SignUpUserDto(
@@ -280,6 +281,24 @@ class RefreshTokenTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void testTokenHashIsSha256OfTheToken() {
+        RefreshToken refreshToken = new RefreshToken(1, "user1", "123456", new Date(2137));
+
+        assertEquals(32, refreshToken.getTokenHash().length);
+        assertArrayEquals(RefreshToken.hashOf("123456"), refreshToken.getTokenHash());
+        assertFalse(Arrays.equals(RefreshToken.hashOf("123457"), refreshToken.getTokenHash()));
+    }
+
+    @Test
+    void testSetTokenChangesTokenHash() {
+        RefreshToken refreshToken = new RefreshToken(1, "user1", "123456", new Date(2137));
+
+        refreshToken.setToken("654321");
+
+        assertArrayEquals(RefreshToken.hashOf("654321"), refreshToken.getTokenHash());
+    }
+
     @Test
     void testCreateRefreshToken() {
         Period expirationPeriod = REFRESH_TOKEN_EXPIRATION_PERIOD;
@@ -288,7 +307,7 @@ class RefreshTokenTest {
         int length = 12;
         RefreshToken refreshToken = RefreshToken.createRefreshToken("user1", new RandomAlphaNumericStringGenerator(length));
 
-        assertEquals(0, refreshToken.getId());
+        assertNull(refreshToken.getId());
         assertEquals("user1", refreshToken.getUserLogin());
 
         assertTrue(refreshToken.getToken().matches("^[A-Za-z0-9]{%s}$".formatted(length)));
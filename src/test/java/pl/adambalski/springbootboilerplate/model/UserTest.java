@@ -7,7 +7,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
 import pl.adambalski.springbootboilerplate.security.GrantedAuthorityImpl;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -52,7 +52,7 @@ class UserTest {
 
     @Test
     void testValueOfSingUpUserDto() {
-        PasswordEncoder passwordEncoder = new PasswordEncoderFactory().passwordEncoderBean();
+        PasswordEncoder passwordEncoder = TestPasswordEncoders.bcrypt();
 
         SignUpUserDto userDto = new SignUpUserDto(
                 "username",
@@ -398,7 +398,7 @@ class UserTest {
     }
 
     private User createUser() {
-        PasswordEncoder pe = new PasswordEncoderFactory().passwordEncoderBean();
+        PasswordEncoder pe = TestPasswordEncoders.bcrypt();
         SignUpUserDto signUpUserDto = new SignUpUserDto(
                 "login",
                 "Full Name",
@@ -13,7 +13,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
 import pl.adambalski.springbootboilerplate.model.User;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
 
 import java.util.Optional;
 
@@ -43,7 +43,7 @@ public class AdminRepositoryTest {
     @Autowired
     AdminRepository adminRepository;
 
-    PasswordEncoder passwordEncoder = new PasswordEncoderFactory().passwordEncoderBean();
+    PasswordEncoder passwordEncoder = TestPasswordEncoders.bcrypt();
 
     @Test
     void testFindByLoginWhenUserExists() {
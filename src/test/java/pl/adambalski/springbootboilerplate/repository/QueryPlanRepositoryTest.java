@@ -0,0 +1,94 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import org.junit.Rule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks with EXPLAIN, that the hot queries are answered by the indexes created by the migrations
+ * and that refresh_token partitions are pruned.
+ * The tables are tiny, so sequential scans are turned off for the transaction,
+ * otherwise the planner would prefer them anyway.
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class QueryPlanRepositoryTest {
+    @Rule
+    PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:12.7");
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        jdbcTemplate.execute("ANALYZE refresh_token");
+        jdbcTemplate.execute("ANALYZE \"user\"");
+    }
+
+    @Test
+    void testFindUserLoginByTokenHashUsesIndex() {
+        String plan = explain("SELECT user_login FROM refresh_token WHERE token_hash = sha256('ABCDEF123456'::bytea) " +
+                "AND expiration_date >= CURRENT_DATE");
+
+        // indexes of partitions are named after the partition, e.g. refresh_token_2026_10_token_hash_expiration_date_idx
+        assertTrue(plan.contains("token_hash_expiration_date_idx"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    @Test
+    void testSessionsOfUserUseIndex() {
+        String plan = explain("SELECT id, expiration_date FROM refresh_token WHERE user_login = 'login' " +
+                "ORDER BY expiration_date DESC, created_at DESC, id DESC OFFSET 10");
+
+        assertTrue(plan.contains("user_login_expiration_date_idx"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    @Test
+    void testDeleteAllByExpirationDateBeforeNowUsesIndex() {
+        String plan = explain("DELETE FROM refresh_token WHERE expiration_date < CAST(NOW() AS DATE)");
+
+        assertTrue(plan.contains("expiration_date_idx"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    @Test
+    void testQueryByExpirationDateReadsOnlyItsPartition() {
+        String plan = explain("SELECT id FROM refresh_token WHERE expiration_date = CAST('2100-01-15' AS DATE)");
+
+        assertFalse(plan.contains("_20"), plan);
+        assertTrue(plan.contains("refresh_token_default"), plan);
+    }
+
+    @Test
+    void testFindCredentialsByLoginUsesIndex() {
+        String plan = explain("SELECT login, password, \"role\" FROM \"user\" WHERE login = 'login'");
+
+        assertTrue(plan.contains("using ux_user_login_credentials"), plan);
+    }
+
+    @Test
+    void testRedundantConstraintsAreDropped() {
+        List<String> constraints = jdbcTemplate.queryForList(
+                "SELECT conname FROM pg_constraint WHERE conname IN ('uc_user_id', 'uc_refresh_token_id', 'uc_user_login')",
+                String.class);
+
+        assertEquals(List.of(), constraints);
+    }
+
+    private String explain(String query) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + query, String.class));
+    }
+}
@@ -0,0 +1,25 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshTokenPartitionsImplTest {
+    @Test
+    void testPartitionNameOf() {
+        assertEquals("refresh_token_2026_01", RefreshTokenPartitionsImpl.partitionNameOf(YearMonth.of(2026, 1)));
+    }
+
+    @Test
+    void testMonthOf() {
+        assertEquals(YearMonth.of(2026, 1), RefreshTokenPartitionsImpl.monthOf("refresh_token_2026_01"));
+    }
+
+    @Test
+    void testMonthOfWhenItIsNotAMonthPartition() {
+        assertNull(RefreshTokenPartitionsImpl.monthOf("refresh_token_default"));
+        assertNull(RefreshTokenPartitionsImpl.monthOf("refresh_token_unpartitioned"));
+    }
+}
@@ -12,14 +12,16 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
 import pl.adambalski.springbootboilerplate.model.RefreshToken;
 import pl.adambalski.springbootboilerplate.model.User;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
 
 import javax.persistence.EntityManager;
 import java.sql.Date;
 import java.time.Instant;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -66,7 +68,7 @@ class RefreshTokenRepositoryTest {
 
     private List<User> prepareUsers(List<SignUpUserDto> signUpUserDtoList) {
         Function<SignUpUserDto, User> signUpUserDtoToUserConverter = signUpUserDto -> {
-            PasswordEncoder passwordEncoder = new PasswordEncoderFactory().passwordEncoderBean();
+            PasswordEncoder passwordEncoder = TestPasswordEncoders.bcrypt();
             return User.valueOf(signUpUserDto, passwordEncoder);
         };
 
@@ -113,80 +115,118 @@ class RefreshTokenRepositoryTest {
     }
 
     @Test
-    void testDeleteALlExpiredWhenAllRefreshTokensAreExpired() {
+    void testDeleteExpiredBatchDeletesAtMostLimit() {
         userRepository.saveAll(users);
-        refreshTokenRepository.saveAll(expired);
+        refreshTokenRepository.saveAllAndFlush(all);
 
-        refreshTokenRepository.deleteAllByExpirationDateBeforeNow();
+        int deleted = refreshTokenRepository.deleteExpiredBatch(1);
+        int deletedRest = refreshTokenRepository.deleteExpiredBatch(expired.size());
 
-        checkIfDbContainsTheSameElementsAsList(List.of());
+        assertEquals(Math.min(1, expired.size()), deleted);
+        assertEquals(expired.size() - deleted, deletedRest);
+        checkIfDbContainsTheSameElementsAsList(nonExpired);
     }
 
     @Test
-    void testDeleteALlExpiredWhenSomeRefreshTokensAreExpired() {
+    void testDeleteExpiredBatchWhenNoneRefreshTokensAreExpired() {
         userRepository.saveAll(users);
-        refreshTokenRepository.saveAllAndFlush(all);
+        refreshTokenRepository.saveAllAndFlush(nonExpired);
 
-        refreshTokenRepository.deleteAllByExpirationDateBeforeNow();
+        assertEquals(0, refreshTokenRepository.deleteExpiredBatch(100));
 
         checkIfDbContainsTheSameElementsAsList(nonExpired);
     }
 
     @Test
-    void testDeleteAllExpiredWhenNoneRefreshTokensAreExpired() {
-        userRepository.saveAll(users);
-        refreshTokenRepository.saveAll(nonExpired);
+    void testDeleteAllByUserLoginDeletesOnlyTokensOfTheUser() {
+        User user = users.get(0);
+        User anotherUser = users.get(1);
+        userRepository.save(user);
+        userRepository.save(anotherUser);
+        refreshTokenRepository.saveAndFlush(new RefreshToken(0, user.getLogin(), "TOKEN1", new Date(getNow() + 2137)));
+        refreshTokenRepository.saveAndFlush(new RefreshToken(0, user.getLogin(), "TOKEN2", new Date(0)));
+        refreshTokenRepository.saveAndFlush(new RefreshToken(0, anotherUser.getLogin(), "TOKEN3", new Date(getNow() + 2137)));
 
-        refreshTokenRepository.deleteAllByExpirationDateBeforeNow();
+        assertEquals(2, refreshTokenRepository.deleteAllByUserLogin(user.getLogin()));
+        entityManager.clear();
 
-        checkIfDbContainsTheSameElementsAsList(nonExpired);
+        assertTrue(refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("TOKEN1")).isEmpty());
+        assertEquals(Optional.of(anotherUser.getLogin()),
+                refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("TOKEN3")));
     }
 
     @Test
-    void testDeleteALlExpiredWhenThereIsNoRefreshTokens() {
-        userRepository.saveAll(users);
+    void testPartitionsAreCreatedAheadByMigration() {
+        List<YearMonth> months = refreshTokenRepository.findPartitionMonths();
 
-        refreshTokenRepository.deleteAllByExpirationDateBeforeNow();
+        assertTrue(months.contains(YearMonth.now()));
+        assertTrue(months.contains(YearMonth.now().plusMonths(12)));
+    }
 
-        checkIfDbContainsTheSameElementsAsList(List.of());
+    @Test
+    void testCreatePartitionWhenItExists() {
+        assertFalse(refreshTokenRepository.createPartition(YearMonth.now()));
     }
 
     @Test
-    void testExistsByUserAndTokenWhenThereIsNoneRefreshTokens() {
-        assertFalse(refreshTokenRepository.existsByUserLoginAndToken(users.get(0).getLogin(), "TOKEN"));
+    void testDropPartitionWhenItDoesNotExist() {
+        assertFalse(refreshTokenRepository.dropPartition(YearMonth.now().plusYears(5)));
     }
 
     @Test
-    void testExistsByUserAndTokenWhenThereIsUser() {
-        User user = users.get(0);
-        RefreshToken refreshToken = new RefreshToken(0, user.getLogin(), "TOKEN1", new Date(getNow() + 2137));
+    void testCreateAndDropPartition() {
+        YearMonth month = YearMonth.now().plusYears(5);
+        userRepository.saveAll(users);
 
-        userRepository.save(user);
-        refreshTokenRepository.save(refreshToken);
+        assertTrue(refreshTokenRepository.createPartition(month));
+        assertTrue(refreshTokenRepository.findPartitionMonths().contains(month));
+
+        RefreshToken refreshToken = new RefreshToken(0, users.get(0).getLogin(), "ABCDEF", Date.valueOf(month.atDay(10)));
+        refreshTokenRepository.saveAndFlush(refreshToken);
 
-        boolean result = refreshTokenRepository.existsByUserLoginAndToken(user.getLogin(), "TOKEN2");
+        assertTrue(refreshTokenRepository.dropPartition(month));
+        entityManager.clear();
 
-        assertFalse(result);
+        assertFalse(refreshTokenRepository.findPartitionMonths().contains(month));
+        assertTrue(refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("ABCDEF")).isEmpty());
     }
 
     @Test
-    void testExistsByUserAndTokenWhenThereIsToken() {
-        User user = users.get(0);
-        User anotherUser = users.get(1);
+    void testCreatePartitionMovesTokensOutOfTheDefaultPartition() {
+        YearMonth month = YearMonth.now().plusYears(5);
+        userRepository.saveAll(users);
+        // there is no partition of the month yet, so the token lands in the default one
+        RefreshToken refreshToken = new RefreshToken(0, users.get(0).getLogin(), "ABCDEF", Date.valueOf(month.atDay(10)));
+        refreshTokenRepository.saveAndFlush(refreshToken);
+
+        assertTrue(refreshTokenRepository.createPartition(month));
+        entityManager.clear();
+
+        Number inDefault = (Number) entityManager.createNativeQuery("select count(*) from refresh_token_default")
+                .getSingleResult();
+        assertEquals(0, inDefault.intValue());
+        assertEquals(Optional.of(users.get(0).getLogin()),
+                refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("ABCDEF")));
+    }
 
+    @Test
+    void testFindUserLoginByTokenHashWhenThereIsNoneRefreshTokens() {
+        assertTrue(refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("TOKEN")).isEmpty());
+    }
+
+    @Test
+    void testFindUserLoginByTokenHashWhenThereIsAnotherToken() {
+        User user = users.get(0);
         RefreshToken refreshToken = new RefreshToken(0, user.getLogin(), "TOKEN1", new Date(getNow() + 2137));
 
         userRepository.save(user);
-        userRepository.save(anotherUser);
         refreshTokenRepository.save(refreshToken);
 
-        boolean result = refreshTokenRepository.existsByUserLoginAndToken(anotherUser.getLogin(), "TOKEN1");
-
-        assertFalse(result);
+        assertTrue(refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("TOKEN2")).isEmpty());
     }
 
     @Test
-    void testExistsByUserAndTokenWhenThereIsUserAndTokenButInDifferentRows() {
+    void testFindUserLoginByTokenHashReturnsOwnerOfTheToken() {
         User user = users.get(0);
         User anotherUser = users.get(1);
 
@@ -199,21 +239,85 @@ class RefreshTokenRepositoryTest {
         refreshTokenRepository.save(refreshToken);
         refreshTokenRepository.save(anotherRefreshToken);
 
-        boolean result = refreshTokenRepository.existsByUserLoginAndToken(user.getLogin(), "TOKEN2");
-
-        assertFalse(result);
+        assertEquals(Optional.of(user.getLogin()), refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("TOKEN1")));
+        assertEquals(Optional.of(anotherUser.getLogin()), refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("TOKEN2")));
     }
 
     @Test
-    void testExistsByUserAndTokenWhenThereIsUserAndTokenInTheSameRow() {
+    void testFindUserLoginByTokenHashWhenTokenHasExpired() {
         User user = users.get(0);
-        RefreshToken refreshToken = new RefreshToken(0, user.getLogin(), "TOKEN1", new Date(getNow() + 2137));
+        RefreshToken refreshToken = new RefreshToken(0, user.getLogin(), "TOKEN1", new Date(0));
 
         userRepository.save(user);
         refreshTokenRepository.save(refreshToken);
 
-        boolean result = refreshTokenRepository.existsByUserLoginAndToken(user.getLogin(), "TOKEN1");
+        assertTrue(refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("TOKEN1")).isEmpty());
+    }
+
+    @Test
+    void testSaveAllocatesIdsFromThePool() {
+        userRepository.save(users.get(0));
+        List<RefreshToken> refreshTokens = new ArrayList<>();
+        for(int i = 0; i < RefreshToken.ID_ALLOCATION_SIZE + 1; i++) {
+            refreshTokens.add(new RefreshToken(users.get(0).getLogin(), "POOL%05d".formatted(i), new Date(getNow() + 2137)));
+        }
+
+        refreshTokenRepository.saveAll(refreshTokens);
+
+        Set<Long> ids = refreshTokens.stream().map(RefreshToken::getId).collect(Collectors.toSet());
+        assertEquals(RefreshToken.ID_ALLOCATION_SIZE + 1, ids.size());
+        long increment = ((Number) entityManager.createNativeQuery(
+                "SELECT increment_by FROM pg_sequences WHERE sequencename = 'refresh_token_id_gen'")
+                .getSingleResult()).longValue();
+        assertEquals(RefreshToken.ID_ALLOCATION_SIZE, increment);
+    }
+
+    @Test
+    void testSaveAndEvictOldestKeepsNewestSessionsOfTheUser() {
+        userRepository.saveAll(users);
+        String login = users.get(0).getLogin();
+        String anotherLogin = users.get(1).getLogin();
+        refreshTokenRepository.saveAndEvictOldest(List.of(
+                new RefreshToken(login, "OLDEST", new Date(getNow() + 1000L * 60 * 60 * 24)),
+                new RefreshToken(login, "OLDER", new Date(getNow() + 1000L * 60 * 60 * 24 * 2)),
+                new RefreshToken(anotherLogin, "ANOTHER", new Date(getNow() + 1000L * 60 * 60 * 24))
+        ), 3);
+
+        List<byte[]> deleted = refreshTokenRepository.saveAndEvictOldest(List.of(
+                new RefreshToken(login, "NEW", new Date(getNow() + 1000L * 60 * 60 * 24 * 3)),
+                new RefreshToken(login, "NEWEST", new Date(getNow() + 1000L * 60 * 60 * 24 * 4))
+        ), 3);
+        entityManager.clear();
+
+        assertEquals(1, deleted.size());
+        assertArrayEquals(RefreshToken.hashOf("OLDEST"), deleted.get(0));
+        assertTrue(refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("OLDEST")).isEmpty());
+        assertEquals(Optional.of(login), refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("OLDER")));
+        assertEquals(Optional.of(login), refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("NEWEST")));
+        // sessions of other users are not touched
+        assertEquals(Optional.of(anotherLogin), refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("ANOTHER")));
+    }
 
-        assertTrue(result);
+    @Test
+    void testSaveAndEvictOldestEvictsOldestOfTheSameDayWhenIdsAreNotInOrderOfCreation() {
+        userRepository.saveAll(users);
+        String login = users.get(0).getLogin();
+        Date tomorrow = new Date(getNow() + 1000L * 60 * 60 * 24);
+        refreshTokenRepository.saveAndEvictOldest(List.of(new RefreshToken(login, "FIRST", tomorrow)), 2);
+        refreshTokenRepository.saveAndEvictOldest(List.of(new RefreshToken(login, "SECOND", tomorrow)), 2);
+        // both were given ids from a block of another node, which is ahead of this one's
+        entityManager.createNativeQuery("update refresh_token set id = id + 1000 where user_login = :login")
+                .setParameter("login", login)
+                .executeUpdate();
+        entityManager.clear();
+
+        List<byte[]> deleted = refreshTokenRepository.saveAndEvictOldest(
+                List.of(new RefreshToken(login, "THIRD", tomorrow)), 2);
+        entityManager.clear();
+
+        assertEquals(1, deleted.size());
+        assertArrayEquals(RefreshToken.hashOf("FIRST"), deleted.get(0));
+        assertEquals(Optional.of(login), refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("SECOND")));
+        assertEquals(Optional.of(login), refreshTokenRepository.findUserLoginByTokenHash(RefreshToken.hashOf("THIRD")));
     }
-}
\ No newline at end of file
+}
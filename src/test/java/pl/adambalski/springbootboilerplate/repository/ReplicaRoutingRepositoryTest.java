@@ -0,0 +1,110 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import pl.adambalski.springbootboilerplate.datasource.ReadYourWrites;
+import pl.adambalski.springbootboilerplate.datasource.ReplicaDataSourceFactory;
+import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
+import pl.adambalski.springbootboilerplate.model.User;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The "replica" is a second, independent database, so whatever is read from it was not written there by a test
+@DataJpaTest(properties = {
+        "app.datasource.replica.enabled = true",
+        "app.datasource.replica.url = " + ReplicaRoutingRepositoryTest.REPLICA_URL
+})
+@ComponentScan(basePackages = {
+        "pl.adambalski.springbootboilerplate.repository"
+},
+        useDefaultFilters = false,
+        includeFilters = {
+                @ComponentScan.Filter(
+                        type = FilterType.ASSIGNABLE_TYPE,
+                        classes = {
+                                UserRepository.class,
+                                AdminRepository.class,
+                        }
+                )
+        }
+)
+@Import({ReplicaDataSourceFactory.class, ReadYourWrites.class})
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// a test transaction would keep every query on the primary
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReplicaRoutingRepositoryTest {
+    static final String REPLICA_URL = "jdbc:tc:postgresql:12.7:///replica";
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    AdminRepository adminRepository;
+
+    @Autowired
+    ReadYourWrites readYourWrites;
+
+    PasswordEncoder passwordEncoder = TestPasswordEncoders.bcrypt();
+
+    User user;
+
+    @BeforeEach
+    void init() {
+        // the replica's pool is read-only
+        Flyway.configure().dataSource(REPLICA_URL, "test", "test").load().migrate();
+
+        SignUpUserDto signUpUserDto = new SignUpUserDto("login", "Log In", "log@in.png", "password", "password");
+        user = User.valueOf(signUpUserDto, passwordEncoder);
+        userRepository.save(user);
+    }
+
+    @AfterEach
+    void destroy() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testReadOnlyQueryGoesToTheReplica() {
+        assertTrue(userRepository.findCredentialsByLogin(user.getLogin()).isEmpty());
+    }
+
+    @Test
+    void testReadOnlyQueryOnPrimaryGoesToThePrimary() {
+        assertTrue(readYourWrites.onPrimary(() -> userRepository.findCredentialsByLogin(user.getLogin())).isPresent());
+    }
+
+    @Test
+    void testReadWriteQueryGoesToThePrimary() {
+        // existsByLogin guards sign-ups, so it is not read-only
+        assertTrue(userRepository.existsByLogin(user.getLogin()));
+    }
+
+    @Test
+    void testDeleteGoesToThePrimary() {
+        assertEquals(1, userRepository.deleteByLogin(user.getLogin()));
+
+        assertTrue(readYourWrites.onPrimary(() -> userRepository.findCredentialsByLogin(user.getLogin())).isEmpty());
+    }
+
+    @Test
+    void testDeleteByAdminGoesToThePrimary() {
+        assertEquals(1, adminRepository.deleteByLogin(user.getLogin()));
+
+        assertTrue(readYourWrites.onPrimary(() -> userRepository.findCredentialsByLogin(user.getLogin())).isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import pl.adambalski.springbootboilerplate.model.TokenRevocation;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ComponentScan(basePackages = {
+        "pl.adambalski.springbootboilerplate.repository"
+},
+        useDefaultFilters = false,
+        includeFilters = {
+                @ComponentScan.Filter(
+                        type = FilterType.ASSIGNABLE_TYPE,
+                        classes = {
+                                TokenRevocationRepository.class,
+                        }
+                )
+        }
+)
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class TokenRevocationRepositoryTest {
+    @Autowired
+    TokenRevocationRepository tokenRevocationRepository;
+
+    @Test
+    void testRevokeKeepsTheLaterRevocation() {
+        Instant earlier = Instant.ofEpochSecond(1_000);
+        Instant later = Instant.ofEpochSecond(2_000);
+
+        tokenRevocationRepository.revoke("login", later);
+        tokenRevocationRepository.revoke("login", earlier);
+
+        assertEquals(later, tokenRevocationRepository.findById("login").orElseThrow().getRevokedAt());
+    }
+
+    @Test
+    void testFindAllByRevokedAtAfter() {
+        tokenRevocationRepository.revoke("old", Instant.ofEpochSecond(1_000));
+        tokenRevocationRepository.revoke("new", Instant.ofEpochSecond(3_000));
+
+        List<TokenRevocation> revocations = tokenRevocationRepository.findAllByRevokedAtAfter(Instant.ofEpochSecond(2_000));
+
+        assertEquals(List.of(new TokenRevocation("new", Instant.ofEpochSecond(3_000))), revocations);
+    }
+
+    @Test
+    void testDeleteAllRevokedBefore() {
+        tokenRevocationRepository.revoke("old", Instant.ofEpochSecond(1_000));
+        tokenRevocationRepository.revoke("new", Instant.ofEpochSecond(3_000));
+
+        assertEquals(1, tokenRevocationRepository.deleteAllRevokedBefore(Instant.ofEpochSecond(2_000)));
+        assertTrue(tokenRevocationRepository.findById("old").isEmpty());
+        assertTrue(tokenRevocationRepository.findById("new").isPresent());
+    }
+}
@@ -0,0 +1,77 @@
+package pl.adambalski.springbootboilerplate.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetails;
+import pl.adambalski.springbootboilerplate.SpringbootBoilerplateApplication;
+import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
+import pl.adambalski.springbootboilerplate.model.User;
+import pl.adambalski.springbootboilerplate.model.UserCredentials;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading a user to authenticate them: the whole managed {@link User} entity
+ * (the previous path of {@link pl.adambalski.springbootboilerplate.security.UserDetailsServiceImpl})
+ * and the {@link UserCredentials} projection.
+ * Run with '-prof gc', 'gc.alloc.rate.norm' is the allocation per call.<br>
+ * Starts the application against the Testcontainers database of the test properties, so it needs Docker.
+ * Run {@link #main(String[])} or see README.md.<br><br>
+ *
+ * @see UserRepository#findCredentialsByLogin(String)
+ * @author Adam Balski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserCredentialsBenchmark {
+    private static final String LOGIN = "benchmark";
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(SpringbootBoilerplateApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false")
+                .run();
+        userRepository = context.getBean(UserRepository.class);
+
+        SignUpUserDto signUpUserDto = new SignUpUserDto(LOGIN, "Bench Mark", "bench@mark.com", "password", "password");
+        userRepository.save(User.valueOf(signUpUserDto, TestPasswordEncoders.bcrypt()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDetails entity() {
+        return userRepository.findByLogin(LOGIN).orElseThrow().toUserDetails();
+    }
+
+    @Benchmark
+    public UserDetails projection() {
+        return userRepository.findCredentialsByLogin(LOGIN).orElseThrow().toUserDetails();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserCredentialsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
@@ -13,7 +13,8 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
 import pl.adambalski.springbootboilerplate.model.User;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.model.UserCredentials;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
 
 import java.util.List;
 import java.util.Optional;
@@ -44,7 +45,7 @@ class UserRepositoryTest {
     @Autowired
     UserRepository userRepository;
 
-    PasswordEncoder passwordEncoder = new PasswordEncoderFactory().passwordEncoderBean();
+    PasswordEncoder passwordEncoder = TestPasswordEncoders.bcrypt();
 
     User user;
 
@@ -83,6 +84,30 @@ class UserRepositoryTest {
         assertTrue(userRepository.findByLogin("login").isEmpty());
     }
 
+    @Test
+    void testFindCredentialsByLoginWhenUserDoesExist() {
+        userRepository.save(user);
+
+        Optional<UserCredentials> credentialsOptional = userRepository.findCredentialsByLogin(user.getLogin());
+
+        assertEquals(Optional.of(new UserCredentials(user.getLogin(), user.getPassword(), user.getRole())),
+                credentialsOptional);
+    }
+
+    @Test
+    void testFindCredentialsByLoginWhenUserDoesNotExist() {
+        assertTrue(userRepository.findCredentialsByLogin("login").isEmpty());
+    }
+
+    @Test
+    void testFindCredentialsByLoginInReturnsOnlyExistingUsers() {
+        userRepository.save(user);
+
+        List<UserCredentials> credentials = userRepository.findCredentialsByLoginIn(List.of(user.getLogin(), "other"));
+
+        assertEquals(List.of(new UserCredentials(user.getLogin(), user.getPassword(), user.getRole())), credentials);
+    }
+
     @Test
     void testExistsByLoginOrEmailWhenUserHasBothLoginAndEmail() {
         SignUpUserDto signUpUserDto = new SignUpUserDto(
@@ -182,6 +207,20 @@ class UserRepositoryTest {
         assertFalse(userRepository.existsByEmail("log@in.png"));
     }
 
+    @Test
+    void testUpdatePasswordByLoginWhenPasswordIsTheSame() {
+        userRepository.save(user);
+
+        assertEquals(1, userRepository.updatePasswordByLogin(user.getLogin(), user.getPassword(), "new password"));
+    }
+
+    @Test
+    void testUpdatePasswordByLoginWhenPasswordHasChanged() {
+        userRepository.save(user);
+
+        assertEquals(0, userRepository.updatePasswordByLogin(user.getLogin(), "other password", "new password"));
+    }
+
     @Test
     void testDeleteUserByLoginWhenUserDoesExist() {
         userRepository.save(user);
@@ -0,0 +1,129 @@
+package pl.adambalski.springbootboilerplate.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AdvisoryLockLeaderElectionTest {
+    DataSource dataSource;
+    Connection connection;
+    PreparedStatement lockStatement;
+    PreparedStatement unlockStatement;
+    ResultSet resultSet;
+    SimpleMeterRegistry meterRegistry;
+    AdvisoryLockLeaderElection leaderElection;
+
+    @BeforeEach
+    void init() throws SQLException {
+        dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        lockStatement = mock(PreparedStatement.class);
+        unlockStatement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement("SELECT pg_try_advisory_lock(?)")).thenReturn(lockStatement);
+        when(connection.prepareStatement("SELECT pg_advisory_unlock(?)")).thenReturn(unlockStatement);
+        when(lockStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        meterRegistry = new SimpleMeterRegistry();
+
+        // the check interval is long, so only the tests call check()
+        leaderElection = new AdvisoryLockLeaderElection(dataSource, "scheduled_jobs", Duration.ofHours(1),
+                "node-1", meterRegistry, mock(Logger.class));
+    }
+
+    @AfterEach
+    void destroy() {
+        leaderElection.close();
+    }
+
+    @Test
+    void testCheckWhenLockIsTaken() throws SQLException {
+        when(resultSet.getBoolean(1)).thenReturn(true);
+
+        leaderElection.check();
+
+        assertTrue(leaderElection.isLeader());
+        verify(lockStatement).setLong(1, AdvisoryLockLeaderElection.lockKeyOf("scheduled_jobs"));
+        verify(connection, never()).close();
+        assertEquals(1.0, meterRegistry.get("scheduling.leader").tag("node", "node-1").gauge().value());
+    }
+
+    @Test
+    void testCheckWhenAnotherNodeHoldsTheLock() throws SQLException {
+        when(resultSet.getBoolean(1)).thenReturn(false);
+
+        leaderElection.check();
+
+        assertFalse(leaderElection.isLeader());
+        verify(connection).close();
+        assertEquals(0.0, meterRegistry.get("scheduling.leader").tag("node", "node-1").gauge().value());
+    }
+
+    @Test
+    void testCheckKeepsTheLockWhileConnectionIsValid() throws SQLException {
+        when(resultSet.getBoolean(1)).thenReturn(true);
+        when(connection.isValid(anyInt())).thenReturn(true);
+
+        leaderElection.check();
+        leaderElection.check();
+
+        assertTrue(leaderElection.isLeader());
+        verify(dataSource, times(1)).getConnection();
+    }
+
+    @Test
+    void testCheckWhenConnectionIsBroken() throws SQLException {
+        when(resultSet.getBoolean(1)).thenReturn(true);
+        when(connection.isValid(anyInt())).thenReturn(false);
+
+        leaderElection.check();
+        leaderElection.check();
+
+        assertFalse(leaderElection.isLeader());
+        verify(connection).close();
+        assertEquals(2.0, meterRegistry.get("scheduling.leader.changes").counter().count());
+    }
+
+    @Test
+    void testCheckWhenDatabaseIsDown() throws SQLException {
+        when(dataSource.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        leaderElection.check();
+
+        assertFalse(leaderElection.isLeader());
+    }
+
+    @Test
+    void testCloseReleasesTheLock() throws SQLException {
+        when(resultSet.getBoolean(1)).thenReturn(true);
+        leaderElection.check();
+
+        leaderElection.close();
+
+        assertFalse(leaderElection.isLeader());
+        verify(unlockStatement).execute();
+        verify(connection).close();
+    }
+
+    @Test
+    void testLockKeyOf() {
+        assertEquals(AdvisoryLockLeaderElection.lockKeyOf("scheduled_jobs"),
+                AdvisoryLockLeaderElection.lockKeyOf("scheduled_jobs"));
+        assertNotEquals(AdvisoryLockLeaderElection.lockKeyOf("scheduled_jobs"),
+                AdvisoryLockLeaderElection.lockKeyOf("other_jobs"));
+    }
+}
@@ -0,0 +1,64 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBCryptPasswordEncoderTest {
+    @Test
+    void testCalibrateWhenEveryStrengthIsFastEnough() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = AdaptiveBCryptPasswordEncoder.calibrate(Duration.ofHours(1), 4, 6, 0);
+
+        assertEquals(6, passwordEncoder.getStrength());
+    }
+
+    @Test
+    void testCalibrateWhenNoStrengthIsFastEnough() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = AdaptiveBCryptPasswordEncoder.calibrate(Duration.ZERO, 4, 6, 0);
+
+        assertEquals(4, passwordEncoder.getStrength());
+        assertTrue(passwordEncoder.encode("password").startsWith("$2a$04$"));
+    }
+
+    @Test
+    void testCalibrateWithInvalidStrengths() {
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveBCryptPasswordEncoder.calibrate(Duration.ZERO, 3, 6, 0));
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveBCryptPasswordEncoder.calibrate(Duration.ZERO, 6, 5, 0));
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveBCryptPasswordEncoder.calibrate(Duration.ZERO, 4, 32, 0));
+    }
+
+    @Test
+    void testUpgradeEncoding() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = new AdaptiveBCryptPasswordEncoder(5);
+
+        assertTrue(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+        assertFalse(passwordEncoder.upgradeEncoding(passwordEncoder.encode("password")));
+        // never downgraded
+        assertFalse(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+    }
+
+    @Test
+    void testUpgradeEncodingIgnoresDifferencesWithinTheMargin() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = new AdaptiveBCryptPasswordEncoder(6, 1);
+
+        assertFalse(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("password")));
+        assertTrue(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+    }
+
+    @Test
+    void testConstructorWithNegativeUpgradeMargin() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBCryptPasswordEncoder(5, -1));
+    }
+
+    @Test
+    void testUpgradeEncodingWhenPasswordIsNotBCrypt() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = new AdaptiveBCryptPasswordEncoder(5);
+
+        assertFalse(passwordEncoder.upgradeEncoding("not a hash"));
+        assertFalse(passwordEncoder.upgradeEncoding(null));
+        assertEquals(-1, AdaptiveBCryptPasswordEncoder.strengthOf("$2a$1$too short"));
+    }
+}
@@ -0,0 +1,122 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingUserDetailsServiceTest {
+    UserDetailsService userDetailsService;
+    Clock clock;
+    SimpleMeterRegistry meterRegistry;
+    CachingUserDetailsService cachingUserDetailsService;
+
+    UserDetails userDetails = new User("login", "password", List.of());
+
+    @BeforeEach
+    void init() {
+        userDetailsService = mock(UserDetailsService.class);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        meterRegistry = new SimpleMeterRegistry();
+
+        cachingUserDetailsService = new CachingUserDetailsService(userDetailsService,
+                Duration.ofSeconds(10), 100, clock, meterRegistry);
+    }
+
+    @Test
+    void testLoadUserByUsernameIsCached() {
+        when(userDetailsService.loadUserByUsername("login")).thenReturn(userDetails);
+
+        assertSame(userDetails, cachingUserDetailsService.loadUserByUsername("login"));
+        assertSame(userDetails, cachingUserDetailsService.loadUserByUsername("login"));
+
+        verify(userDetailsService, times(1)).loadUserByUsername("login");
+        assertEquals(1.0, meterRegistry.get("user.details.cache.hits").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("user.details.cache.misses").functionCounter().count());
+        assertEquals(0.5, meterRegistry.get("user.details.cache.hit.rate").gauge().value());
+    }
+
+    @Test
+    void testLoadUserByUsernameAfterTtl() {
+        when(userDetailsService.loadUserByUsername("login")).thenReturn(userDetails);
+
+        cachingUserDetailsService.loadUserByUsername("login");
+        when(clock.millis()).thenReturn(11_000L);
+        cachingUserDetailsService.loadUserByUsername("login");
+
+        verify(userDetailsService, times(2)).loadUserByUsername("login");
+    }
+
+    @Test
+    void testLoadUserByUsernameWhenUsernameDoesNotExist() {
+        when(userDetailsService.loadUserByUsername("login")).thenThrow(new UsernameNotFoundException("login"));
+
+        Executable executable = () -> cachingUserDetailsService.loadUserByUsername("login");
+        assertThrows(UsernameNotFoundException.class, executable);
+        assertThrows(UsernameNotFoundException.class, executable);
+
+        verify(userDetailsService, times(2)).loadUserByUsername("login");
+        assertEquals(0, cachingUserDetailsService.size());
+    }
+
+    @Test
+    void testOnUserChangedInvalidatesEntry() {
+        when(userDetailsService.loadUserByUsername("login"))
+                .thenReturn(userDetails)
+                .thenThrow(new UsernameNotFoundException("login"));
+        cachingUserDetailsService.loadUserByUsername("login");
+
+        cachingUserDetailsService.onUserChanged(new UserChangedEvent("login"));
+
+        Executable executable = () -> cachingUserDetailsService.loadUserByUsername("login");
+        assertThrows(UsernameNotFoundException.class, executable);
+    }
+
+    @Test
+    void testOnAllUsersChangedInvalidatesEverything() {
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+        cachingUserDetailsService.loadUserByUsername("first");
+        cachingUserDetailsService.loadUserByUsername("second");
+
+        cachingUserDetailsService.onAllUsersChanged(new AllUsersChangedEvent());
+
+        assertEquals(0, cachingUserDetailsService.size());
+    }
+
+    @Test
+    void testLoadIsNotCachedWhenUserChangesWhileLoading() {
+        // the user is deleted after the row was read, but before it was cached
+        when(userDetailsService.loadUserByUsername("login")).thenAnswer(invocation -> {
+            cachingUserDetailsService.onUserChanged(new UserChangedEvent("login"));
+            return userDetails;
+        });
+
+        assertSame(userDetails, cachingUserDetailsService.loadUserByUsername("login"));
+        assertEquals(0, cachingUserDetailsService.size());
+    }
+
+    @Test
+    void testLoadIsCachedWhenAnotherUserChangesWhileLoading() {
+        when(userDetailsService.loadUserByUsername("login")).thenAnswer(invocation -> {
+            cachingUserDetailsService.onUserChanged(new UserChangedEvent("other"));
+            return userDetails;
+        });
+
+        assertSame(userDetails, cachingUserDetailsService.loadUserByUsername("login"));
+        assertEquals(1, cachingUserDetailsService.size());
+    }
+}
@@ -8,6 +8,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class GrantedAuthorityImplTest {
     GrantedAuthorityImpl grantedAuthorityRoleAdmin;
@@ -54,4 +55,16 @@ class GrantedAuthorityImplTest {
     void testHashcodeIsEqualForEqualGrantedAuthorityImples() {
         assertEquals(grantedAuthorityRoleAdmin.hashCode(), grantedAuthorityRoleAdmin.hashCode());
     }
+
+    @Test
+    void testOfReturnsSharedInstance() {
+        assertSame(GrantedAuthorityImpl.of(Role.ADMIN), GrantedAuthorityImpl.of(Role.ADMIN));
+        assertEquals(grantedAuthorityRoleAdmin, GrantedAuthorityImpl.of(Role.ADMIN));
+    }
+
+    @Test
+    void testAuthoritiesOfReturnsSharedList() {
+        assertSame(GrantedAuthorityImpl.authoritiesOf(Role.USER), GrantedAuthorityImpl.authoritiesOf(Role.USER));
+        assertEquals(List.of(grantedAuthorityRoleUser), GrantedAuthorityImpl.authoritiesOf(Role.USER));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.adambalski.springbootboilerplate.exception.PasswordHashingOverloadedException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTest {
+    MeterRegistry meterRegistry;
+    PasswordHashingExecutor passwordHashingExecutor;
+    ExecutorService callers;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        passwordHashingExecutor = new PasswordHashingExecutor(1, 1, Duration.ofSeconds(3), meterRegistry);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void destroy() {
+        passwordHashingExecutor.close();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void testExecuteRunsOnHashingThread() {
+        String threadName = passwordHashingExecutor.execute(PasswordHashingExecutor.ENCODE_OPERATION,
+                () -> Thread.currentThread().getName());
+
+        assertTrue(threadName.startsWith("password-hashing-"));
+        assertEquals(1, meterRegistry.get("password.hashing.time").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("password.hashing.wait").timer().count());
+    }
+
+    @Test
+    void testExecuteRethrowsExceptionOfTask() {
+        assertThrows(IllegalArgumentException.class, () -> passwordHashingExecutor.execute(
+                PasswordHashingExecutor.MATCHES_OPERATION,
+                () -> { throw new IllegalArgumentException(); }));
+    }
+
+    @Test
+    void testExecuteWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // takes the only thread
+        callers.submit(() -> passwordHashingExecutor.execute(PasswordHashingExecutor.MATCHES_OPERATION, () -> {
+            started.countDown();
+            return await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // takes the only place in the queue
+        callers.submit(() -> passwordHashingExecutor.execute(PasswordHashingExecutor.MATCHES_OPERATION, () -> true));
+        while(passwordHashingExecutor.getQueueSize() == 0) {
+            Thread.onSpinWait();
+        }
+
+        PasswordHashingOverloadedException exception = assertThrows(PasswordHashingOverloadedException.class,
+                () -> passwordHashingExecutor.execute(PasswordHashingExecutor.MATCHES_OPERATION, () -> true));
+        release.countDown();
+
+        assertEquals(Duration.ofSeconds(3), exception.getRetryAfter());
+        assertEquals(1, meterRegistry.get("password.hashing.rejected").counter().count());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Password encoders for tests, which hash on the calling thread, without the executor
+ * and the configured cost of {@link PasswordEncoderFactory}.<br><br>
+ *
+ * @see PasswordEncoderFactory
+ * @author Adam Balski
+ */
+public final class TestPasswordEncoders {
+    private TestPasswordEncoders() {}
+
+    // BCrypt with strength of 10
+    public static PasswordEncoder bcrypt() {
+        return new BCryptPasswordEncoder(10);
+    }
+}
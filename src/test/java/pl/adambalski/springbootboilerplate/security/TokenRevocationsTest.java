@@ -0,0 +1,143 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.model.TokenRevocation;
+import pl.adambalski.springbootboilerplate.repository.TokenRevocationRepository;
+import pl.adambalski.springbootboilerplate.scheduling.LeaderElection;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationsTest {
+    static final long NOW = 1_000_000;
+    static final Duration TOKEN_LIFETIME = Duration.ofMinutes(10);
+
+    TokenRevocationRepository tokenRevocationRepository;
+    LeaderElection leaderElection;
+    Clock clock;
+    SimpleMeterRegistry meterRegistry;
+    TokenRevocations tokenRevocations;
+
+    @BeforeEach
+    void init() {
+        tokenRevocationRepository = mock(TokenRevocationRepository.class);
+        leaderElection = mock(LeaderElection.class);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(NOW * 1000);
+        meterRegistry = new SimpleMeterRegistry();
+
+        tokenRevocations = newTokenRevocations();
+    }
+
+    @Test
+    void testIsRevokedWhenNothingIsRevoked() {
+        assertFalse(tokenRevocations.isRevoked("login", 0));
+        assertFalse(tokenRevocations.isRevoked(null, 0));
+    }
+
+    @Test
+    void testRevokeRevokesTokensIssuedUntilNow() {
+        tokenRevocations.revoke("login");
+
+        verify(tokenRevocationRepository).revoke("login", Instant.ofEpochSecond(NOW));
+        assertTrue(tokenRevocations.isRevoked("login", NOW - 1));
+        assertTrue(tokenRevocations.isRevoked("login", NOW));
+        assertFalse(tokenRevocations.isRevoked("login", NOW + 1));
+        assertFalse(tokenRevocations.isRevoked("other", NOW - 1));
+        assertEquals(2.0, meterRegistry.get("token.revocations.rejected").counter().count());
+    }
+
+    @Test
+    void testRevocationsAreLoadedAtStartUp() {
+        when(tokenRevocationRepository.findAllByRevokedAtAfter(Instant.ofEpochSecond(NOW - TOKEN_LIFETIME.getSeconds())))
+                .thenReturn(List.of(new TokenRevocation("login", Instant.ofEpochSecond(NOW - 5))));
+
+        tokenRevocations = newTokenRevocations();
+
+        assertTrue(tokenRevocations.isRevoked("login", NOW - 5));
+        assertFalse(tokenRevocations.isRevoked("login", NOW - 4));
+        assertEquals(1.0, meterRegistry.get("token.revocations.size").gauge().value());
+    }
+
+    @Test
+    void testOnUserChangedWhenRemoteReloadsTheUser() {
+        when(tokenRevocationRepository.findById("login"))
+                .thenReturn(Optional.of(new TokenRevocation("login", Instant.ofEpochSecond(NOW))));
+
+        tokenRevocations.onUserChanged(new UserChangedEvent("login", true));
+
+        assertTrue(tokenRevocations.isRevoked("login", NOW));
+    }
+
+    @Test
+    void testOnUserChangedWhenLocalDoesNotQuery() {
+        tokenRevocations.onUserChanged(new UserChangedEvent("login"));
+
+        verify(tokenRevocationRepository, never()).findById(any());
+    }
+
+    @Test
+    void testOlderRevocationDoesNotMoveTheEpochBack() {
+        tokenRevocations.revoke("login");
+        when(tokenRevocationRepository.findById("login"))
+                .thenReturn(Optional.of(new TokenRevocation("login", Instant.ofEpochSecond(NOW - 100))));
+
+        tokenRevocations.onUserChanged(new UserChangedEvent("login", true));
+
+        assertTrue(tokenRevocations.isRevoked("login", NOW));
+    }
+
+    @Test
+    void testOnAllUsersChangedReloadsAll() {
+        when(tokenRevocationRepository.findAllByRevokedAtAfter(any()))
+                .thenReturn(List.of(new TokenRevocation("login", Instant.ofEpochSecond(NOW))));
+
+        tokenRevocations.onAllUsersChanged(new AllUsersChangedEvent());
+
+        assertTrue(tokenRevocations.isRevoked("login", NOW));
+    }
+
+    @Test
+    void testPurgeDropsRevocationsOlderThanTokenLifetime() {
+        tokenRevocations.revoke("old");
+        when(clock.millis()).thenReturn((NOW + 100) * 1000);
+        tokenRevocations.revoke("new");
+
+        when(clock.millis()).thenReturn((NOW + TOKEN_LIFETIME.getSeconds() + 1) * 1000);
+        tokenRevocations.purge();
+
+        assertEquals(1, tokenRevocations.size());
+        assertFalse(tokenRevocations.isRevoked("old", NOW));
+        assertTrue(tokenRevocations.isRevoked("new", NOW + 100));
+    }
+
+    @Test
+    void testScheduledPurgeDeletesRowsOnlyOnLeader() {
+        long cutoff = NOW - TOKEN_LIFETIME.getSeconds();
+
+        when(leaderElection.isLeader()).thenReturn(false);
+        tokenRevocations.scheduledPurge();
+        verify(tokenRevocationRepository, never()).deleteAllRevokedBefore(any());
+
+        when(leaderElection.isLeader()).thenReturn(true);
+        tokenRevocations.scheduledPurge();
+        verify(tokenRevocationRepository).deleteAllRevokedBefore(Instant.ofEpochSecond(cutoff));
+    }
+
+    private TokenRevocations newTokenRevocations() {
+        meterRegistry = new SimpleMeterRegistry();
+        return new TokenRevocations(tokenRevocationRepository, leaderElection, TOKEN_LIFETIME,
+                clock, meterRegistry, mock(Logger.class));
+    }
+}
@@ -1,27 +1,32 @@
 package pl.adambalski.springbootboilerplate.security;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import pl.adambalski.springbootboilerplate.datasource.ReadYourWrites;
+import pl.adambalski.springbootboilerplate.logger.Logger;
 import pl.adambalski.springbootboilerplate.model.Role;
 import pl.adambalski.springbootboilerplate.model.User;
+import pl.adambalski.springbootboilerplate.model.UserCredentials;
 import pl.adambalski.springbootboilerplate.repository.UserRepository;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 class UserDetailsServiceImplTest {
-    @InjectMocks
     UserDetailsServiceImpl userDetailsService;
 
     @Mock
@@ -32,6 +37,9 @@ class UserDetailsServiceImplTest {
     @BeforeEach
     void init() {
         autoCloseable = MockitoAnnotations.openMocks(this);
+        ReadYourWrites readYourWrites = new ReadYourWrites(false, Duration.ZERO, 1, Clock.systemUTC());
+        userDetailsService = new UserDetailsServiceImpl(new UserLookupBatcher(userRepository, readYourWrites, false, 1,
+                Duration.ZERO, 1, new SimpleMeterRegistry(), mock(Logger.class)));
     }
 
     @AfterEach
@@ -43,8 +51,8 @@ class UserDetailsServiceImplTest {
     void testLoadUserByUsername() {
         User user = new User(UUID.randomUUID(),
                 "login", null, null, "password", Role.ADMIN);
-        when(userRepository.findByLogin("login"))
-                .thenReturn(Optional.of(user));
+        when(userRepository.findCredentialsByLogin("login"))
+                .thenReturn(Optional.of(new UserCredentials("login", "password", Role.ADMIN)));
 
         UserDetails expected = user.toUserDetails();
         assertEquals(expected, userDetailsService.loadUserByUsername("login"));
@@ -52,7 +60,7 @@ class UserDetailsServiceImplTest {
 
     @Test
     void testLoadUserByUsernameWhenUsernameDoesNotExist() {
-        when(userRepository.findByLogin("login"))
+        when(userRepository.findCredentialsByLogin("login"))
                 .thenReturn(Optional.empty());
 
         Executable executable = () -> userDetailsService.loadUserByUsername("login");
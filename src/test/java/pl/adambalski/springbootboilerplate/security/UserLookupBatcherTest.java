@@ -0,0 +1,147 @@
+package pl.adambalski.springbootboilerplate.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import pl.adambalski.springbootboilerplate.datasource.ReadYourWrites;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.model.Role;
+import pl.adambalski.springbootboilerplate.model.UserCredentials;
+import pl.adambalski.springbootboilerplate.repository.UserRepository;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserLookupBatcherTest {
+    UserRepository userRepository;
+    ReadYourWrites readYourWrites;
+    SimpleMeterRegistry meterRegistry;
+    UserLookupBatcher userLookupBatcher;
+
+    @BeforeEach
+    void init() {
+        userRepository = mock(UserRepository.class);
+        readYourWrites = new ReadYourWrites(true, Duration.ofSeconds(5), 100, Clock.systemUTC());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void destroy() {
+        if(userLookupBatcher != null) {
+            userLookupBatcher.close();
+        }
+    }
+
+    @Test
+    void testFindWithoutBatching() {
+        userLookupBatcher = new UserLookupBatcher(userRepository, readYourWrites, false, 10, Duration.ofSeconds(1), 100,
+                meterRegistry, mock(Logger.class));
+        when(userRepository.findCredentialsByLogin("first")).thenReturn(Optional.of(credentials("first")));
+
+        assertEquals(Optional.of(credentials("first")), userLookupBatcher.findCredentialsByLogin("first"));
+
+        verify(userRepository, never()).findCredentialsByLoginIn(any());
+    }
+
+    @Test
+    void testConcurrentLookupsAreResolvedWithOneQuery() throws Exception {
+        // the first lookup waits for the other ones up to max delay, the batch is resolved as soon as it is full
+        userLookupBatcher = new UserLookupBatcher(userRepository, readYourWrites, true, 4, Duration.ofSeconds(10), 100,
+                meterRegistry, mock(Logger.class));
+        when(userRepository.findCredentialsByLoginIn(any()))
+                .thenReturn(List.of(credentials("first"), credentials("second")));
+        List<String> logins = List.of("first", "second", "second", "unknown");
+
+        ExecutorService executor = Executors.newFixedThreadPool(logins.size());
+        List<Optional<UserCredentials>> results = new ArrayList<>();
+        try {
+            List<Future<Optional<UserCredentials>>> futures = new ArrayList<>();
+            logins.forEach(login -> futures.add(executor.submit(() -> userLookupBatcher.findCredentialsByLogin(login))));
+            for(Future<Optional<UserCredentials>> future : futures) {
+                results.add(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(List.of(Optional.of(credentials("first")), Optional.of(credentials("second")),
+                Optional.of(credentials("second")), Optional.empty()), results);
+        // the same login is looked up once
+        verify(userRepository).findCredentialsByLoginIn(argThat(batch ->
+                batch.size() == 3 && batch.containsAll(List.of("first", "second", "unknown"))));
+        verify(userRepository, never()).findCredentialsByLogin(any());
+        assertEquals(1, meterRegistry.get("user.lookup.batch.size").summary().count());
+        assertEquals(4.0, meterRegistry.get("user.lookup.batch.size").summary().totalAmount());
+        assertEquals(1, meterRegistry.get("user.lookup.batch.query").timer().count());
+        assertEquals(4, meterRegistry.get("user.lookup.batch.wait").timer().count());
+    }
+
+    @Test
+    void testLookupReturnsAfterMaxDelay() {
+        userLookupBatcher = new UserLookupBatcher(userRepository, readYourWrites, true, 100, Duration.ofMillis(5), 100,
+                meterRegistry, mock(Logger.class));
+        when(userRepository.findCredentialsByLoginIn(any())).thenReturn(List.of(credentials("first")));
+
+        assertEquals(Optional.of(credentials("first")), userLookupBatcher.findCredentialsByLogin("first"));
+    }
+
+    @Test
+    void testLookupWhenQueryFails() {
+        userLookupBatcher = new UserLookupBatcher(userRepository, readYourWrites, true, 1, Duration.ZERO, 100,
+                meterRegistry, mock(Logger.class));
+        when(userRepository.findCredentialsByLoginIn(any())).thenThrow(new IllegalStateException("query failed"));
+
+        Executable executable = () -> userLookupBatcher.findCredentialsByLogin("first");
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, executable);
+        assertEquals("query failed", exception.getMessage());
+    }
+
+    @Test
+    void testLookupAfterCloseIsNotBatched() {
+        userLookupBatcher = new UserLookupBatcher(userRepository, readYourWrites, true, 100, Duration.ofMinutes(1), 100,
+                meterRegistry, mock(Logger.class));
+        userLookupBatcher.close();
+        when(userRepository.findCredentialsByLogin("first")).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), userLookupBatcher.findCredentialsByLogin("first"));
+
+        verify(userRepository).findCredentialsByLogin("first");
+    }
+
+    @Test
+    void testRecentlyWrittenUserIsNotBatched() {
+        userLookupBatcher = new UserLookupBatcher(userRepository, readYourWrites, true, 100, Duration.ofMinutes(1), 100,
+                meterRegistry, mock(Logger.class));
+        readYourWrites.onUserChanged(new UserChangedEvent("first"));
+        when(userRepository.findCredentialsByLogin("first")).thenReturn(Optional.of(credentials("first")));
+
+        assertEquals(Optional.of(credentials("first")), userLookupBatcher.findCredentialsByLogin("first"));
+
+        verify(userRepository, never()).findCredentialsByLoginIn(any());
+    }
+
+    @Test
+    void testConstructorWhenBatchSizeIsNotPositive() {
+        Executable executable = () -> new UserLookupBatcher(userRepository, readYourWrites, false, 0, Duration.ZERO, 100,
+                meterRegistry, mock(Logger.class));
+
+        assertThrows(IllegalArgumentException.class, executable);
+    }
+
+    private UserCredentials credentials(String login) {
+        return new UserCredentials(login, "password", Role.USER);
+    }
+}
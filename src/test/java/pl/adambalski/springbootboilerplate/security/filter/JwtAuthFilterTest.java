@@ -13,6 +13,9 @@ import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import pl.adambalski.springbootboilerplate.model.Role;
+import pl.adambalski.springbootboilerplate.security.GrantedAuthorityImpl;
+import pl.adambalski.springbootboilerplate.security.TokenRevocations;
 import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
 
 import javax.servlet.Filter;
@@ -22,20 +25,24 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 class JwtAuthFilterTest {
     // Components
     private FilterChain filterChain;
     private Filter filter;
+    private Filter statelessFilter;
     private UserDetailsService userDetailsService;
+    private TokenRevocations tokenRevocations;
+    private Filter revokingFilter;
 
     // Data
     private String validToken;
+    private String validTokenWithRole;
     private String notValidToken;
     private String usernameInValidToken;
     private UserDetails userDetailsInToken;
@@ -50,12 +57,17 @@ class JwtAuthFilterTest {
         notValidToken = "this is not a valid token";
         validToken = jwtUtil
                 .tokenOf(usernameInValidToken);
+        validTokenWithRole = jwtUtil
+                .tokenOf(usernameInValidToken, Role.ADMIN, UUID.randomUUID());
 
 
 
         // Components used in tests
         userDetailsService = mock(UserDetailsService.class);
         filter = new JwtAuthFilter(() -> userDetailsService, jwtUtil);
+        statelessFilter = new JwtAuthFilter(() -> userDetailsService, jwtUtil, true);
+        tokenRevocations = mock(TokenRevocations.class);
+        revokingFilter = new JwtAuthFilter(() -> userDetailsService, jwtUtil, true, tokenRevocations);
         filterChain = mock(FilterChain.class);
 
         // Reset SecurityContext
@@ -169,6 +181,101 @@ class JwtAuthFilterTest {
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
 
+    @Test
+    void testStatelessFilterWhenThereIsValidJwtWithRole() throws IOException, ServletException {
+        HttpServletRequest request = getHttpServletRequestWithAuthorizationHeader(validTokenWithRole);
+        HttpServletResponse response = new MockHttpServletResponse();
+
+        statelessFilter.doFilter(request, response, filterChain);
+
+        assertEquals(
+                new UsernamePasswordAuthenticationToken(
+                        usernameInValidToken,
+                        null,
+                        GrantedAuthorityImpl.authoritiesOf(Role.ADMIN)),
+                SecurityContextHolder.getContext().getAuthentication()
+        );
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void testFilterWhenTokenIsRevoked() throws IOException, ServletException {
+        setAuthenticationToCertainUser();
+        long now = System.currentTimeMillis() / 1000;
+        when(tokenRevocations.isRevoked(eq(usernameInValidToken), anyLong())).thenReturn(true);
+
+        HttpServletRequest request = getHttpServletRequestWithAuthorizationHeader(validTokenWithRole);
+        HttpServletResponse response = new MockHttpServletResponse();
+
+        revokingFilter.doFilter(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        // the token's iat is what is compared
+        verify(tokenRevocations).isRevoked(eq(usernameInValidToken), longThat(issuedAt -> Math.abs(issuedAt - now) <= 1));
+        verify(filterChain).doFilter(request, response);
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void testFilterWhenTokenIsNotRevoked() throws IOException, ServletException {
+        HttpServletRequest request = getHttpServletRequestWithAuthorizationHeader(validTokenWithRole);
+        HttpServletResponse response = new MockHttpServletResponse();
+
+        revokingFilter.doFilter(request, response, filterChain);
+
+        assertEquals(
+                new UsernamePasswordAuthenticationToken(
+                        usernameInValidToken,
+                        null,
+                        GrantedAuthorityImpl.authoritiesOf(Role.ADMIN)),
+                SecurityContextHolder.getContext().getAuthentication()
+        );
+    }
+
+    @Test
+    void testStatelessFilterWhenThereIsValidJwtWithoutRole() throws IOException, ServletException {
+        when(userDetailsService.loadUserByUsername(usernameInValidToken))
+                .thenReturn(userDetailsInToken);
+
+        HttpServletRequest request = getHttpServletRequestWithAuthorizationHeader(validToken);
+        HttpServletResponse response = new MockHttpServletResponse();
+
+        statelessFilter.doFilter(request, response, filterChain);
+
+        assertEquals(
+                convertUserDetailsToAuthentication(userDetailsInToken),
+                SecurityContextHolder.getContext().getAuthentication()
+        );
+    }
+
+    @Test
+    void testStatelessFilterWhenThereIsInvalidJwt() throws IOException, ServletException {
+        setAuthenticationToCertainUser();
+
+        HttpServletRequest request = getHttpServletRequestWithAuthorizationHeader(notValidToken);
+        HttpServletResponse response = new MockHttpServletResponse();
+
+        statelessFilter.doFilter(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void testNotStatelessFilterIgnoresRoleClaim() throws IOException, ServletException {
+        when(userDetailsService.loadUserByUsername(usernameInValidToken))
+                .thenReturn(userDetailsInToken);
+
+        HttpServletRequest request = getHttpServletRequestWithAuthorizationHeader(validTokenWithRole);
+        HttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, filterChain);
+
+        assertEquals(
+                convertUserDetailsToAuthentication(userDetailsInToken),
+                SecurityContextHolder.getContext().getAuthentication()
+        );
+    }
+
     private void setAuthenticationToCertainUser() {
         SecurityContextHolder.getContext().setAuthentication(getCertainUser());
     }
@@ -0,0 +1,132 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.adambalski.springbootboilerplate.model.Role;
+import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+
+import javax.crypto.SecretKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FastJwtSignerTest {
+    private static final long NOW = 1_790_000_000_123L;
+
+    private SecretKey secretKey;
+    private Clock clock;
+
+    @BeforeEach
+    void init() {
+        secretKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(NOW);
+    }
+
+    @Test
+    void testSignMintsTheSameTokenAsJjwt() {
+        FastJwtSigner signer = new FastJwtSigner(JwtKeyRing.of(secretKey), JwtUtil.ISSUER, Duration.ofMinutes(10), clock);
+
+        String expected = jjwtBuilder(null, "username").compact();
+
+        assertEquals(SecurityConfiguration.JWT_TOKEN_PREFIX + expected, signer.sign("username", null, null));
+    }
+
+    @Test
+    void testSignWithRoleAndUserIdMintsTheSameTokenAsJjwt() {
+        FastJwtSigner signer = new FastJwtSigner(JwtKeyRing.of(secretKey), JwtUtil.ISSUER, Duration.ofMinutes(10), clock);
+        UUID uuid = UUID.fromString("0a1b2c3d-0000-4fff-8001-00000000000f");
+
+        String expected = jjwtBuilder(null, "username")
+                .claim(JwtUtil.ROLE_CLAIM, Role.ADMIN.name())
+                .claim(JwtUtil.USER_ID_CLAIM, uuid.toString())
+                .compact();
+
+        assertEquals(SecurityConfiguration.JWT_TOKEN_PREFIX + expected, signer.sign("username", Role.ADMIN, uuid));
+    }
+
+    @Test
+    void testSignWithLongIssuerMintsTheSameTokenAsJjwt() {
+        String issuer = "issuer-".repeat(30);
+        FastJwtSigner signer = new FastJwtSigner(JwtKeyRing.of(secretKey), issuer, Duration.ofMinutes(10), clock);
+        UUID uuid = UUID.fromString("0a1b2c3d-0000-4fff-8001-00000000000f");
+
+        String expected = jjwtBuilder(null, "username")
+                .setIssuer(issuer)
+                .claim(JwtUtil.ROLE_CLAIM, Role.ADMIN.name())
+                .claim(JwtUtil.USER_ID_CLAIM, uuid.toString())
+                .compact();
+
+        assertEquals(SecurityConfiguration.JWT_TOKEN_PREFIX + expected, signer.sign("username", Role.ADMIN, uuid));
+    }
+
+    @Test
+    void testSignWithKeyIdMintsTheSameTokenAsJjwt() {
+        JwtKeyRing keyRing = JwtKeyRing.of(Map.of("2026-10", secretKey), "2026-10");
+        FastJwtSigner signer = new FastJwtSigner(keyRing, JwtUtil.ISSUER, Duration.ofMinutes(10), clock);
+
+        String expected = jjwtBuilder("2026-10", "user.name-1").compact();
+
+        assertEquals(SecurityConfiguration.JWT_TOKEN_PREFIX + expected, signer.sign("user.name-1", null, null));
+    }
+
+    @Test
+    void testSignWhenSecondChanges() {
+        FastJwtSigner signer = new FastJwtSigner(JwtKeyRing.of(secretKey), JwtUtil.ISSUER, Duration.ofMinutes(10), clock);
+        String first = signer.sign("username", null, null);
+
+        when(clock.millis()).thenReturn(NOW + 1000);
+        String second = signer.sign("username", null, null);
+
+        Date firstIssuedAt = new FastJwtVerifier(secretKey, clock).verify(withoutPrefix(first)).getIssuedAt();
+        Date secondIssuedAt = new FastJwtVerifier(secretKey, clock).verify(withoutPrefix(second)).getIssuedAt();
+        assertEquals(1000, secondIssuedAt.getTime() - firstIssuedAt.getTime());
+    }
+
+    @Test
+    void testSignWhenSubjectHasToBeEscaped() {
+        FastJwtSigner signer = new FastJwtSigner(JwtKeyRing.of(secretKey), JwtUtil.ISSUER, Duration.ofMinutes(10), clock);
+
+        assertNull(signer.sign("user\"name", null, null));
+        assertNull(signer.sign("user\\name", null, null));
+        assertNull(signer.sign("user\nname", null, null));
+        assertNull(signer.sign("użytkownik", null, null));
+        assertNull(signer.sign(null, null, null));
+    }
+
+    @Test
+    void testSignWhenKeyRingIsAsymmetric() {
+        FastJwtSigner signer = new FastJwtSigner(JwtKeyRing.ephemeral(SignatureAlgorithm.ES256),
+                JwtUtil.ISSUER, Duration.ofMinutes(10), clock);
+
+        assertNull(signer.sign("username", null, null));
+    }
+
+    private JwtBuilder jjwtBuilder(String keyId, String subject) {
+        JwtBuilder builder = Jwts.builder();
+        if(keyId != null) {
+            builder.setHeaderParam("kid", keyId);
+        }
+
+        return builder
+                .setSubject(subject)
+                .setIssuedAt(new Date(NOW))
+                .setExpiration(new Date(NOW + Duration.ofMinutes(10).toMillis()))
+                .setIssuer(JwtUtil.ISSUER)
+                .signWith(secretKey, SignatureAlgorithm.HS512);
+    }
+
+    private String withoutPrefix(String token) {
+        return token.substring(SecurityConfiguration.JWT_TOKEN_PREFIX.length());
+    }
+}
@@ -0,0 +1,166 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import pl.adambalski.springbootboilerplate.model.Role;
+import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+
+import javax.crypto.SecretKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FastJwtVerifierTest {
+    private SecretKey secretKey;
+    private JwtUtil jwtUtil;
+    private JwtParser jwtParser;
+    private FastJwtVerifier fastJwtVerifier;
+
+    @BeforeEach
+    void init() {
+        secretKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        jwtUtil = new JwtUtil(secretKey);
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build();
+        fastJwtVerifier = new FastJwtVerifier(secretKey);
+    }
+
+    @Test
+    void testVerifyGivesTheSameClaimsAsJjwt() {
+        String token = withoutPrefix(jwtUtil.tokenOf("username"));
+
+        Claims expected = jwtParser.parseClaimsJws(token).getBody();
+        Claims actual = fastJwtVerifier.verify(token);
+
+        assertEquals(expected.getSubject(), actual.getSubject());
+        assertEquals(expected.getIssuer(), actual.getIssuer());
+        assertEquals(expected.getIssuedAt(), actual.getIssuedAt());
+        assertEquals(expected.getExpiration(), actual.getExpiration());
+    }
+
+    @Test
+    void testVerifyReadsRoleAndUserId() {
+        UUID uuid = UUID.randomUUID();
+        String token = withoutPrefix(jwtUtil.tokenOf("username", Role.ADMIN, uuid));
+
+        Claims claims = fastJwtVerifier.verify(token);
+
+        assertEquals("username", claims.getSubject());
+        assertEquals(Role.ADMIN, JwtUtil.roleOf(claims));
+        assertEquals(uuid.toString(), claims.get(JwtUtil.USER_ID_CLAIM, String.class));
+    }
+
+    @Test
+    void testVerifyWhenSignatureIsInvalid() {
+        String token = withoutPrefix(new JwtUtil(Keys.secretKeyFor(SignatureAlgorithm.HS512)).tokenOf("username"));
+
+        Executable executable = () -> fastJwtVerifier.verify(token);
+        assertThrows(SignatureException.class, executable);
+    }
+
+    @Test
+    void testVerifyWhenPayloadIsTamperedWith() {
+        String token = withoutPrefix(jwtUtil.tokenOf("username"));
+        String otherToken = withoutPrefix(jwtUtil.tokenOf("admin"));
+
+        String[] parts = token.split("\\.");
+        String[] otherParts = otherToken.split("\\.");
+        String tampered = parts[0] + "." + otherParts[1] + "." + parts[2];
+
+        Executable executable = () -> fastJwtVerifier.verify(tampered);
+        assertThrows(SignatureException.class, executable);
+    }
+
+    @Test
+    void testVerifyWhenTokenIsExpired() {
+        String token = withoutPrefix(jwtUtil.tokenOf("username"));
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(Instant.now().plus(Duration.ofHours(1)).toEpochMilli());
+
+        assertNull(new FastJwtVerifier(secretKey, clock).verify(token));
+    }
+
+    @Test
+    void testVerifyWhenTokenHasUnknownClaim() {
+        String token = Jwts.builder()
+                .setSubject("username")
+                .setExpiration(Date.from(Instant.now().plus(Duration.ofMinutes(10))))
+                .claim("admin", true)
+                .signWith(secretKey, SignatureAlgorithm.HS512)
+                .compact();
+
+        assertNull(fastJwtVerifier.verify(token));
+    }
+
+    @Test
+    void testVerifyWhenTokenHasNoExpirationDate() {
+        String token = Jwts.builder()
+                .setSubject("username")
+                .signWith(secretKey, SignatureAlgorithm.HS512)
+                .compact();
+
+        assertNull(fastJwtVerifier.verify(token));
+    }
+
+    @Test
+    void testVerifyWhenSubjectIsEscaped() {
+        String token = withoutPrefix(jwtUtil.tokenOf("user\"name"));
+
+        assertNull(fastJwtVerifier.verify(token));
+    }
+
+    @Test
+    void testVerifyWhenAlgorithmIsDifferent() {
+        String token = Jwts.builder()
+                .setSubject("username")
+                .setExpiration(Date.from(Instant.now().plus(Duration.ofMinutes(10))))
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS256), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertNull(fastJwtVerifier.verify(token));
+    }
+
+    @Test
+    void testVerifyWhenTokenIsMalformed() {
+        assertNull(fastJwtVerifier.verify("this is not a valid token"));
+        assertNull(fastJwtVerifier.verify(FastJwtVerifier.HS512_HEADER + ".e30."));
+        assertNull(fastJwtVerifier.verify(FastJwtVerifier.HS512_HEADER + "..."));
+    }
+
+    @Test
+    void testVerifyPicksKeyByKeyId() {
+        SecretKey otherKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        JwtKeyRing keyRing = JwtKeyRing.of(Map.of("first", secretKey, "second", otherKey), "second");
+        String token = withoutPrefix(new JwtUtil(keyRing).tokenOf("username"));
+
+        assertTrue(token.startsWith(FastJwtVerifier.headerOf("second") + "."));
+        assertEquals("username", new FastJwtVerifier(keyRing).verify(token).getSubject());
+    }
+
+    @Test
+    void testVerifyWhenKeyIdIsUnknown() {
+        JwtKeyRing keyRing = JwtKeyRing.of(Map.of("first", secretKey), "first");
+        String token = withoutPrefix(new JwtUtil(JwtKeyRing.of(Map.of("second", secretKey), "second")).tokenOf("username"));
+
+        assertNull(new FastJwtVerifier(keyRing).verify(token));
+    }
+
+    private String withoutPrefix(String token) {
+        return token.substring(SecurityConfiguration.JWT_TOKEN_PREFIX.length());
+    }
+}
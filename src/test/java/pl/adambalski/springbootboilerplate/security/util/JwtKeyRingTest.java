@@ -0,0 +1,137 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyRingTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLoad() throws IOException {
+        SecretKey first = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        SecretKey second = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        Path file = write(
+                "active = second",
+                "key.first = " + encode(first),
+                "key.second = " + encode(second));
+
+        JwtKeyRing keyRing = JwtKeyRing.load(file, SignatureAlgorithm.HS512);
+
+        assertEquals("second", keyRing.getActiveKeyId());
+        assertArrayEquals(second.getEncoded(), keyRing.getActiveKey().getEncoded());
+        assertArrayEquals(first.getEncoded(), keyRing.getKey("first").getEncoded());
+        assertEquals(Set.of("first", "second"), keyRing.getKeyIds());
+    }
+
+    @Test
+    void testLoadWhenActiveKeyIsMissing() throws IOException {
+        Path file = write("key.first = " + encode(Keys.secretKeyFor(SignatureAlgorithm.HS512)));
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyRing.load(file, SignatureAlgorithm.HS512));
+    }
+
+    @Test
+    void testLoadWhenActiveKeyIsNotInTheRing() throws IOException {
+        Path file = write(
+                "active = second",
+                "key.first = " + encode(Keys.secretKeyFor(SignatureAlgorithm.HS512)));
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyRing.load(file, SignatureAlgorithm.HS512));
+    }
+
+    @Test
+    void testLoadWhenKeyIsTooShort() throws IOException {
+        Path file = write(
+                "active = first",
+                "key.first = " + encode(Keys.secretKeyFor(SignatureAlgorithm.HS256)));
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyRing.load(file, SignatureAlgorithm.HS512));
+    }
+
+    @Test
+    void testOfWhenKeyIdIsInvalid() {
+        Map<String, SecretKey> keys = Map.of("not a valid \"id\"", Keys.secretKeyFor(SignatureAlgorithm.HS512));
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyRing.of(keys, "not a valid \"id\""));
+    }
+
+    @Test
+    void testOfSingleKeyHasNoKeyId() {
+        SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        JwtKeyRing keyRing = JwtKeyRing.of(key);
+
+        assertNull(keyRing.getActiveKeyId());
+        assertSame(key, keyRing.getActiveKey());
+    }
+
+    @Test
+    void testEphemeral() {
+        JwtKeyRing keyRing = JwtKeyRing.ephemeral();
+
+        assertEquals(JwtKeyRing.EPHEMERAL_KEY_ID, keyRing.getActiveKeyId());
+        assertEquals(64, keyRing.getActiveKey().getEncoded().length);
+    }
+
+    @Test
+    void testLoadEs256() throws IOException {
+        KeyPair active = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        KeyPair old = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        Path file = write(
+                "active = new",
+                "key.new = " + encode(active.getPrivate()),
+                "public.new = " + encode(active.getPublic()),
+                "public.old = " + encode(old.getPublic()));
+
+        JwtKeyRing keyRing = JwtKeyRing.load(file, SignatureAlgorithm.ES256);
+
+        assertEquals(SignatureAlgorithm.ES256, keyRing.getAlgorithm());
+        assertArrayEquals(active.getPrivate().getEncoded(), keyRing.getActiveKey().getEncoded());
+        assertArrayEquals(old.getPublic().getEncoded(), keyRing.getKey("old").getEncoded());
+        assertEquals(Set.of("new", "old"), keyRing.getPublicKeys().keySet());
+    }
+
+    @Test
+    void testLoadEs256WhenActivePrivateKeyIsMissing() throws IOException {
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        Path file = write(
+                "active = new",
+                "public.new = " + encode(keyPair.getPublic()));
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyRing.load(file, SignatureAlgorithm.ES256));
+    }
+
+    @Test
+    void testLoadWhenAlgorithmIsNotSupported() throws IOException {
+        Path file = write("active = first");
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyRing.load(file, SignatureAlgorithm.HS256));
+    }
+
+    @Test
+    void testPublicKeysOfHs512KeyRingAreEmpty() {
+        assertTrue(JwtKeyRing.ephemeral().getPublicKeys().isEmpty());
+    }
+
+    private Path write(String... lines) throws IOException {
+        return Files.write(directory.resolve("jwt-keys.properties"), String.join("\n", lines).getBytes());
+    }
+
+    private static String encode(Key key) {
+        return Base64.getEncoder().encodeToString(key.getEncoded());
+    }
+}
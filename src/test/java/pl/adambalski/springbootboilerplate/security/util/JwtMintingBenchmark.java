@@ -0,0 +1,76 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pl.adambalski.springbootboilerplate.model.Role;
+import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of minting a token with jjwt's builder (the previous minting path)
+ * and with {@link JwtUtil#tokenOf(String, Role, UUID)}, which goes through {@link FastJwtSigner}.<br>
+ * {@link #main(String[])} runs both with 1, 2, 4... threads up to the number of processors,
+ * from the command line use JMH's '-t' option (see README.md).<br><br>
+ *
+ * @see FastJwtSigner
+ * @author Adam Balski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtMintingBenchmark {
+    private SecretKey secretKey;
+    private JwtUtil jwtUtil;
+    private UUID userId;
+
+    @Setup
+    public void setup() {
+        secretKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        jwtUtil = new JwtUtil(secretKey);
+        userId = UUID.randomUUID();
+    }
+
+    @Benchmark
+    public String jjwt() {
+        return SecurityConfiguration.JWT_TOKEN_PREFIX + Jwts.builder()
+                .setSubject("username1234")
+                .setIssuedAt(new Date())
+                .setExpiration(Date.from(Instant.now().plus(Duration.ofMinutes(10))))
+                .setIssuer(JwtUtil.ISSUER)
+                .claim(JwtUtil.ROLE_CLAIM, Role.USER.name())
+                .claim(JwtUtil.USER_ID_CLAIM, userId.toString())
+                .signWith(secretKey, SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    @Benchmark
+    public String fastSigner() {
+        return jwtUtil.tokenOf("username1234", Role.USER, userId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for(int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(JwtMintingBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build()
+            ).run();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pl.adambalski.springbootboilerplate.model.Role;
+import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of signing ({@link JwtUtil#tokenOf(String, Role, UUID)}) and verifying
+ * a token with every algorithm a {@link JwtKeyRing} supports.
+ * Verification goes through jjwt without {@link VerifiedTokenCache}, the way a downstream service
+ * verifies a token with a key from /.well-known/jwks.json.<br>
+ * Run {@link #main(String[])} or see README.md.<br><br>
+ *
+ * @see JwtKeyRing
+ * @author Adam Balski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtSigningBenchmark {
+    @Param({"HS512", "ES256", "RS256"})
+    private SignatureAlgorithm algorithm;
+
+    private JwtUtil jwtUtil;
+    private JwtParser jwtParser;
+    private UUID userId;
+    private String token;
+
+    @Setup
+    public void setup() {
+        JwtKeyRing keyRing = JwtKeyRing.ephemeral(algorithm);
+
+        jwtUtil = new JwtUtil(keyRing);
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(keyRing.getKey(keyRing.getActiveKeyId()))
+                .build();
+        userId = UUID.randomUUID();
+        token = jwtUtil.tokenOf("username1234", Role.USER, userId)
+                .substring(SecurityConfiguration.JWT_TOKEN_PREFIX.length());
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtil.tokenOf("username1234", Role.USER, userId);
+    }
+
+    @Benchmark
+    public Claims verify() {
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtSigningBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
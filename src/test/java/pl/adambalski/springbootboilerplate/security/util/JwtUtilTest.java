@@ -4,17 +4,21 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import pl.adambalski.springbootboilerplate.model.Role;
 import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
 
 import javax.crypto.SecretKey;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -182,4 +186,104 @@ class JwtUtilTest {
         assertTrue(claims.getExpiration()
                 .compareTo(after10Minutes) < computationTimeMargin);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRoleAndUserIdOfTokenOf() {
+        UUID uuid = UUID.randomUUID();
+        String token = jwtUtil.tokenOf(username, Role.ADMIN, uuid);
+
+        Claims claims = jwtUtil.verifyAndGetClaims(token);
+
+        assertEquals(username, claims.getSubject());
+        assertEquals(Role.ADMIN, JwtUtil.roleOf(claims));
+        assertEquals(uuid.toString(), claims.get(JwtUtil.USER_ID_CLAIM, String.class));
+    }
+
+    @Test
+    void testRoleOfWhenTokenHasNoRole() {
+        Claims claims = jwtUtil.verifyAndGetClaims(jwtUtil.tokenOf(username));
+
+        assertNull(JwtUtil.roleOf(claims));
+    }
+
+    @Test
+    void testVerifyAndGetClaimsUsesVerifiedTokenCache() {
+        String token = jwtUtil.tokenOf(username);
+
+        Claims first = jwtUtil.verifyAndGetClaims(token);
+        Claims second = jwtUtil.verifyAndGetClaims(token);
+
+        assertSame(first, second);
+        assertEquals(1, jwtUtil.getVerifiedTokenCache().getMissCount());
+        assertEquals(1, jwtUtil.getVerifiedTokenCache().getHitCount());
+    }
+
+    @Test
+    void testVerifyAndGetClaimsDoesNotCacheInvalidTokens() {
+        String token = jwtUtil.tokenOf(username) + "invalid";
+
+        assertThrows(SignatureException.class, () -> jwtUtil.verifyAndGetClaims(token));
+        assertThrows(SignatureException.class, () -> jwtUtil.verifyAndGetClaims(token));
+        assertEquals(0, jwtUtil.getVerifiedTokenCache().size());
+    }
+
+    @Test
+    void testTokenOfPutsActiveKeyIdIntoHeader() {
+        JwtKeyRing keyRing = JwtKeyRing.of(Map.of("2026-10", Keys.secretKeyFor(SignatureAlgorithm.HS512)), "2026-10");
+        String token = new JwtUtil(keyRing).tokenOf(username).substring(SecurityConfiguration.JWT_TOKEN_PREFIX.length());
+
+        String header = Jwts.parserBuilder()
+                .setSigningKey(keyRing.getActiveKey())
+                .build()
+                .parseClaimsJws(token)
+                .getHeader()
+                .getKeyId();
+
+        assertEquals("2026-10", header);
+    }
+
+    @Test
+    void testVerifyAndGetClaimsAfterKeyRotation() {
+        SecretKey oldKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        SecretKey newKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        JwtUtil beforeRotation = new JwtUtil(JwtKeyRing.of(Map.of("old", oldKey, "new", newKey), "old"));
+        JwtUtil afterRotation = new JwtUtil(JwtKeyRing.of(Map.of("old", oldKey, "new", newKey), "new"));
+
+        String token = beforeRotation.tokenOf(username);
+
+        assertEquals(username, afterRotation.verifyAndGetClaims(token).getSubject());
+    }
+
+    @Test
+    void testVerifyAndGetClaimsWhenKeyIdIsUnknown() {
+        SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        String token = new JwtUtil(JwtKeyRing.of(Map.of("removed", key), "removed")).tokenOf(username);
+        JwtUtil jwtUtil = new JwtUtil(JwtKeyRing.of(Map.of("current", key), "current"));
+
+        assertThrows(SignatureException.class, () -> jwtUtil.verifyAndGetClaims(token));
+    }
+
+    @Test
+    void testTokenOfAndVerifyAndGetClaimsWithEs256() {
+        JwtUtil jwtUtil = new JwtUtil(JwtKeyRing.ephemeral(SignatureAlgorithm.ES256));
+        String token = jwtUtil.tokenOf(username, Role.USER, UUID.randomUUID());
+
+        Claims claims = jwtUtil.verifyAndGetClaims(token);
+
+        assertEquals(username, claims.getSubject());
+        assertEquals(Role.USER, JwtUtil.roleOf(claims));
+    }
+
+    @Test
+    void testVerifyAndGetClaimsWhenAlgorithmDoesNotMatchKeyRing() {
+        SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        String token = Jwts.builder()
+                .setHeaderParam("kid", "key")
+                .setSubject(username)
+                .signWith(key, SignatureAlgorithm.HS384)
+                .compact();
+        JwtUtil jwtUtil = new JwtUtil(JwtKeyRing.of(Map.of("key", key), "key"));
+
+        assertThrows(SignatureException.class, () -> jwtUtil.verifyAndGetClaims(token));
+    }
+}
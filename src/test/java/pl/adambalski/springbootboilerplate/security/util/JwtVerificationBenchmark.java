@@ -0,0 +1,73 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of verifying a token minted by {@link JwtUtil#tokenOf(String)}:
+ * jjwt's generic parser (the previous verification path), {@link FastJwtVerifier}
+ * and {@link JwtUtil#verifyAndGetClaims(String)} answered by its {@link VerifiedTokenCache}.<br>
+ * Run {@link #main(String[])} or see README.md.<br><br>
+ *
+ * @see FastJwtVerifier
+ * @author Adam Balski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+    private JwtParser jwtParser;
+    private FastJwtVerifier fastJwtVerifier;
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setup() {
+        SecretKey secretKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+
+        jwtParser = Jwts.parserBuilder().setSigningKey(secretKey).build();
+        fastJwtVerifier = new FastJwtVerifier(secretKey);
+        jwtUtil = new JwtUtil(secretKey);
+        token = jwtUtil.tokenOf("username1234");
+    }
+
+    @Benchmark
+    public Claims jjwt() {
+        String withoutPrefix = token.replaceFirst(SecurityConfiguration.JWT_TOKEN_PREFIX, "");
+        return jwtParser.parseClaimsJws(withoutPrefix).getBody();
+    }
+
+    @Benchmark
+    public Claims fastVerifier() {
+        String withoutPrefix = token.substring(SecurityConfiguration.JWT_TOKEN_PREFIX.length());
+        return fastJwtVerifier.verify(withoutPrefix);
+    }
+
+    @Benchmark
+    public Claims jwtUtilWithCache() {
+        return jwtUtil.verifyAndGetClaims(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
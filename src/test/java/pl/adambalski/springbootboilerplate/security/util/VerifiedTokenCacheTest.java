@@ -0,0 +1,77 @@
+package pl.adambalski.springbootboilerplate.security.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VerifiedTokenCacheTest {
+    private Clock clock;
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @BeforeEach
+    void init() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1_000_000L);
+
+        verifiedTokenCache = new VerifiedTokenCache(100, clock);
+    }
+
+    @Test
+    void testGetWhenTokenWasNotPut() {
+        assertNull(verifiedTokenCache.get("token"));
+        assertEquals(1, verifiedTokenCache.getMissCount());
+    }
+
+    @Test
+    void testGetWhenTokenWasPut() {
+        Claims claims = claimsExpiringAt(2_000_000L);
+        verifiedTokenCache.put("token", claims);
+
+        assertSame(claims, verifiedTokenCache.get("token"));
+        assertEquals(1, verifiedTokenCache.getHitCount());
+    }
+
+    @Test
+    void testGetWithDifferentToken() {
+        verifiedTokenCache.put("token", claimsExpiringAt(2_000_000L));
+
+        assertNull(verifiedTokenCache.get("token2"));
+    }
+
+    @Test
+    void testGetWhenTokenHasExpired() {
+        verifiedTokenCache.put("token", claimsExpiringAt(2_000_000L));
+        when(clock.millis()).thenReturn(2_000_000L);
+
+        assertNull(verifiedTokenCache.get("token"));
+    }
+
+    @Test
+    void testPutWhenTokenHasNoExpirationDate() {
+        verifiedTokenCache.put("token", Jwts.claims().setSubject("subject"));
+
+        assertEquals(0, verifiedTokenCache.size());
+    }
+
+    @Test
+    void testInvalidateAll() {
+        verifiedTokenCache.put("token", claimsExpiringAt(2_000_000L));
+        verifiedTokenCache.invalidateAll();
+
+        assertNull(verifiedTokenCache.get("token"));
+    }
+
+    private Claims claimsExpiringAt(long expirationMillis) {
+        return Jwts.claims()
+                .setSubject("subject")
+                .setExpiration(new Date(expirationMillis));
+    }
+}
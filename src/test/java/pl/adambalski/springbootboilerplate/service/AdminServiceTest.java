@@ -8,10 +8,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
 import pl.adambalski.springbootboilerplate.exception.NoSuchUserException;
 import pl.adambalski.springbootboilerplate.model.Role;
 import pl.adambalski.springbootboilerplate.model.User;
 import pl.adambalski.springbootboilerplate.repository.AdminRepository;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.security.TokenRevocations;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -27,6 +31,15 @@ public class AdminServiceTest {
     @Mock
     AdminRepository adminRepository;
 
+    @Mock
+    RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    TokenRevocations tokenRevocations;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
     @BeforeEach
     void init() {
         autoCloseable = MockitoAnnotations.openMocks(this);
@@ -94,6 +107,9 @@ public class AdminServiceTest {
         assertDoesNotThrow(executable);
 
         Mockito.verify(adminRepository).deleteByLogin(login);
+        Mockito.verify(tokenRevocations).revoke(login);
+        Mockito.verify(refreshTokenRepository).deleteAllByUserLogin(login);
+        Mockito.verify(eventPublisher).publishEvent(new UserChangedEvent(login));
     }
 
     @Test
@@ -105,6 +121,7 @@ public class AdminServiceTest {
         assertThrows(NoSuchUserException.class, executable);
 
         Mockito.verify(adminRepository).deleteByLogin(login);
+        Mockito.verifyNoInteractions(tokenRevocations, refreshTokenRepository);
     }
 
     private User getRandUser() {
@@ -1,60 +1,91 @@
 package pl.adambalski.springbootboilerplate.service;
 
 import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
+import pl.adambalski.springbootboilerplate.datasource.ReadYourWrites;
 import pl.adambalski.springbootboilerplate.dto.JwtTokenDto;
 import pl.adambalski.springbootboilerplate.dto.LoginDto;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
 import pl.adambalski.springbootboilerplate.exception.AtLeastOneFieldIncorrectException;
 import pl.adambalski.springbootboilerplate.exception.NoSuchRefreshTokenException;
 import pl.adambalski.springbootboilerplate.exception.NoSuchUsernameAuthenticationException;
 import pl.adambalski.springbootboilerplate.exception.PasswordDoesNotMatchException;
+import pl.adambalski.springbootboilerplate.exception.TooManyLoginAttemptsException;
 import pl.adambalski.springbootboilerplate.logger.Logger;
 import pl.adambalski.springbootboilerplate.logger.Status;
 import pl.adambalski.springbootboilerplate.model.RefreshToken;
+import pl.adambalski.springbootboilerplate.model.Role;
 import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.repository.UserRepository;
+import pl.adambalski.springbootboilerplate.security.AdaptiveBCryptPasswordEncoder;
+import pl.adambalski.springbootboilerplate.security.LoginThrottle;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
 import pl.adambalski.springbootboilerplate.security.SecurityConfiguration;
+import pl.adambalski.springbootboilerplate.security.util.JwtKeyRing;
 import pl.adambalski.springbootboilerplate.security.util.JwtUtil;
 import pl.adambalski.springbootboilerplate.util.RandomAlphaNumericStringGenerator;
 
 import java.sql.Date;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.Period;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 class AuthenticationServiceTest {
+    static final String CLIENT_ADDRESS = "127.0.0.1";
+    static final int MAX_SESSIONS_PER_USER = 10;
+
     AuthenticationService authenticationService;
     RefreshTokenRepository refreshTokenRepository;
+    UserRepository userRepository;
+    JwtUtil jwtUtil;
+    ApplicationEventPublisher eventPublisher;
 
     Logger logger;
 
     @BeforeEach
     void init() {
         refreshTokenRepository = mock(RefreshTokenRepository.class);
-        PasswordEncoder passwordEncoder = new PasswordEncoderFactory().passwordEncoderBean();
+        userRepository = mock(UserRepository.class);
+        PasswordEncoder passwordEncoder = TestPasswordEncoders.bcrypt();
         UserDetailsService userDetailsService = createUserDetailsService(passwordEncoder);
         RandomAlphaNumericStringGenerator randomAlphaNumericStringGenerator = createGenerator();
         logger = Mockito.mock(Logger.class);
+        jwtUtil = new JwtUtil(JwtKeyRing.ephemeral());
+        eventPublisher = mock(ApplicationEventPublisher.class);
 
-        authenticationService = new AuthenticationService(refreshTokenRepository,
+        authenticationService = new AuthenticationService(refreshTokenValidationCache(),
+                directRefreshTokenWriter(),
+                userRepository,
                 userDetailsService,
+                jwtUtil,
                 passwordEncoder,
                 randomAlphaNumericStringGenerator,
+                generousLoginThrottle(),
+                refreshCoalescer(),
+                eventPublisher,
                 logger);
     }
 
@@ -71,20 +102,12 @@ class AuthenticationServiceTest {
 
         ReflectionTestUtils.setField(generator, "length", SecurityConfiguration.REFRESH_TOKEN_LENGTH);
 
-        when(generator.generate(12)).thenReturn("ABCDEF123456");
+        when(generator.generate(SecurityConfiguration.REFRESH_TOKEN_LENGTH)).thenReturn("ABCDEF123456");
         when(generator.generate()).thenCallRealMethod();
 
         return generator;
     }
 
-    @Test
-    void testDeleteAllExpired() {
-        authenticationService.deleteAllExpired();
-
-        verify(logger).log("DELETED ALL EXPIRED", AuthenticationService.class, Status.INFO);
-        verify(refreshTokenRepository).deleteAllByExpirationDateBeforeNow();
-    }
-
     @Test
     void testAuthenticate() {
         LoginDto loginDto = new LoginDto("username", "password");
@@ -92,19 +115,160 @@ class AuthenticationServiceTest {
         Period expirationPeriod = SecurityConfiguration.REFRESH_TOKEN_EXPIRATION_PERIOD;
         Date expirationDate = new Date(Instant.now().plus(expirationPeriod).toEpochMilli());
 
-        RefreshToken expectedRefreshToken = new RefreshToken(0, "username", "ABCDEF123456", expirationDate);
+        RefreshToken expectedRefreshToken = new RefreshToken("username", "ABCDEF123456", expirationDate);
 
-        authenticationService.authenticate(loginDto);
+        authenticationService.authenticate(loginDto, CLIENT_ADDRESS);
 
         // checks that was invoked and
         // checks that every field is the same as expected
         // (for java.sql.Date uses toString(), because the dates differ by a few ms)
-        verify(refreshTokenRepository).save(argThat(actual ->
-                expectedRefreshToken.getId().equals(actual.getId()) &&
+        verify(refreshTokenRepository).saveAndEvictOldest(argThat(saved -> saved.size() == 1 && saved.stream().allMatch(actual ->
+                actual.getId() == null &&
                 expectedRefreshToken.getToken().equals(actual.getToken()) &&
+                Arrays.equals(RefreshToken.hashOf("ABCDEF123456"), actual.getTokenHash()) &&
                 expectedRefreshToken.getUserLogin().equals(actual.getUserLogin()) &&
                 expectedRefreshToken.getExpirationDate().toString().equals(actual.getExpirationDate().toString())
-        ));
+        )), eq(MAX_SESSIONS_PER_USER));
+    }
+
+    @Test
+    void testAuthenticateRehashesPasswordHashedWithLowerCost() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = new AdaptiveBCryptPasswordEncoder(5);
+        String oldHash = new BCryptPasswordEncoder(4).encode("password");
+        AuthenticationService authenticationService = authenticationServiceWith(passwordEncoder, oldHash);
+
+        authenticationService.authenticate(new LoginDto("username", "password"), CLIENT_ADDRESS);
+
+        verify(userRepository).updatePasswordByLogin(eq("username"), eq(oldHash), argThat(newHash ->
+                newHash.startsWith("$2a$05$") && passwordEncoder.matches("password", newHash)));
+    }
+
+    @Test
+    void testAuthenticateDoesNotRehashPasswordHashedWithHigherCost() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = new AdaptiveBCryptPasswordEncoder(4);
+        AuthenticationService authenticationService =
+                authenticationServiceWith(passwordEncoder, new BCryptPasswordEncoder(5).encode("password"));
+
+        authenticationService.authenticate(new LoginDto("username", "password"), CLIENT_ADDRESS);
+
+        verify(userRepository, never()).updatePasswordByLogin(any(), any(), any());
+    }
+
+    @Test
+    void testAuthenticatePublishesUserChangedEventAfterRehash() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = new AdaptiveBCryptPasswordEncoder(5);
+        String oldHash = new BCryptPasswordEncoder(4).encode("password");
+        AuthenticationService authenticationService = authenticationServiceWith(passwordEncoder, oldHash);
+        when(userRepository.updatePasswordByLogin(eq("username"), eq(oldHash), any())).thenReturn(1);
+
+        authenticationService.authenticate(new LoginDto("username", "password"), CLIENT_ADDRESS);
+
+        verify(eventPublisher).publishEvent(new UserChangedEvent("username"));
+    }
+
+    @Test
+    void testAuthenticateDoesNotRehashPasswordHashedWithTheSameCost() {
+        AdaptiveBCryptPasswordEncoder passwordEncoder = new AdaptiveBCryptPasswordEncoder(4);
+        AuthenticationService authenticationService =
+                authenticationServiceWith(passwordEncoder, passwordEncoder.encode("password"));
+
+        authenticationService.authenticate(new LoginDto("username", "password"), CLIENT_ADDRESS);
+
+        verify(userRepository, never()).updatePasswordByLogin(any(), any(), any());
+    }
+
+    private AuthenticationService authenticationServiceWith(PasswordEncoder passwordEncoder, String encodedPassword) {
+        UserDetails userDetails = new User("username", encodedPassword, List.of());
+
+        return new AuthenticationService(refreshTokenValidationCache(),
+                directRefreshTokenWriter(),
+                userRepository,
+                new MockUserDetailsService(userDetails),
+                jwtUtil,
+                passwordEncoder,
+                createGenerator(),
+                generousLoginThrottle(),
+                refreshCoalescer(),
+                eventPublisher,
+                logger);
+    }
+
+    private RefreshTokenValidationCache refreshTokenValidationCache() {
+        return new RefreshTokenValidationCache(refreshTokenRepository,
+                new ReadYourWrites(false, Duration.ZERO, 1, Clock.systemUTC()), Duration.ofHours(1), 100,
+                Duration.ofSeconds(5), 100, Clock.systemDefaultZone(), new SimpleMeterRegistry());
+    }
+
+    private RefreshCoalescer refreshCoalescer() {
+        return new RefreshCoalescer(Duration.ofSeconds(1), 100, Clock.systemUTC(), new SimpleMeterRegistry());
+    }
+
+    private LoginThrottle generousLoginThrottle() {
+        return new LoginThrottle(100, Duration.ofMillis(1), 100, Duration.ofMillis(1), 100);
+    }
+
+    // Saves tokens by refreshTokenRepository.saveAndEvictOldest() right away
+    private RefreshTokenWriter directRefreshTokenWriter() {
+        return new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS_PER_USER, false, 1, Duration.ZERO, 1,
+                new SimpleMeterRegistry(), mock(Logger.class));
+    }
+
+    @Test
+    void testAuthenticateWhenLoginIsThrottled() {
+        UserDetailsService userDetailsService = mock(UserDetailsService.class);
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        LoginThrottle loginThrottle = new LoginThrottle(1, Duration.ofMinutes(1), 100, Duration.ofMillis(1), 100);
+        AuthenticationService authenticationService = new AuthenticationService(refreshTokenValidationCache(),
+                directRefreshTokenWriter(),
+                userRepository,
+                userDetailsService,
+                jwtUtil,
+                passwordEncoder,
+                createGenerator(),
+                loginThrottle,
+                refreshCoalescer(),
+                eventPublisher,
+                logger);
+        when(userDetailsService.loadUserByUsername("username"))
+                .thenReturn(new User("username", "hash", List.of()));
+        when(passwordEncoder.matches("password", "hash")).thenReturn(false);
+
+        Executable firstAttempt = () -> authenticationService.authenticate(new LoginDto("username", "password"), "10.0.0.1");
+        assertThrows(PasswordDoesNotMatchException.class, firstAttempt);
+
+        // from another address, so only the login's bucket is empty
+        Executable secondAttempt = () -> authenticationService.authenticate(new LoginDto("username", "password"), "10.0.0.2");
+        TooManyLoginAttemptsException exception = assertThrows(TooManyLoginAttemptsException.class, secondAttempt);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getStatus());
+
+        // rejected before the user was looked up and the password was hashed
+        verify(userDetailsService, times(1)).loadUserByUsername("username");
+        verify(passwordEncoder, times(1)).matches(any(), any());
+    }
+
+    @Test
+    void testAuthenticateWhenClientIsThrottled() {
+        UserDetailsService userDetailsService = mock(UserDetailsService.class);
+        LoginThrottle loginThrottle = new LoginThrottle(100, Duration.ofMillis(1), 1, Duration.ofMinutes(1), 100);
+        AuthenticationService authenticationService = new AuthenticationService(refreshTokenValidationCache(),
+                directRefreshTokenWriter(),
+                userRepository,
+                userDetailsService,
+                jwtUtil,
+                mock(PasswordEncoder.class),
+                createGenerator(),
+                loginThrottle,
+                refreshCoalescer(),
+                eventPublisher,
+                logger);
+        when(userDetailsService.loadUserByUsername(any())).thenThrow(new UsernameNotFoundException("username"));
+
+        Executable firstAttempt = () -> authenticationService.authenticate(new LoginDto("first", "password"), CLIENT_ADDRESS);
+        assertThrows(NoSuchUsernameAuthenticationException.class, firstAttempt);
+
+        Executable secondAttempt = () -> authenticationService.authenticate(new LoginDto("second", "password"), CLIENT_ADDRESS);
+        assertThrows(TooManyLoginAttemptsException.class, secondAttempt);
+        verify(userDetailsService, never()).loadUserByUsername("second");
     }
 
     @Test
@@ -150,7 +314,7 @@ class AuthenticationServiceTest {
     }
 
     private void assertNoSuchUserWhenAuthenticating(LoginDto loginDto) {
-        Executable executable = () -> authenticationService.authenticate(loginDto);
+        Executable executable = () -> authenticationService.authenticate(loginDto, CLIENT_ADDRESS);
 
         ResponseStatusException exception =
                 assertThrows(NoSuchUsernameAuthenticationException.class, executable);
@@ -159,7 +323,7 @@ class AuthenticationServiceTest {
     }
 
     private void assertAtLeastOneFieldIncorrectWhenAuthenticating(LoginDto loginDto) {
-        Executable executable = () -> authenticationService.authenticate(loginDto);
+        Executable executable = () -> authenticationService.authenticate(loginDto, CLIENT_ADDRESS);
 
         ResponseStatusException exception =
                 assertThrows(AtLeastOneFieldIncorrectException.class, executable);
@@ -168,7 +332,7 @@ class AuthenticationServiceTest {
     }
 
     private void assertPasswordDoesNotMatchWhenAuthenticating(LoginDto loginDto) {
-        Executable executable = () -> authenticationService.authenticate(loginDto);
+        Executable executable = () -> authenticationService.authenticate(loginDto, CLIENT_ADDRESS);
 
         ResponseStatusException exception =
                 assertThrows(PasswordDoesNotMatchException.class, executable);
@@ -178,28 +342,46 @@ class AuthenticationServiceTest {
 
     @Test
     void testRefreshIfDoesNotExistByRefreshTokenRepository() {
-        String username = "username";
         String refreshToken = "ABC123";
 
-        when(refreshTokenRepository.existsByUserLoginAndToken(username, refreshToken)).thenReturn(false);
+        when(refreshTokenRepository.findUserLoginByTokenHash(any())).thenReturn(Optional.empty());
 
-        Executable executable = () -> authenticationService.refresh(username, refreshToken);
+        Executable executable = () -> authenticationService.refresh(refreshToken);
         var exception = assertThrows(NoSuchRefreshTokenException.class, executable);
 
         assertEquals("NO_SUCH_REFRESH_TOKEN_EXCEPTION", exception.getReason());
         assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
     }
 
+    @Test
+    void testRefreshLooksTokenUpByItsHash() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(any())).thenReturn(Optional.of("username"));
+
+        authenticationService.refresh("ABC123");
+
+        verify(refreshTokenRepository).findUserLoginByTokenHash(aryEq(RefreshToken.hashOf("ABC123")));
+    }
+
+    @Test
+    void testRefreshReusesTokenMintedForTheSameRefreshToken() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(any())).thenReturn(Optional.of("username"));
+
+        JwtTokenDto first = authenticationService.refresh("ABC123");
+        JwtTokenDto second = authenticationService.refresh("ABC123");
+
+        assertSame(first, second);
+        verify(refreshTokenRepository, times(1)).findUserLoginByTokenHash(any());
+    }
+
     @Test
     void testRefreshIfRefreshTokenExists() {
         String username = "username";
         String refreshToken = "ABC123";
 
-        when(refreshTokenRepository.existsByUserLoginAndToken(username, refreshToken)).thenReturn(true);
-
-        JwtTokenDto jwtTokenDto = authenticationService.refresh(username, refreshToken);
+        when(refreshTokenRepository.findUserLoginByTokenHash(aryEq(RefreshToken.hashOf(refreshToken))))
+                .thenReturn(Optional.of(username));
 
-        JwtUtil jwtUtil = new JwtUtil(SecurityConfiguration.KEY);
+        JwtTokenDto jwtTokenDto = authenticationService.refresh(refreshToken);
 
         try {
             Claims claims = jwtUtil.verifyAndGetClaims(jwtTokenDto.getToken());
@@ -223,6 +405,41 @@ class AuthenticationServiceTest {
 
     }
 
+    @Test
+    void testRefreshInStatelessModeEmbedsRoleAndUserId() {
+        String username = "username";
+        String refreshToken = "ABC123";
+        UUID uuid = UUID.randomUUID();
+        pl.adambalski.springbootboilerplate.model.User user =
+                new pl.adambalski.springbootboilerplate.model.User(uuid, username, null, null, null, Role.ADMIN);
+
+        ReflectionTestUtils.setField(authenticationService, "statelessJwt", true);
+        when(refreshTokenRepository.findUserLoginByTokenHash(aryEq(RefreshToken.hashOf(refreshToken))))
+                .thenReturn(Optional.of(username));
+        when(userRepository.findByLogin(username)).thenReturn(Optional.of(user));
+
+        JwtTokenDto jwtTokenDto = authenticationService.refresh(refreshToken);
+        Claims claims = jwtUtil.verifyAndGetClaims(jwtTokenDto.getToken());
+
+        assertEquals(username, claims.getSubject());
+        assertEquals(Role.ADMIN, JwtUtil.roleOf(claims));
+        assertEquals(uuid.toString(), claims.get(JwtUtil.USER_ID_CLAIM, String.class));
+    }
+
+    @Test
+    void testRefreshInStatelessModeWhenUserDoesNotExist() {
+        String username = "username";
+        String refreshToken = "ABC123";
+
+        ReflectionTestUtils.setField(authenticationService, "statelessJwt", true);
+        when(refreshTokenRepository.findUserLoginByTokenHash(aryEq(RefreshToken.hashOf(refreshToken))))
+                .thenReturn(Optional.of(username));
+        when(userRepository.findByLogin(username)).thenReturn(Optional.empty());
+
+        Executable executable = () -> authenticationService.refresh(refreshToken);
+        assertThrows(NoSuchRefreshTokenException.class, executable);
+    }
+
     private void assertApproximatelyEquals(long expected, long actual, long maxDifference) {
         assertTrue(Math.abs(expected - actual) < maxDifference);
     }
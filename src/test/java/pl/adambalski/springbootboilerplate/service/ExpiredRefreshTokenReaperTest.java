@@ -0,0 +1,88 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.scheduling.LeaderElection;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class ExpiredRefreshTokenReaperTest {
+    RefreshTokenRepository refreshTokenRepository;
+    LeaderElection leaderElection;
+    Clock clock;
+    SimpleMeterRegistry meterRegistry;
+    ExpiredRefreshTokenReaper reaper;
+
+    @BeforeEach
+    void init() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        leaderElection = mock(LeaderElection.class);
+        when(leaderElection.isLeader()).thenReturn(true);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        meterRegistry = new SimpleMeterRegistry();
+
+        reaper = new ExpiredRefreshTokenReaper(refreshTokenRepository, leaderElection, 100, 1_000_000,
+                Duration.ofMinutes(1), clock, meterRegistry, mock(Logger.class));
+    }
+
+    @Test
+    void testReapDeletesInBatchesUntilBatchIsNotFull() throws InterruptedException {
+        when(refreshTokenRepository.deleteExpiredBatch(100)).thenReturn(100, 100, 42);
+
+        assertEquals(242, reaper.reap());
+
+        verify(refreshTokenRepository, times(3)).deleteExpiredBatch(100);
+        assertEquals(242.0, meterRegistry.get("refresh.token.reaper.deleted").counter().count());
+        assertEquals(1, meterRegistry.get("refresh.token.reaper.run").timer().count());
+    }
+
+    @Test
+    void testReapWhenNothingIsExpired() throws InterruptedException {
+        when(refreshTokenRepository.deleteExpiredBatch(100)).thenReturn(0);
+
+        assertEquals(0, reaper.reap());
+        verify(refreshTokenRepository, times(1)).deleteExpiredBatch(100);
+    }
+
+    @Test
+    void testReapStopsAfterMaxRunTime() throws InterruptedException {
+        when(refreshTokenRepository.deleteExpiredBatch(100)).thenReturn(100);
+        when(clock.millis()).thenReturn(0L, 30_000L, 60_000L, 60_000L);
+
+        assertEquals(200, reaper.reap());
+        verify(refreshTokenRepository, times(2)).deleteExpiredBatch(100);
+    }
+
+    @Test
+    void testScheduledReapWhenThisNodeIsNotTheLeader() {
+        when(leaderElection.isLeader()).thenReturn(false);
+
+        reaper.scheduledReap();
+
+        verifyNoInteractions(refreshTokenRepository);
+    }
+
+    @Test
+    void testScheduledReapWhenThisNodeIsTheLeader() {
+        when(refreshTokenRepository.deleteExpiredBatch(100)).thenReturn(0);
+
+        reaper.scheduledReap();
+
+        verify(refreshTokenRepository).deleteExpiredBatch(100);
+    }
+
+    @Test
+    void testPauseMillis() {
+        // 1000 rows at 500 rows per second take 2 seconds
+        assertEquals(1500, ExpiredRefreshTokenReaper.pauseMillis(1000, 500, 500));
+        assertEquals(-500, ExpiredRefreshTokenReaper.pauseMillis(1000, 2500, 500));
+    }
+}
@@ -0,0 +1,194 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import pl.adambalski.springbootboilerplate.dto.JwtTokenDto;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.RefreshTokensEvictedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.exception.NoSuchRefreshTokenException;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RefreshCoalescerTest {
+    static final byte[] TOKEN_HASH = {1, 2, 3};
+
+    Clock clock;
+    SimpleMeterRegistry meterRegistry;
+    RefreshCoalescer refreshCoalescer;
+    AtomicInteger refreshes;
+
+    @BeforeEach
+    void init() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        meterRegistry = new SimpleMeterRegistry();
+        refreshCoalescer = new RefreshCoalescer(Duration.ofSeconds(1), 100, clock, meterRegistry);
+        refreshes = new AtomicInteger();
+    }
+
+    @Test
+    void testConcurrentRefreshesAreDoneOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<JwtTokenDto> first = executor.submit(() -> refreshCoalescer.refresh(TOKEN_HASH, () -> {
+                started.countDown();
+                await(release);
+                return refreshed("username");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<JwtTokenDto> second = executor.submit(() -> refreshCoalescer.refresh(TOKEN_HASH.clone(), () -> refreshed("username")));
+            // the second refresh joins the running one
+            while(meterRegistry.get("refresh.coalesced").counter().count() < 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, refreshes.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRefreshIsReusedWithinReuseWindow() {
+        JwtTokenDto first = refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+        JwtTokenDto second = refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+
+        assertSame(first, second);
+        assertEquals(1, refreshes.get());
+        assertEquals(1.0, meterRegistry.get("refresh.reused").functionCounter().count());
+    }
+
+    @Test
+    void testRefreshIsNotReusedAfterReuseWindow() {
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+        when(clock.millis()).thenReturn(2000L);
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    void testRefreshIsNotReusedWhenReuseWindowIsZero() {
+        refreshCoalescer = new RefreshCoalescer(Duration.ZERO, 100, clock, new SimpleMeterRegistry());
+
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    void testFailedRefreshIsNotReused() {
+        Executable executable = () -> refreshCoalescer.refresh(TOKEN_HASH, () -> {
+            refreshes.incrementAndGet();
+            throw new NoSuchRefreshTokenException();
+        });
+        assertThrows(NoSuchRefreshTokenException.class, executable);
+        assertThrows(NoSuchRefreshTokenException.class, executable);
+
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    void testOnUserChangedDropsReusedTokensOfTheUser() {
+        byte[] otherTokenHash = {4, 5, 6};
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+        refreshCoalescer.refresh(otherTokenHash, () -> refreshed("other"));
+
+        refreshCoalescer.onUserChanged(new UserChangedEvent("username"));
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+        refreshCoalescer.refresh(otherTokenHash, () -> refreshed("other"));
+
+        assertEquals(3, refreshes.get());
+    }
+
+    @Test
+    void testOnAllUsersChangedDropsReusedTokens() {
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+
+        refreshCoalescer.onAllUsersChanged(new AllUsersChangedEvent());
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    void testRefreshRunningWhileUserChangesIsNotReused() {
+        refreshCoalescer.refresh(TOKEN_HASH, () -> {
+            refreshCoalescer.onUserChanged(new UserChangedEvent("username"));
+            return refreshed("username");
+        });
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    void testRefreshRunningWhileAnotherUserChangesIsReused() {
+        refreshCoalescer.refresh(TOKEN_HASH, () -> {
+            refreshCoalescer.onUserChanged(new UserChangedEvent("other"));
+            return refreshed("username");
+        });
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    void testOnRefreshTokensEvictedDropsReusedEvictedTokens() {
+        byte[] otherTokenHash = {4, 5, 6};
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+        refreshCoalescer.refresh(otherTokenHash, () -> refreshed("username"));
+
+        refreshCoalescer.onRefreshTokensEvicted(new RefreshTokensEvictedEvent(List.of(ByteBuffer.wrap(TOKEN_HASH))));
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+        refreshCoalescer.refresh(otherTokenHash, () -> refreshed("username"));
+
+        assertEquals(3, refreshes.get());
+    }
+
+    @Test
+    void testRefreshRunningWhileTokenIsEvictedIsNotReused() {
+        refreshCoalescer.refresh(TOKEN_HASH, () -> {
+            refreshCoalescer.onRefreshTokensEvicted(new RefreshTokensEvictedEvent(List.of(ByteBuffer.wrap(TOKEN_HASH))));
+            return refreshed("username");
+        });
+        refreshCoalescer.refresh(TOKEN_HASH, () -> refreshed("username"));
+
+        assertEquals(2, refreshes.get());
+    }
+
+    private RefreshCoalescer.Refreshed refreshed(String username) {
+        refreshes.incrementAndGet();
+        return new RefreshCoalescer.Refreshed(username, new JwtTokenDto("token" + refreshes.get()));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
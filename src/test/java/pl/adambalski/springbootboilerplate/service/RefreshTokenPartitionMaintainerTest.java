@@ -0,0 +1,94 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+import pl.adambalski.springbootboilerplate.scheduling.LeaderElection;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenPartitionMaintainerTest {
+    RefreshTokenRepository refreshTokenRepository;
+    RefreshTokenPartitionMaintainer maintainer;
+
+    @BeforeEach
+    void init() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        Clock clock = Clock.fixed(Instant.parse("2026-10-18T12:00:00Z"), ZoneOffset.UTC);
+
+        maintainer = new RefreshTokenPartitionMaintainer(refreshTokenRepository, LeaderElection.ALWAYS_LEADER, 2, clock, mock(Logger.class));
+    }
+
+    @Test
+    void testMaintainCreatesPartitionsUpToLongestTokenLifetimeAndMonthsAhead() {
+        maintainer.maintain();
+
+        // tokens created today expire in October 2027, 2 more months
+        for(YearMonth month = YearMonth.of(2026, 10); !month.isAfter(YearMonth.of(2027, 12)); month = month.plusMonths(1)) {
+            verify(refreshTokenRepository).createPartition(month);
+        }
+        verify(refreshTokenRepository, times(15)).createPartition(any());
+    }
+
+    @Test
+    void testMaintainDropsOnlyMonthsWhichHaveEnded() {
+        when(refreshTokenRepository.findPartitionMonths())
+                .thenReturn(List.of(YearMonth.of(2026, 8), YearMonth.of(2026, 9), YearMonth.of(2026, 10)));
+
+        maintainer.maintain();
+
+        verify(refreshTokenRepository).dropPartition(YearMonth.of(2026, 8));
+        verify(refreshTokenRepository).dropPartition(YearMonth.of(2026, 9));
+        verify(refreshTokenRepository, never()).dropPartition(YearMonth.of(2026, 10));
+    }
+
+    @Test
+    void testMaintainDropsPreviousMonthOnTheFirstDay() {
+        Clock clock = Clock.fixed(Instant.parse("2026-11-01T00:00:00Z"), ZoneOffset.UTC);
+        maintainer = new RefreshTokenPartitionMaintainer(refreshTokenRepository, LeaderElection.ALWAYS_LEADER, 2, clock, mock(Logger.class));
+        when(refreshTokenRepository.findPartitionMonths()).thenReturn(List.of(YearMonth.of(2026, 10)));
+
+        maintainer.maintain();
+
+        verify(refreshTokenRepository).dropPartition(YearMonth.of(2026, 10));
+    }
+
+    @Test
+    void testMaintainWhenAnotherNodeHasMaintainedMeanwhile() {
+        Logger logger = mock(Logger.class);
+        Clock clock = Clock.fixed(Instant.parse("2026-11-01T00:00:00Z"), ZoneOffset.UTC);
+        maintainer = new RefreshTokenPartitionMaintainer(refreshTokenRepository, LeaderElection.ALWAYS_LEADER, 2, clock, logger);
+        when(refreshTokenRepository.findPartitionMonths()).thenReturn(List.of(YearMonth.of(2026, 10)));
+        when(refreshTokenRepository.dropPartition(any())).thenReturn(false);
+
+        maintainer.maintain();
+
+        verify(logger).log(eq("CREATED 0 AND DROPPED 0 REFRESH TOKEN PARTITIONS"), eq(RefreshTokenPartitionMaintainer.class), any());
+    }
+
+    @Test
+    void testScheduledMaintainWhenThisNodeIsNotTheLeader() {
+        Clock clock = Clock.fixed(Instant.parse("2026-10-18T12:00:00Z"), ZoneOffset.UTC);
+        maintainer = new RefreshTokenPartitionMaintainer(refreshTokenRepository, () -> false, 2, clock, mock(Logger.class));
+
+        maintainer.scheduledMaintain();
+
+        verifyNoInteractions(refreshTokenRepository);
+    }
+
+    @Test
+    void testScheduledMaintainWhenThisNodeIsTheLeader() {
+        maintainer.scheduledMaintain();
+
+        verify(refreshTokenRepository, times(15)).createPartition(any());
+    }
+}
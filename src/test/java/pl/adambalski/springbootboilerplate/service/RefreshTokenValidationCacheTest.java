@@ -0,0 +1,216 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.adambalski.springbootboilerplate.datasource.ReadYourWrites;
+import pl.adambalski.springbootboilerplate.event.AllUsersChangedEvent;
+import pl.adambalski.springbootboilerplate.event.RefreshTokensEvictedEvent;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenValidationCacheTest {
+    static final byte[] TOKEN_HASH = {1, 2, 3};
+    static final Instant NOON = Instant.parse("2026-10-18T12:00:00Z");
+
+    RefreshTokenRepository refreshTokenRepository;
+    ReadYourWrites readYourWrites;
+    Clock clock;
+    SimpleMeterRegistry meterRegistry;
+    RefreshTokenValidationCache refreshTokenValidationCache;
+
+    @BeforeEach
+    void init() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        readYourWrites = new ReadYourWrites(false, Duration.ZERO, 1, Clock.systemUTC());
+        refreshTokenValidationCache = cacheAt(NOON);
+    }
+
+    @Test
+    void testValidTokenIsCached() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenReturn(Optional.of("login"));
+
+        assertEquals(Optional.of("login"), refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH));
+        assertEquals(Optional.of("login"), refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH.clone()));
+
+        verify(refreshTokenRepository, times(1)).findUserLoginByTokenHash(any());
+        assertEquals(1.0, meterRegistry.get("refresh.token.cache.hits").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("refresh.token.cache.misses").functionCounter().count());
+    }
+
+    @Test
+    void testValidTokenIsAskedForAgainAfterTtl() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenReturn(Optional.of("login"));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+
+        setNow(NOON.plus(Duration.ofHours(1)));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+
+        verify(refreshTokenRepository, times(2)).findUserLoginByTokenHash(any());
+    }
+
+    @Test
+    void testValidTokenIsAskedForAgainTheNextDay() {
+        refreshTokenValidationCache = cacheAt(Instant.parse("2026-10-18T23:59:00Z"));
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenReturn(Optional.of("login"));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+
+        // the token may have expired at midnight
+        setNow(Instant.parse("2026-10-19T00:00:00Z"));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+
+        verify(refreshTokenRepository, times(2)).findUserLoginByTokenHash(any());
+    }
+
+    @Test
+    void testInvalidTokenIsCachedForNegativeTtl() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenReturn(Optional.empty());
+
+        assertTrue(refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH).isEmpty());
+        assertTrue(refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH).isEmpty());
+        verify(refreshTokenRepository, times(1)).findUserLoginByTokenHash(any());
+        assertEquals(1.0, meterRegistry.get("refresh.token.cache.negative.hits").functionCounter().count());
+
+        setNow(NOON.plus(Duration.ofSeconds(5)));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+        verify(refreshTokenRepository, times(2)).findUserLoginByTokenHash(any());
+    }
+
+    @Test
+    void testOnUserChangedDropsTokensOfTheUser() {
+        byte[] otherTokenHash = {4, 5, 6};
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenReturn(Optional.of("login"));
+        when(refreshTokenRepository.findUserLoginByTokenHash(otherTokenHash)).thenReturn(Optional.of("other"));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+        refreshTokenValidationCache.findUserLoginByTokenHash(otherTokenHash);
+
+        refreshTokenValidationCache.onUserChanged(new UserChangedEvent("login", true));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+        refreshTokenValidationCache.findUserLoginByTokenHash(otherTokenHash);
+
+        verify(refreshTokenRepository, times(2)).findUserLoginByTokenHash(TOKEN_HASH);
+        verify(refreshTokenRepository).findUserLoginByTokenHash(otherTokenHash);
+    }
+
+    @Test
+    void testOnAllUsersChangedDropsAllTokens() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenReturn(Optional.of("login"));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+
+        refreshTokenValidationCache.onAllUsersChanged(new AllUsersChangedEvent());
+
+        assertEquals(0, refreshTokenValidationCache.size());
+    }
+
+    @Test
+    void testTokenLoadedWhileUserChangesIsNotCached() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenAnswer(invocation -> {
+            refreshTokenValidationCache.onUserChanged(new UserChangedEvent("login"));
+            return Optional.of("login");
+        });
+
+        assertEquals(Optional.of("login"), refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH));
+
+        assertEquals(0, refreshTokenValidationCache.size());
+    }
+
+    @Test
+    void testTokenLoadedWhileAnotherUserChangesIsCached() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenAnswer(invocation -> {
+            refreshTokenValidationCache.onUserChanged(new UserChangedEvent("other"));
+            return Optional.of("login");
+        });
+
+        assertEquals(Optional.of("login"), refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH));
+
+        assertEquals(1, refreshTokenValidationCache.size());
+    }
+
+    @Test
+    void testOnRefreshTokensEvictedDropsOnlyTheEvictedTokens() {
+        byte[] otherTokenHash = {4, 5, 6};
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenReturn(Optional.of("login"));
+        when(refreshTokenRepository.findUserLoginByTokenHash(otherTokenHash)).thenReturn(Optional.of("login"));
+        refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH);
+        refreshTokenValidationCache.findUserLoginByTokenHash(otherTokenHash);
+
+        refreshTokenValidationCache.onRefreshTokensEvicted(
+                new RefreshTokensEvictedEvent(List.of(ByteBuffer.wrap(TOKEN_HASH)), true));
+
+        // the replica may still have the evicted token
+        assertTrue(refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH).isEmpty());
+        assertEquals(Optional.of("login"), refreshTokenValidationCache.findUserLoginByTokenHash(otherTokenHash));
+        verify(refreshTokenRepository).findUserLoginByTokenHash(TOKEN_HASH);
+        verify(refreshTokenRepository).findUserLoginByTokenHash(otherTokenHash);
+    }
+
+    @Test
+    void testTokenLoadedWhileItIsEvictedIsNotCached() {
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH)).thenAnswer(invocation -> {
+            refreshTokenValidationCache.onRefreshTokensEvicted(
+                    new RefreshTokensEvictedEvent(List.of(ByteBuffer.wrap(TOKEN_HASH))));
+            return Optional.of("login");
+        });
+
+        assertEquals(Optional.of("login"), refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH));
+
+        assertEquals(0, refreshTokenValidationCache.size());
+        assertTrue(refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH).isEmpty());
+    }
+
+    @Test
+    void testUnknownTokenIsLookedUpOnThePrimaryWithReadReplica() {
+        readYourWrites = new ReadYourWrites(true, Duration.ofSeconds(5), 100, Clock.systemUTC());
+        refreshTokenValidationCache = cacheAt(NOON);
+        // the replica does not have the token yet
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of("login"));
+
+        assertEquals(Optional.of("login"), refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH));
+
+        verify(refreshTokenRepository, times(2)).findUserLoginByTokenHash(any());
+        assertEquals(1, refreshTokenValidationCache.size());
+    }
+
+    @Test
+    void testTokenOfRecentlyWrittenUserIsLookedUpOnThePrimary() {
+        readYourWrites = new ReadYourWrites(true, Duration.ofSeconds(5), 100, Clock.systemUTC());
+        refreshTokenValidationCache = cacheAt(NOON);
+        readYourWrites.onUserChanged(new UserChangedEvent("login"));
+        // the replica still has a token, which has been deleted with the user
+        when(refreshTokenRepository.findUserLoginByTokenHash(TOKEN_HASH))
+                .thenReturn(Optional.of("login"))
+                .thenReturn(Optional.empty());
+
+        assertTrue(refreshTokenValidationCache.findUserLoginByTokenHash(TOKEN_HASH).isEmpty());
+
+        verify(refreshTokenRepository, times(2)).findUserLoginByTokenHash(any());
+    }
+
+    private RefreshTokenValidationCache cacheAt(Instant now) {
+        clock = mock(Clock.class);
+        when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        setNow(now);
+        meterRegistry = new SimpleMeterRegistry();
+
+        return new RefreshTokenValidationCache(refreshTokenRepository, readYourWrites, Duration.ofHours(1), 100,
+                Duration.ofSeconds(5), 100, clock, meterRegistry);
+    }
+
+    private void setNow(Instant now) {
+        when(clock.millis()).thenReturn(now.toEpochMilli());
+        when(clock.instant()).thenReturn(now);
+    }
+}
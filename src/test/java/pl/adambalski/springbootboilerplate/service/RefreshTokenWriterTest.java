@@ -0,0 +1,186 @@
+package pl.adambalski.springbootboilerplate.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.context.ApplicationEventPublisher;
+import pl.adambalski.springbootboilerplate.event.RefreshTokensEvictedEvent;
+import pl.adambalski.springbootboilerplate.logger.Logger;
+import pl.adambalski.springbootboilerplate.model.RefreshToken;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
+
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenWriterTest {
+    static final int MAX_SESSIONS = 10;
+
+    RefreshTokenRepository refreshTokenRepository;
+    ApplicationEventPublisher eventPublisher;
+    SimpleMeterRegistry meterRegistry;
+    RefreshTokenWriter refreshTokenWriter;
+
+    @BeforeEach
+    void init() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void destroy() {
+        if(refreshTokenWriter != null) {
+            refreshTokenWriter.close();
+        }
+    }
+
+    @Test
+    void testSaveWithoutGroupCommit() {
+        refreshTokenWriter = new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS, false, 10,
+                Duration.ofSeconds(1), 100, meterRegistry, mock(Logger.class));
+        RefreshToken refreshToken = refreshToken("TOKEN1");
+
+        refreshTokenWriter.save(refreshToken);
+
+        verify(refreshTokenRepository).saveAndEvictOldest(List.of(refreshToken), MAX_SESSIONS);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testSaveWhenSessionsAreEvicted() {
+        refreshTokenWriter = new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS, false, 10,
+                Duration.ofSeconds(1), 100, meterRegistry, mock(Logger.class));
+        when(refreshTokenRepository.saveAndEvictOldest(any(), anyInt())).thenReturn(List.of(RefreshToken.hashOf("OLDEST")));
+
+        refreshTokenWriter.save(refreshToken("TOKEN1"));
+
+        // the evicted token may be cached
+        verify(eventPublisher).publishEvent(
+                new RefreshTokensEvictedEvent(List.of(ByteBuffer.wrap(RefreshToken.hashOf("OLDEST")))));
+    }
+
+    @Test
+    void testSaveWithGroupCommitSavesConcurrentTokensInOneBatch() throws Exception {
+        // the first token waits for the other ones up to max delay, the batch is flushed as soon as it is full
+        refreshTokenWriter = new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS, true, 4,
+                Duration.ofSeconds(10), 100, meterRegistry, mock(Logger.class));
+        List<RefreshToken> refreshTokens = List.of(refreshToken("TOKEN1"), refreshToken("TOKEN2"),
+                refreshToken("TOKEN3"), refreshToken("TOKEN4"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(refreshTokens.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            refreshTokens.forEach(refreshToken -> futures.add(executor.submit(() -> refreshTokenWriter.save(refreshToken))));
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(refreshTokenRepository).saveAndEvictOldest(argThat(batch ->
+                batch.size() == 4 && batch.containsAll(refreshTokens)), eq(MAX_SESSIONS));
+        assertEquals(1, meterRegistry.get("refresh.token.writer.batch.size").summary().count());
+        assertEquals(4.0, meterRegistry.get("refresh.token.writer.batch.size").summary().totalAmount());
+        assertEquals(1, meterRegistry.get("refresh.token.writer.flush").timer().count());
+        assertEquals(4, meterRegistry.get("refresh.token.writer.latency").timer().count());
+    }
+
+    @Test
+    void testSaveWithGroupCommitReturnsAfterMaxDelay() {
+        refreshTokenWriter = new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS, true, 100,
+                Duration.ofMillis(5), 100, meterRegistry, mock(Logger.class));
+        RefreshToken refreshToken = refreshToken("TOKEN1");
+
+        refreshTokenWriter.save(refreshToken);
+
+        verify(refreshTokenRepository).saveAndEvictOldest(List.of(refreshToken), MAX_SESSIONS);
+    }
+
+    @Test
+    void testSaveWithGroupCommitReturnsOnlyAfterCommit() throws Exception {
+        CountDownLatch commit = new CountDownLatch(1);
+        when(refreshTokenRepository.saveAndEvictOldest(any(), anyInt())).thenAnswer(invocation -> {
+            commit.await();
+            return List.of();
+        });
+        refreshTokenWriter = new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS, true, 1,
+                Duration.ZERO, 100, meterRegistry, mock(Logger.class));
+
+        Thread thread = new Thread(() -> refreshTokenWriter.save(refreshToken("TOKEN1")));
+        thread.start();
+        thread.join(100);
+        assertTrue(thread.isAlive());
+
+        commit.countDown();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void testSaveWhenBatchFailsSavesTokensOneByOne() {
+        RefreshToken faulty = refreshToken("TOKEN1");
+        // the batch of one token fails, then the token saved alone fails as well
+        when(refreshTokenRepository.saveAndEvictOldest(List.of(faulty), MAX_SESSIONS))
+                .thenThrow(new IllegalStateException("batch failed"))
+                .thenThrow(new IllegalStateException("token failed"));
+        refreshTokenWriter = new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS, true, 1,
+                Duration.ZERO, 100, meterRegistry, mock(Logger.class));
+
+        Executable executable = () -> refreshTokenWriter.save(faulty);
+        IllegalStateException exception = assertThrows(IllegalStateException.class, executable);
+
+        assertEquals("token failed", exception.getMessage());
+        verify(refreshTokenRepository, times(2)).saveAndEvictOldest(List.of(faulty), MAX_SESSIONS);
+    }
+
+    @Test
+    void testCloseSavesWaitingTokens() throws InterruptedException {
+        refreshTokenWriter = new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS, true, 100,
+                Duration.ofMinutes(1), 100, meterRegistry, mock(Logger.class));
+        RefreshToken refreshToken = refreshToken("TOKEN1");
+        Thread thread = new Thread(() -> refreshTokenWriter.save(refreshToken));
+        thread.start();
+        thread.join(100);
+
+        // the batch would wait for max delay otherwise
+        refreshTokenWriter.close();
+        thread.join(5000);
+
+        assertFalse(thread.isAlive());
+        verify(refreshTokenRepository).saveAndEvictOldest(List.of(refreshToken), MAX_SESSIONS);
+    }
+
+    @Test
+    void testConstructorWhenMaxSessionsPerUserIsNotPositive() {
+        Executable executable = () -> new RefreshTokenWriter(refreshTokenRepository, eventPublisher, 0, false, 1,
+                Duration.ZERO, 100, meterRegistry, mock(Logger.class));
+
+        assertThrows(IllegalArgumentException.class, executable);
+    }
+
+    @Test
+    void testConstructorWhenBatchSizeIsNotPositive() {
+        Executable executable = () -> new RefreshTokenWriter(refreshTokenRepository, eventPublisher, MAX_SESSIONS, false, 0,
+                Duration.ZERO, 100, meterRegistry, mock(Logger.class));
+
+        assertThrows(IllegalArgumentException.class, executable);
+    }
+
+    private RefreshToken refreshToken(String token) {
+        return new RefreshToken("username", token, new Date(System.currentTimeMillis()));
+    }
+}
@@ -8,18 +8,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 import pl.adambalski.springbootboilerplate.dto.SignUpUserDto;
+import pl.adambalski.springbootboilerplate.event.UserChangedEvent;
 import pl.adambalski.springbootboilerplate.exception.AtLeastOneFieldIncorrectException;
 import pl.adambalski.springbootboilerplate.exception.EmailIsTakenException;
 import pl.adambalski.springbootboilerplate.exception.LoginIsTakenException;
 import pl.adambalski.springbootboilerplate.exception.NoSuchUserException;
 import pl.adambalski.springbootboilerplate.model.Role;
 import pl.adambalski.springbootboilerplate.model.User;
+import pl.adambalski.springbootboilerplate.repository.RefreshTokenRepository;
 import pl.adambalski.springbootboilerplate.repository.UserRepository;
-import pl.adambalski.springbootboilerplate.security.PasswordEncoderFactory;
+import pl.adambalski.springbootboilerplate.security.TestPasswordEncoders;
+import pl.adambalski.springbootboilerplate.security.TokenRevocations;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -36,6 +40,15 @@ class UserServiceTest {
     @Mock
     UserRepository userRepository;
 
+    @Mock
+    RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    TokenRevocations tokenRevocations;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
     // Mock that is injected in void init() method
     PasswordEncoder passwordEncoder;
 
@@ -43,7 +56,7 @@ class UserServiceTest {
     void init() {
         this.autoCloseable = MockitoAnnotations.openMocks(this);
 
-        passwordEncoder = new PasswordEncoderFactory().passwordEncoderBean();
+        passwordEncoder = TestPasswordEncoders.bcrypt();
         ReflectionTestUtils.setField(userService, "passwordEncoder", passwordEncoder);
     }
 
@@ -111,6 +124,7 @@ class UserServiceTest {
         else {
             assertDoesNotThrow(executable);
             Mockito.verify(userRepository).save(any(User.class));
+            Mockito.verify(eventPublisher).publishEvent(new UserChangedEvent(signUpUserDto.login()));
         }
     }
 
@@ -216,6 +230,9 @@ class UserServiceTest {
 
         assertTrue(actual);
         verify(userRepository).deleteByLogin("login");
+        verify(tokenRevocations).revoke("login");
+        verify(refreshTokenRepository).deleteAllByUserLogin("login");
+        verify(eventPublisher).publishEvent(new UserChangedEvent("login"));
     }
 
     @Test
@@ -227,6 +244,7 @@ class UserServiceTest {
 
         assertFalse(actual);
         verify(userRepository).deleteByLogin("login");
+        verifyNoInteractions(tokenRevocations, refreshTokenRepository);
     }
 
     User getRandUser() {
@@ -0,0 +1,127 @@
+package pl.adambalski.springbootboilerplate.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BoundedExpiringCacheTest {
+    private Clock clock;
+    private BoundedExpiringCache<String, String> cache;
+
+    @BeforeEach
+    void init() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+
+        cache = new BoundedExpiringCache<>(10, clock);
+    }
+
+    @Test
+    void testGetWhenThereIsNoSuchKey() {
+        assertNull(cache.get("key"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    void testGetWhenThereIsSuchKey() {
+        cache.put("key", "value", 2000L);
+
+        assertEquals("value", cache.get("key"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    void testGetWhenEntryHasExpired() {
+        cache.put("key", "value", 2000L);
+        when(clock.millis()).thenReturn(2000L);
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testPutWhenEntryIsAlreadyExpired() {
+        cache.put("key", "value", 1000L);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidate() {
+        cache.put("key", "value", 2000L);
+        cache.invalidate("key");
+
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    void testInvalidateIf() {
+        cache.put("key1", "value1", 2000L);
+        cache.put("key2", "value2", 2000L);
+
+        cache.invalidateIf((key, value) -> value.equals("value1"));
+
+        assertNull(cache.get("key1"));
+        assertEquals("value2", cache.get("key2"));
+    }
+
+    @Test
+    void testInvalidateAll() {
+        cache.put("key1", "value1", 2000L);
+        cache.put("key2", "value2", 2000L);
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        for(int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i, 2000L);
+        }
+
+        assertTrue(cache.size() <= cache.getMaxSize());
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    void testExpiredEntriesAreEvictedFirst() {
+        // fills the cache up to its maximal size
+        for(int i = 0; i < 9; i++) {
+            cache.put("expiring" + i, "value", 1500L);
+        }
+        cache.put("lasting", "value", 5000L);
+        when(clock.millis()).thenReturn(1600L);
+        cache.put("another lasting", "value", 5000L);
+
+        assertEquals(2, cache.size());
+        assertEquals("value", cache.get("lasting"));
+        assertEquals("value", cache.get("another lasting"));
+    }
+
+    @Test
+    void testHitRate() {
+        cache.put("key", "value", 2000L);
+
+        cache.get("key");
+        cache.get("key");
+        cache.get("key");
+        cache.get("nonexistent key");
+
+        assertEquals(0.75, cache.getHitRate());
+    }
+
+    @Test
+    void testConstructorWithNonPositiveMaxSize() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedExpiringCache<>(0));
+    }
+}
@@ -0,0 +1,61 @@
+package pl.adambalski.springbootboilerplate.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedGenerationsTest {
+    private KeyedGenerations<String> generations;
+
+    @BeforeEach
+    void init() {
+        generations = new KeyedGenerations<>();
+    }
+
+    @Test
+    void testStampIsCurrentUntilItsKeyIsInvalidated() {
+        long stamp = generations.stamp();
+        assertTrue(generations.isCurrent("key", stamp));
+
+        generations.invalidate("key");
+
+        assertFalse(generations.isCurrent("key", stamp));
+        assertTrue(generations.isCurrent("key", generations.stamp()));
+    }
+
+    @Test
+    void testInvalidateDoesNotOutdateOtherKeys() {
+        long stamp = generations.stamp();
+
+        generations.invalidate("other");
+
+        assertTrue(generations.isCurrent("key", stamp));
+    }
+
+    @Test
+    void testInvalidateAllOutdatesEveryStamp() {
+        long stamp = generations.stamp();
+
+        generations.invalidateAll();
+
+        assertFalse(generations.isCurrent("key", stamp));
+    }
+
+    @Test
+    void testKeysOfTheSameStripe() {
+        // a single stripe, every key shares it
+        KeyedGenerations<String> striped = new KeyedGenerations<>(1);
+        long stamp = striped.stamp();
+
+        striped.invalidate("other");
+
+        assertFalse(striped.isCurrent("key", stamp));
+    }
+
+    @Test
+    void testConstructorWhenStripesAreNotPowerOf2() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyedGenerations<String>(0));
+        assertThrows(IllegalArgumentException.class, () -> new KeyedGenerations<String>(3));
+    }
+}
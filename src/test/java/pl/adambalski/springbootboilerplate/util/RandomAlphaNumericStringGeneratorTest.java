@@ -17,12 +17,12 @@ import static org.mockito.Mockito.when;
 class RandomAlphaNumericStringGeneratorTest {
     @Test
     void testGenerateWithDefaultLength() {
-        String randomString = "ABC123456789";
+        String randomString = "ABC123456789ABC123456789ABC123456789ABC1234";
 
         var mock = Mockito.mock(RandomAlphaNumericStringGenerator.class);
         when(mock.generate())
                 .thenCallRealMethod();
-        when(mock.generate(12))
+        when(mock.generate(SecurityConfiguration.REFRESH_TOKEN_LENGTH))
                 .thenReturn(randomString);
 
         ReflectionTestUtils.setField(mock, "length", SecurityConfiguration.REFRESH_TOKEN_LENGTH);
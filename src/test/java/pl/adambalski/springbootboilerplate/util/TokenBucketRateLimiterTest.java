@@ -0,0 +1,98 @@
+package pl.adambalski.springbootboilerplate.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenBucketRateLimiterTest {
+    private Clock clock;
+    private TokenBucketRateLimiter<String> limiter;
+
+    @BeforeEach
+    void init() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+
+        // 3 tokens, one more every 100ms
+        limiter = new TokenBucketRateLimiter<>(3, Duration.ofMillis(100), 10, clock);
+    }
+
+    @Test
+    void testTryAcquireUpToCapacity() {
+        assertEquals(0, limiter.tryAcquire("key"));
+        assertEquals(0, limiter.tryAcquire("key"));
+        assertEquals(0, limiter.tryAcquire("key"));
+
+        assertEquals(100, limiter.tryAcquire("key"));
+        assertEquals(1, limiter.getRejectionCount());
+    }
+
+    @Test
+    void testTryAcquireAfterRefill() {
+        for(int i = 0; i < 3; i++) limiter.tryAcquire("key");
+
+        when(clock.millis()).thenReturn(1060L);
+        assertEquals(40, limiter.tryAcquire("key"));
+
+        when(clock.millis()).thenReturn(1100L);
+        assertEquals(0, limiter.tryAcquire("key"));
+        assertEquals(100, limiter.tryAcquire("key"));
+    }
+
+    @Test
+    void testTryAcquireDoesNotSaveUpMoreThanCapacity() {
+        limiter.tryAcquire("key");
+        when(clock.millis()).thenReturn(100_000L);
+
+        for(int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("key"));
+        }
+        assertTrue(limiter.tryAcquire("key") > 0);
+    }
+
+    @Test
+    void testKeysHaveSeparateBuckets() {
+        for(int i = 0; i < 3; i++) limiter.tryAcquire("first");
+
+        assertTrue(limiter.tryAcquire("first") > 0);
+        assertEquals(0, limiter.tryAcquire("second"));
+    }
+
+    @Test
+    void testEvictsFullBucketsFirst() {
+        for(int i = 0; i < 3; i++) limiter.tryAcquire("busy");
+        for(int i = 0; i < 9; i++) limiter.tryAcquire("idle" + i);
+
+        // every bucket but 'busy' is full again
+        when(clock.millis()).thenReturn(1200L);
+        limiter.tryAcquire("new");
+
+        assertTrue(limiter.size() <= 10);
+        // 'busy' has got only 2 tokens back, a new bucket would have 3
+        assertEquals(0, limiter.tryAcquire("busy"));
+        assertEquals(0, limiter.tryAcquire("busy"));
+        assertTrue(limiter.tryAcquire("busy") > 0);
+    }
+
+    @Test
+    void testSizeStaysBounded() {
+        for(int i = 0; i < 1000; i++) {
+            for(int j = 0; j < 3; j++) limiter.tryAcquire("key" + i);
+        }
+
+        assertTrue(limiter.size() <= 10);
+    }
+
+    @Test
+    void testConstructorWhenCapacityIsNotPositive() {
+        Executable executable = () -> new TokenBucketRateLimiter<>(0, Duration.ofSeconds(1), 10);
+        assertThrows(IllegalArgumentException.class, executable);
+    }
+}